@@ -0,0 +1,113 @@
+package fun.gangwan.data.redis.benchmark;
+
+import fun.gangwan.data.redis.util.RedisUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * AtomLockBenchmark
+ * <span>多线程争抢getAtomLock的吞吐：lockKeys为1时所有线程争抢同一把锁，locks区分订阅唤醒(RedisLocks)与轮询</span>
+ * <li>每次加锁成功后持有holdMicros再释放，模拟临界区</li>
+ * <li>acquired、failed为成功、超时未获取的次数</li>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(8)
+@Fork(1)
+public class AtomLockBenchmark {
+
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    private static final long WAIT_SECONDS = 5L;
+
+    @Param({"1", "16"})
+    private int lockKeys;
+
+    @Param({"pubsub", "polling"})
+    private String locks;
+
+    @Param({"100"})
+    private long holdMicros;
+
+    private RedisBenchmarkContext context;
+
+    private RedisUtils redisUtils;
+
+    private List<String> keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new RedisBenchmarkContext();
+        redisUtils = context.redisUtils();
+        if ("pubsub".equals(locks)) {
+            redisUtils.setLocks(context.locks());
+        }
+        keys = new ArrayList<>(lockKeys);
+        for (int i = 0; i < lockKeys; i++) {
+            keys.add(RedisBenchmarkContext.KEY_PREFIX + "lock:" + i);
+        }
+        context.delete(keys);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.delete(keys);
+        context.close();
+    }
+
+    @Benchmark
+    public void lockAndRelease(Counters counters) {
+        String key = keys.get(ThreadLocalRandom.current().nextInt(lockKeys));
+        String value = redisUtils.getAtomLock(key, TIMEOUT_SECONDS, WAIT_SECONDS);
+        if (null == value) {
+            counters.failed++;
+            return;
+        }
+        try {
+            counters.acquired++;
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(holdMicros));
+        } finally {
+            redisUtils.releaseLock(key, value);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long acquired;
+
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            acquired = 0;
+            failed = 0;
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package fun.gangwan.data.redis.benchmark;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * BenchmarkPayload
+ * <span>基准测试的value对象，字段组成接近常见的业务缓存对象</span>
+ *
+ */
+@Data
+public class BenchmarkPayload {
+
+    private long id;
+
+    private String name;
+
+    private String description;
+
+    private long price;
+
+    private boolean available;
+
+    private List<String> tags;
+
+    public static BenchmarkPayload of(long id) {
+        BenchmarkPayload payload = new BenchmarkPayload();
+        payload.setId(id);
+        payload.setName("payload-" + id);
+        payload.setDescription("benchmark payload for redis helper hot paths, id " + id);
+        payload.setPrice(id * 100);
+        payload.setAvailable(id % 2 == 0);
+        List<String> tags = new ArrayList<>(4);
+        for (int i = 0; i < 4; i++) {
+            tags.add("tag-" + i);
+        }
+        payload.setTags(tags);
+        return payload;
+    }
+
+}
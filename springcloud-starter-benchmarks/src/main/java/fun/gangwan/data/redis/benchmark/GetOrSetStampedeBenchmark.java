@@ -0,0 +1,82 @@
+package fun.gangwan.data.redis.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * GetOrSetStampedeBenchmark
+ * <span>redisGetOrSet缓存击穿：所有线程读同一个key，每windowMillis切换一次key，切换时全部线程同时未命中</span>
+ * <li>loads为实际调用加载回调的次数，理想值为每秒1000/windowMillis次，明显偏大说明并发未命中没有合并</li>
+ * <li>加载回调耗时loadMillis，模拟回源查询</li>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(16)
+@Fork(1)
+public class GetOrSetStampedeBenchmark {
+
+    @Param({"50"})
+    private long windowMillis;
+
+    @Param({"5"})
+    private long loadMillis;
+
+    private RedisBenchmarkContext context;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new RedisBenchmarkContext();
+        context.redisUtils().setLocks(context.locks());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BenchmarkPayload redisGetOrSet(Counters counters) {
+        long window = System.currentTimeMillis() / windowMillis;
+        String key = RedisBenchmarkContext.KEY_PREFIX + "stampede:" + window;
+        // 过期时间覆盖若干窗口，旧key自行过期
+        return context.redisUtils().redisGetOrSet(key, () -> {
+            counters.loads++;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(loadMillis));
+            return BenchmarkPayload.of(window);
+        }, windowMillis * 4, BenchmarkPayload.class);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long loads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            loads = 0;
+        }
+    }
+
+}
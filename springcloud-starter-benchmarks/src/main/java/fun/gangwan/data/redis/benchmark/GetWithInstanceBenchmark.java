@@ -0,0 +1,68 @@
+package fun.gangwan.data.redis.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * GetWithInstanceBenchmark
+ * <span>redisGetWithInstance与直接使用StringRedisTemplate读取对比，差值为RedisUtils的解码、本地缓存判断等开销</span>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GetWithInstanceBenchmark {
+
+    private static final String KEY = RedisBenchmarkContext.KEY_PREFIX + "get";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RedisBenchmarkContext context;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new RedisBenchmarkContext();
+        context.redisUtils().redisSet(KEY, BenchmarkPayload.of(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.delete(Collections.singletonList(KEY));
+        context.close();
+    }
+
+    @Benchmark
+    public BenchmarkPayload redisGetWithInstance() {
+        return context.redisUtils().redisGetWithInstance(KEY, BenchmarkPayload.class);
+    }
+
+    @Benchmark
+    public String rawTemplateGet() {
+        return context.redis().opsForValue().get(KEY);
+    }
+
+    @Benchmark
+    public BenchmarkPayload rawTemplateGetAndDecode() throws IOException {
+        return objectMapper.readValue(context.redis().opsForValue().get(KEY), BenchmarkPayload.class);
+    }
+
+}
@@ -0,0 +1,80 @@
+package fun.gangwan.data.redis.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * HashMultiGetBenchmark
+ * <span>redisHashMultiGetWithInstance在不同field数下的耗时，以及与直接HMGET不解码的对比</span>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashMultiGetBenchmark {
+
+    private static final String KEY = RedisBenchmarkContext.KEY_PREFIX + "hash";
+
+    @Param({"10", "100", "1000"})
+    private int fields;
+
+    private RedisBenchmarkContext context;
+
+    private List<String> hashKeys;
+
+    private List<Object> rawHashKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new RedisBenchmarkContext();
+        Map<String, Object> values = new HashMap<>(fields * 2);
+        hashKeys = new ArrayList<>(fields);
+        for (int i = 0; i < fields; i++) {
+            String field = "field-" + i;
+            hashKeys.add(field);
+            values.put(field, BenchmarkPayload.of(i));
+        }
+        rawHashKeys = new ArrayList<>(hashKeys);
+        context.delete(Collections.singletonList(KEY));
+        context.redisUtils().redisHashPutAllObj(KEY, values);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.delete(Collections.singletonList(KEY));
+        context.close();
+    }
+
+    @Benchmark
+    public List<BenchmarkPayload> redisHashMultiGetWithInstance() {
+        return context.redisUtils().redisHashMultiGetWithInstance(KEY, hashKeys, BenchmarkPayload.class);
+    }
+
+    @Benchmark
+    public List<Object> rawTemplateMultiGet() {
+        return context.redis().opsForHash().multiGet(KEY, rawHashKeys);
+    }
+
+}
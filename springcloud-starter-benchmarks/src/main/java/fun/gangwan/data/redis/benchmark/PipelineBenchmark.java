@@ -0,0 +1,101 @@
+package fun.gangwan.data.redis.benchmark;
+
+import fun.gangwan.data.redis.command.RedisCommand;
+import fun.gangwan.data.redis.command.RedisCommandType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * PipelineBenchmark
+ * <span>同一批SET/GET命令经RedisPipelineTemplate一次发送与逐条发送对比，结果为每批耗时</span>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final long EXPIRED_SECONDS = 300L;
+
+    @Param({"10", "100", "1000"})
+    private int batchSize;
+
+    private RedisBenchmarkContext context;
+
+    private List<String> keys;
+
+    private List<String> values;
+
+    private List<RedisCommand> setCommands;
+
+    private List<RedisCommand> getCommands;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new RedisBenchmarkContext();
+        keys = new ArrayList<>(batchSize);
+        values = new ArrayList<>(batchSize);
+        setCommands = new ArrayList<>(batchSize);
+        getCommands = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            String key = RedisBenchmarkContext.KEY_PREFIX + "pipeline:" + i;
+            String value = "value-" + i;
+            keys.add(key);
+            values.add(value);
+            setCommands.add(RedisCommand.builder().commandType(RedisCommandType.SET).key(key).value(value)
+                    .expiredTime(EXPIRED_SECONDS).timeUnit(TimeUnit.SECONDS).build());
+            getCommands.add(RedisCommand.builder().commandType(RedisCommandType.GET).key(key).build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.delete(keys);
+        context.close();
+    }
+
+    @Benchmark
+    public List<Object> pipelineSet() {
+        return context.pipelineTemplate().executePipeline(setCommands);
+    }
+
+    @Benchmark
+    public void sequentialSet() {
+        for (int i = 0; i < batchSize; i++) {
+            context.redis().opsForValue().set(keys.get(i), values.get(i), EXPIRED_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    public List<Object> pipelineGet() {
+        return context.pipelineTemplate().executePipeline(getCommands);
+    }
+
+    @Benchmark
+    public void sequentialGet(Blackhole blackhole) {
+        for (int i = 0; i < batchSize; i++) {
+            blackhole.consume(context.redis().opsForValue().get(keys.get(i)));
+        }
+    }
+
+}
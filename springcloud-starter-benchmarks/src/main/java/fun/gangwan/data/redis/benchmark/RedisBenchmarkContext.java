@@ -0,0 +1,149 @@
+package fun.gangwan.data.redis.benchmark;
+
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import fun.gangwan.data.redis.lock.RedisLocks;
+import fun.gangwan.data.redis.template.RedisPipelineTemplate;
+import fun.gangwan.data.redis.util.RedisUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collection;
+
+/**
+ *
+ * RedisBenchmarkContext
+ * <span>基准测试使用的redis环境：连接-Dredis.host、-Dredis.port指定的redis，-Dredis.spawn=true时在本地拉起redis-server</span>
+ * <li>拉起的redis-server不落盘(--save "" --appendonly no)，close时销毁进程</li>
+ * <li>RedisUtils、RedisPipelineTemplate、RedisLocks与自动配置的组装方式一致，但不开启指标、命名空间、热key探测</li>
+ *
+ */
+@Slf4j
+public class RedisBenchmarkContext implements AutoCloseable {
+
+    public static final String KEY_PREFIX = "bench:";
+
+    private static final long SPAWN_TIMEOUT_MILLIS = 10_000L;
+
+    private final Process server;
+
+    private final AnnotationConfigApplicationContext context;
+
+    private final RedisUtils redisUtils;
+
+    public RedisBenchmarkContext() {
+        String host = System.getProperty("redis.host", "127.0.0.1");
+        int port = Integer.getInteger("redis.port", 6379);
+        this.server = Boolean.getBoolean("redis.spawn") ? spawn(host, port) : null;
+
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(RedisHelperProperties.class);
+        context.registerBean(LettuceConnectionFactory.class,
+                () -> new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port)));
+        context.registerBean(StringRedisTemplate.class,
+                () -> new StringRedisTemplate(context.getBean(LettuceConnectionFactory.class)));
+        context.registerBean(RedisMessageListenerContainer.class, () -> {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(context.getBean(LettuceConnectionFactory.class));
+            return container;
+        });
+        context.registerBean(RedisLocks.class, () -> {
+            RedisLocks locks = new RedisLocks(context.getBean(StringRedisTemplate.class),
+                    context.getBean(RedisHelperProperties.class).getLock());
+            context.getBean(RedisMessageListenerContainer.class)
+                    .addMessageListener(locks, new PatternTopic(locks.getChannelPattern()));
+            return locks;
+        }, definition -> definition.setDestroyMethodName("shutdown"));
+        context.registerBean(RedisPipelineTemplate.class);
+        context.refresh();
+
+        this.redisUtils = new RedisUtils(redis(), KEY_PREFIX);
+    }
+
+    public StringRedisTemplate redis() {
+        return context.getBean(StringRedisTemplate.class);
+    }
+
+    public RedisUtils redisUtils() {
+        return redisUtils;
+    }
+
+    public RedisPipelineTemplate pipelineTemplate() {
+        return context.getBean(RedisPipelineTemplate.class);
+    }
+
+    public RedisLocks locks() {
+        return context.getBean(RedisLocks.class);
+    }
+
+    /**
+     * 删除基准测试写入的key
+     *
+     * @param keys keys
+     */
+    public void delete(Collection<String> keys) {
+        if (!keys.isEmpty()) {
+            redis().delete(keys);
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (null != server) {
+            server.destroy();
+        }
+    }
+
+    private static Process spawn(String host, int port) {
+        if (reachable(host, port)) {
+            throw new IllegalStateException("端口已被占用，无法拉起redis-server:" + host + ":" + port);
+        }
+        ProcessBuilder builder = new ProcessBuilder(System.getProperty("redis.server", "redis-server"),
+                "--port", String.valueOf(port), "--save", "", "--appendonly", "no");
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(new File(System.getProperty("java.io.tmpdir"), "redis-benchmark-" + port + ".log"));
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("拉起redis-server失败，请确认已安装redis-server或通过-Dredis.server指定路径", e);
+        }
+        long deadline = System.currentTimeMillis() + SPAWN_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (reachable(host, port)) {
+                log.info("已拉起redis-server:{}:{}", host, port);
+                return process;
+            }
+            if (!process.isAlive()) {
+                break;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        process.destroy();
+        throw new IllegalStateException("redis-server未能在" + SPAWN_TIMEOUT_MILLIS + "ms内启动:" + host + ":" + port);
+    }
+
+    private static boolean reachable(String host, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), 200);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+}
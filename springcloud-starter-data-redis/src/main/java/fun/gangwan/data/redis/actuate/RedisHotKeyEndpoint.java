@@ -0,0 +1,38 @@
+package fun.gangwan.data.redis.actuate;
+
+import fun.gangwan.data.redis.support.RedisHotKeyDetector;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * RedisHotKeyEndpoint
+ * <span>actuator端点/actuator/redishotkeys：上一统计窗口的访问次数、字节数top-N和热key</span>
+ *
+ */
+@Endpoint(id = "redishotkeys")
+public class RedisHotKeyEndpoint {
+
+    private final RedisHotKeyDetector detector;
+
+    public RedisHotKeyEndpoint(RedisHotKeyDetector detector) {
+        this.detector = detector;
+    }
+
+    @ReadOperation
+    public Map<String, Object> hotKeys() {
+        RedisHotKeyDetector.Snapshot snapshot = detector.getSnapshot();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", snapshot.getTimestamp());
+        result.put("windowMillis", snapshot.getWindowMillis());
+        result.put("sampledCount", detector.getSampledCount());
+        result.put("hotKeys", snapshot.getHotKeys());
+        result.put("topByAccess", snapshot.getTopByAccess());
+        result.put("topByBytes", snapshot.getTopByBytes());
+        return result;
+    }
+
+}
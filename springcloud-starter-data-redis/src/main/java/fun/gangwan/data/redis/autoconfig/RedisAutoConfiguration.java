@@ -1,18 +1,71 @@
 package fun.gangwan.data.redis.autoconfig;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.luben.zstd.Zstd;
+import fun.gangwan.data.redis.actuate.RedisHotKeyEndpoint;
+import fun.gangwan.data.redis.cache.RedisCacheAdvisor;
+import fun.gangwan.data.redis.cache.RedisCacheInterceptor;
+import fun.gangwan.data.redis.cache.RedisNearCache;
+import fun.gangwan.data.redis.codec.JacksonRedisValueCodec;
+import fun.gangwan.data.redis.codec.Lz4RedisValueCompressor;
+import fun.gangwan.data.redis.codec.PrefixedKeySerializer;
+import fun.gangwan.data.redis.codec.RedisValueCodec;
+import fun.gangwan.data.redis.codec.RedisValueCodecs;
+import fun.gangwan.data.redis.codec.RedisValueCompression;
+import fun.gangwan.data.redis.codec.RedisValueCompressor;
+import fun.gangwan.data.redis.codec.ZstdRedisValueCompressor;
+import fun.gangwan.data.redis.lock.RedisLocks;
+import fun.gangwan.data.redis.metrics.MicrometerRedisMetrics;
+import fun.gangwan.data.redis.metrics.RedisMetrics;
+import fun.gangwan.data.redis.metrics.RedisMetricsPostProcessor;
+import fun.gangwan.data.redis.support.BufferedRedisCounter;
 import fun.gangwan.data.redis.support.RedisCounter;
+import fun.gangwan.data.redis.support.RedisExpiryPolicies;
+import fun.gangwan.data.redis.support.RedisHotKeyDetector;
+import fun.gangwan.data.redis.support.RedisIdGenerator;
+import fun.gangwan.data.redis.support.RedisRateLimiter;
+import fun.gangwan.data.redis.support.RedisRefreshAhead;
+import fun.gangwan.data.redis.template.RedisHelperTemplate;
 import fun.gangwan.data.redis.template.RedisPipelineTemplate;
+import fun.gangwan.data.redis.template.RedisScanTemplate;
+import fun.gangwan.data.redis.util.AsyncRedisUtils;
+import fun.gangwan.data.redis.util.ReactiveRedisUtils;
 import fun.gangwan.data.redis.util.RedisUtils;
+import fun.gangwan.data.redis.web.RedisRateLimitInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Factory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Role;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -22,7 +75,8 @@ import javax.annotation.Resource;
  */
 @Slf4j
 @Configuration
-@Import({RedisPipelineTemplate.class, RedisCounter.class})
+@Import({RedisPipelineTemplate.class, RedisScanTemplate.class, RedisCounter.class})
+@EnableConfigurationProperties(RedisHelperProperties.class)
 @ConditionalOnProperty(prefix = RedisAutoConfiguration.PREFIX, value = "prefix", matchIfMissing = false)
 public class RedisAutoConfiguration {
 
@@ -39,15 +93,391 @@ public class RedisAutoConfiguration {
      * @param redis redis
      * @param redisPrefix redisPrefix
      * @param validateConnection validateConnection
+     * @param nearCache 本地近端缓存，未开启时为空
+     * @param refreshAhead get or set 提前刷新
+     * @param codecs value编解码器
+     * @param locks 分布式锁
+     * @param properties properties
+     * @param expiryPolicies 按key前缀的过期策略
+     * @param hotKeyDetector 热key、大key探测，未开启时为空
      * @return asd
      */
     @Bean
-    public RedisUtils initRedis(StringRedisTemplate redis,
+    public RedisUtils initRedis(RedisHelperTemplate redis,
                                 @Value("${spring.redis.prefix}") String redisPrefix,
-                                @Value("${spring.redis.lettuce.validateConnection:true}") boolean validateConnection) {
+                                @Value("${spring.redis.lettuce.validateConnection:true}") boolean validateConnection,
+                                ObjectProvider<RedisNearCache> nearCache,
+                                RedisRefreshAhead refreshAhead,
+                                RedisValueCodecs codecs,
+                                RedisLocks locks,
+                                RedisHelperProperties properties,
+                                RedisExpiryPolicies expiryPolicies,
+                                ObjectProvider<RedisHotKeyDetector> hotKeyDetector) {
         lettuceConnectionFactory.setValidateConnection(validateConnection);
+        RedisUtils redisUtils = new RedisUtils().getInstance(redis.getTemplate(), redisPrefix);
+        redisUtils.setNearCache(nearCache.getIfAvailable());
+        redisUtils.setRefreshAhead(refreshAhead);
+        redisUtils.setCodecs(codecs);
+        redisUtils.setLocks(locks);
+        redisUtils.setParallelDecodeThreshold(properties.getCodec().getParallelDecodeThreshold());
+        redisUtils.setExpiryPolicies(expiryPolicies);
+        redisUtils.setHotKeyDetector(hotKeyDetector.getIfAvailable());
         log.info("###### RedisAutoConfiguration register success with dependency {} ######", pomVer);
-        return new RedisUtils().getInstance(redis, redisPrefix);
+        return redisUtils;
+    }
+
+    /**
+     * key命名空间序列化器，spring.redis.helper.namespace.enabled=true时开启
+     * @param redisPrefix redisPrefix
+     * @return PrefixedKeySerializer
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = RedisHelperProperties.PREFIX, name = "namespace.enabled", havingValue = "true")
+    public static PrefixedKeySerializer prefixedKeySerializer(@Value("${spring.redis.prefix}") String redisPrefix) {
+        log.info("###### Redis key namespace enabled, prefix: {} ######", redisPrefix);
+        return new PrefixedKeySerializer(redisPrefix);
+    }
+
+    /**
+     * starter内部组件共用的模板，开启key命名空间时为带前缀key序列化器的独立模板，应用自己的StringRedisTemplate不受影响
+     * <li>hash field不加前缀</li>
+     * @param redis 应用的StringRedisTemplate
+     * @param keySerializer key命名空间序列化器，未开启时为空
+     * @return RedisHelperTemplate
+     */
+    @Bean
+    public RedisHelperTemplate redisHelperTemplate(StringRedisTemplate redis,
+                                                   ObjectProvider<PrefixedKeySerializer> keySerializer) {
+        return RedisHelperTemplate.of(redis, keySerializer.getIfAvailable());
+    }
+
+    /**
+     * 非阻塞Redis工具类，优先复用spring boot自动配置的ReactiveStringRedisTemplate
+     * <li>开启key命名空间时使用带前缀key序列化器的模板</li>
+     * @param reactiveTemplate reactiveTemplate
+     * @param nearCache 本地近端缓存，未开启时为空
+     * @param codecs value编解码器
+     * @param keySerializer key命名空间序列化器，未开启时为空
+     * @param properties properties
+     * @return ReactiveRedisUtils
+     */
+    @Bean
+    public ReactiveRedisUtils reactiveRedisUtils(ObjectProvider<ReactiveStringRedisTemplate> reactiveTemplate,
+                                                 ObjectProvider<RedisNearCache> nearCache,
+                                                 RedisValueCodecs codecs,
+                                                 ObjectProvider<PrefixedKeySerializer> keySerializer,
+                                                 RedisHelperProperties properties) {
+        PrefixedKeySerializer prefixed = keySerializer.getIfAvailable();
+        ReactiveStringRedisTemplate template = null != prefixed
+                ? new ReactiveStringRedisTemplate(lettuceConnectionFactory,
+                        RedisSerializationContext.<String, String>newSerializationContext(RedisSerializer.string())
+                                .key(prefixed).build())
+                : reactiveTemplate.getIfAvailable(() -> new ReactiveStringRedisTemplate(lettuceConnectionFactory));
+        ReactiveRedisUtils reactiveRedisUtils = new ReactiveRedisUtils(template);
+        reactiveRedisUtils.setNearCache(nearCache.getIfAvailable());
+        reactiveRedisUtils.setCodecs(codecs);
+        reactiveRedisUtils.setLockChannelPrefix(properties.getLock().getChannelPrefix());
+        return reactiveRedisUtils;
+    }
+
+    /**
+     * 异步Redis工具类
+     * @param reactiveRedisUtils reactiveRedisUtils
+     * @return AsyncRedisUtils
+     */
+    @Bean
+    public AsyncRedisUtils asyncRedisUtils(ReactiveRedisUtils reactiveRedisUtils) {
+        return new AsyncRedisUtils(reactiveRedisUtils);
+    }
+
+    /**
+     * value编解码器注册表：json默认复用spring容器中的ObjectMapper，其他编解码器为容器中的RedisValueCodec
+     * @param properties properties
+     * @param objectMapper spring容器中的ObjectMapper
+     * @param codecs 容器中的编解码器，smile、cbor按classpath自动注册
+     * @param compressors 容器中的压缩算法，lz4、zstd按classpath自动注册
+     * @param metrics 指标，未开启时为空
+     * @return RedisValueCodecs
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisValueCodecs redisValueCodecs(RedisHelperProperties properties, ObjectProvider<ObjectMapper> objectMapper,
+                                             ObjectProvider<RedisValueCodec> codecs,
+                                             ObjectProvider<RedisValueCompressor> compressors,
+                                             ObjectProvider<RedisMetrics> metrics) {
+        RedisHelperProperties.Codec config = properties.getCodec();
+        ObjectMapper mapper = config.isUseSpringObjectMapper() ? objectMapper.getIfUnique() : null;
+        RedisValueCodec json = null == mapper ? JacksonRedisValueCodec.json() : JacksonRedisValueCodec.json(mapper);
+        RedisValueCodecs redisValueCodecs = new RedisValueCodecs(json, codecs.orderedStream().collect(Collectors.toList()),
+                config.getDefaultCodec(), config.getKeyPrefixCodecs());
+
+        RedisHelperProperties.Compression compression = properties.getCompression();
+        Map<String, Integer> thresholds = new LinkedHashMap<>();
+        compression.getKeyPrefixThresholds().forEach((prefix, size) -> thresholds.put(prefix, (int) size.toBytes()));
+        redisValueCodecs.setCompression(new RedisValueCompression(
+                compressors.orderedStream().collect(Collectors.toList()),
+                compression.isEnabled() ? compression.getAlgorithm() : null,
+                (int) compression.getThreshold().toBytes(), thresholds,
+                (int) Math.min(Integer.MAX_VALUE, compression.getMaxDecompressedSize().toBytes())));
+        redisValueCodecs.setMetrics(metrics.getIfAvailable(() -> RedisMetrics.NOOP));
+        log.info("###### RedisValueCodecs default codec: {}, compression: {} ######",
+                redisValueCodecs.getDefaultCodec().getName(),
+                compression.isEnabled() ? compression.getAlgorithm() : "disabled");
+        return redisValueCodecs;
+    }
+
+    /**
+     * get or set 提前刷新异步线程池
+     * @param properties properties
+     * @return RedisRefreshAhead
+     */
+    @Bean(destroyMethod = "shutdown")
+    public RedisRefreshAhead redisRefreshAhead(RedisHelperProperties properties) {
+        return new RedisRefreshAhead(properties.getRefreshAhead());
+    }
+
+    /**
+     * 按key前缀的过期策略，存在滑动过期策略时启动续期线程
+     * @param redis redis
+     * @param properties properties
+     * @return RedisExpiryPolicies
+     */
+    @Bean(destroyMethod = "shutdown")
+    public RedisExpiryPolicies redisExpiryPolicies(RedisHelperTemplate redis, RedisHelperProperties properties) {
+        return new RedisExpiryPolicies(redis.getTemplate(), properties.getExpiry());
+    }
+
+    /**
+     * 热key、大key探测，spring.redis.helper.hot-key.enabled=true时开启
+     * @param properties properties
+     * @return RedisHotKeyDetector
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(prefix = RedisHelperProperties.PREFIX, name = "hot-key.enabled", havingValue = "true")
+    public RedisHotKeyDetector redisHotKeyDetector(RedisHelperProperties properties) {
+        RedisHelperProperties.HotKey hotKey = properties.getHotKey();
+        log.info("###### RedisHotKeyDetector enabled, sample rate: {}, local cache: {} ######",
+                hotKey.getSampleRate(), hotKey.getLocalCache().isEnabled());
+        return new RedisHotKeyDetector(hotKey);
+    }
+
+    /**
+     * 基于Lua脚本的分布式限流
+     * @param redis redis
+     * @param properties properties
+     * @return RedisRateLimiter
+     */
+    @Bean
+    public RedisRateLimiter redisRateLimiter(RedisHelperTemplate redis, RedisHelperProperties properties) {
+        return new RedisRateLimiter(redis.getTemplate(), properties.getRateLimiter());
+    }
+
+    /**
+     * 本地缓冲计数器，关闭时刷新剩余增量
+     * @param redis redis
+     * @param properties properties
+     * @return BufferedRedisCounter
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BufferedRedisCounter bufferedRedisCounter(RedisHelperTemplate redis, RedisHelperProperties properties) {
+        return new BufferedRedisCounter(redis.getTemplate(), properties.getCounter());
+    }
+
+    /**
+     * 号段id生成器
+     * @param counter redis计数器
+     * @param properties properties
+     * @return RedisIdGenerator
+     */
+    @Bean(destroyMethod = "shutdown")
+    public RedisIdGenerator redisIdGenerator(RedisCounter counter, RedisHelperProperties properties) {
+        return new RedisIdGenerator(counter, properties.getIdGenerator());
+    }
+
+    /**
+     * 发布订阅监听容器，业务方已定义时复用业务方的容器
+     * @param connectionFactory connectionFactory
+     * @return RedisMessageListenerContainer
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    /**
+     * 分布式锁，本节点有等待方时才订阅对应key的锁释放消息，看门狗线程在首次加锁时启动
+     * @param redis redis
+     * @param properties properties
+     * @param container 订阅锁释放消息的监听容器
+     * @return RedisLocks
+     */
+    @Bean(destroyMethod = "shutdown")
+    public RedisLocks redisLocks(RedisHelperTemplate redis, RedisHelperProperties properties,
+                                 RedisMessageListenerContainer container) {
+        return new RedisLocks(redis.getTemplate(), properties.getLock(), container);
+    }
+
+    /**
+     * 本地近端缓存，spring.redis.helper.near-cache.enabled=true时开启
+     * @param properties properties
+     * @param container 订阅失效通知的监听容器
+     * @return RedisNearCache
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = RedisHelperProperties.PREFIX, name = "near-cache.enabled", havingValue = "true")
+    public RedisNearCache redisNearCache(RedisHelperProperties properties, RedisMessageListenerContainer container) {
+        RedisNearCache nearCache = new RedisNearCache(properties.getNearCache());
+        container.addMessageListener(nearCache, new ChannelTopic(nearCache.getInvalidateChannel()));
+        log.info("###### RedisNearCache enabled, invalidate channel: {} ######", nearCache.getInvalidateChannel());
+        return nearCache;
+    }
+
+    /**
+     * 缓存注解@RedisCacheable、@RedisCachePut、@RedisCacheEvict，spring.redis.helper.annotation-cache.enabled=true时开启
+     * <span>基础设施角色，未引入aspectj时也会被spring boot默认的自动代理创建器应用</span>
+     * @param redisUtils redisUtils，首次调用时获取，不提前初始化
+     * @param properties properties
+     * @return RedisCacheAdvisor
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    @ConditionalOnProperty(prefix = RedisHelperProperties.PREFIX, name = "annotation-cache.enabled", havingValue = "true")
+    public static RedisCacheAdvisor redisCacheAdvisor(ObjectProvider<RedisUtils> redisUtils,
+                                                      RedisHelperProperties properties) {
+        return new RedisCacheAdvisor(new RedisCacheInterceptor(redisUtils, properties.getAnnotationCache()));
+    }
+
+    /**
+     * 开启指标时为RedisUtils、RedisPipelineTemplate、RedisCounter创建记录指标的代理
+     * @param metrics 指标，未开启时为空
+     * @return RedisMetricsPostProcessor
+     */
+    @Bean
+    public static RedisMetricsPostProcessor redisMetricsPostProcessor(ObjectProvider<RedisMetrics> metrics) {
+        return new RedisMetricsPostProcessor(metrics);
+    }
+
+    /**
+     * 引入micrometer-core且容器中存在MeterRegistry时记录指标，spring.redis.helper.metrics.enabled=false时关闭
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnProperty(prefix = RedisHelperProperties.PREFIX, name = "metrics.enabled", havingValue = "true",
+            matchIfMissing = true)
+    static class MicrometerMetricsConfiguration {
+
+        @Bean
+        public RedisMetrics redisMetrics(ObjectProvider<MeterRegistry> registry, RedisHelperProperties properties) {
+            MeterRegistry meterRegistry = registry.getIfUnique();
+            if (null == meterRegistry) {
+                return RedisMetrics.NOOP;
+            }
+            log.info("###### Redis helper metrics enabled ######");
+            return new MicrometerRedisMetrics(meterRegistry, properties.getMetrics());
+        }
+    }
+
+    /**
+     * 引入spring-boot-actuator且开启热key探测时注册/actuator/redishotkeys端点
+     */
+    @Configuration
+    @ConditionalOnClass(Endpoint.class)
+    @ConditionalOnProperty(prefix = RedisHelperProperties.PREFIX, name = "hot-key.enabled", havingValue = "true")
+    static class HotKeyEndpointConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RedisHotKeyEndpoint redisHotKeyEndpoint(RedisHotKeyDetector detector) {
+            return new RedisHotKeyEndpoint(detector);
+        }
+    }
+
+    /**
+     * 引入jackson-dataformat-smile时注册smile编解码器
+     */
+    @Configuration
+    @ConditionalOnClass(SmileFactory.class)
+    static class SmileCodecConfiguration {
+
+        @Bean
+        public RedisValueCodec smileRedisValueCodec() {
+            return JacksonRedisValueCodec.of(JacksonRedisValueCodec.SMILE, JacksonRedisValueCodec.SMILE_ID,
+                    new ObjectMapper(new SmileFactory()));
+        }
+    }
+
+    /**
+     * 引入jackson-dataformat-cbor时注册cbor编解码器
+     */
+    @Configuration
+    @ConditionalOnClass(CBORFactory.class)
+    static class CborCodecConfiguration {
+
+        @Bean
+        public RedisValueCodec cborRedisValueCodec() {
+            return JacksonRedisValueCodec.of(JacksonRedisValueCodec.CBOR, JacksonRedisValueCodec.CBOR_ID,
+                    new ObjectMapper(new CBORFactory()));
+        }
+    }
+
+    /**
+     * 引入lz4-java时注册lz4压缩算法
+     */
+    @Configuration
+    @ConditionalOnClass(LZ4Factory.class)
+    static class Lz4CompressorConfiguration {
+
+        @Bean
+        public RedisValueCompressor lz4RedisValueCompressor() {
+            return new Lz4RedisValueCompressor();
+        }
+    }
+
+    /**
+     * 引入zstd-jni时注册zstd压缩算法
+     */
+    @Configuration
+    @ConditionalOnClass(Zstd.class)
+    static class ZstdCompressorConfiguration {
+
+        @Bean
+        public RedisValueCompressor zstdRedisValueCompressor(RedisHelperProperties properties) {
+            return new ZstdRedisValueCompressor(properties.getCompression().getZstdLevel());
+        }
+    }
+
+    /**
+     * web接口限流，spring.redis.helper.rate-limiter.web.enabled=true时开启
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnClass(HandlerInterceptor.class)
+    @ConditionalOnProperty(prefix = RedisHelperProperties.PREFIX, name = "rate-limiter.web.enabled", havingValue = "true")
+    static class RateLimitWebConfiguration implements WebMvcConfigurer {
+
+        private final RedisRateLimiter rateLimiter;
+
+        private final RedisHelperProperties properties;
+
+        RateLimitWebConfiguration(RedisRateLimiter rateLimiter, RedisHelperProperties properties) {
+            this.rateLimiter = rateLimiter;
+            this.properties = properties;
+        }
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            RedisHelperProperties.RateLimiterWeb web = properties.getRateLimiter().getWeb();
+            if (web.getRules().isEmpty()) {
+                return;
+            }
+            registry.addInterceptor(new RedisRateLimitInterceptor(rateLimiter, web))
+                    .addPathPatterns(web.getRules().stream()
+                            .map(RedisHelperProperties.WebRateLimitRule::getPathPattern)
+                            .collect(Collectors.toList()));
+        }
     }
 
 }
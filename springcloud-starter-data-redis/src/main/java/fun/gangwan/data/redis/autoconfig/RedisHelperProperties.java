@@ -0,0 +1,518 @@
+package fun.gangwan.data.redis.autoconfig;
+
+import fun.gangwan.data.redis.support.RateLimitRule;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * RedisHelperProperties
+ * <span>Redis组件扩展配置</span>
+ *
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = RedisHelperProperties.PREFIX)
+public class RedisHelperProperties {
+
+    public static final String PREFIX = RedisAutoConfiguration.PREFIX + ".helper";
+
+    /**
+     * 本地近端缓存(L1)配置
+     */
+    private NearCache nearCache = new NearCache();
+
+    /**
+     * get or set 提前刷新配置
+     */
+    private RefreshAhead refreshAhead = new RefreshAhead();
+
+    /**
+     * value编解码配置
+     */
+    private Codec codec = new Codec();
+
+    /**
+     * value压缩配置
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * 限流配置
+     */
+    private RateLimiter rateLimiter = new RateLimiter();
+
+    /**
+     * 分布式锁配置
+     */
+    private Lock lock = new Lock();
+
+    /**
+     * 计数器配置
+     */
+    private Counter counter = new Counter();
+
+    /**
+     * 号段id生成器配置
+     */
+    private IdGenerator idGenerator = new IdGenerator();
+
+    /**
+     * 按key前缀的过期策略配置
+     */
+    private Expiry expiry = new Expiry();
+
+    /**
+     * key命名空间配置
+     */
+    private Namespace namespace = new Namespace();
+
+    /**
+     * 指标配置
+     */
+    private Metrics metrics = new Metrics();
+
+    /**
+     * 热key、大key探测配置
+     */
+    private HotKey hotKey = new HotKey();
+
+    /**
+     * 缓存注解(@RedisCacheable、@RedisCachePut、@RedisCacheEvict)配置
+     */
+    private AnnotationCache annotationCache = new AnnotationCache();
+
+    @Getter
+    @Setter
+    public static class NearCache {
+
+        /**
+         * 是否开启本地近端缓存，默认false不开启
+         */
+        private boolean enabled = false;
+
+        /**
+         * 本地缓存最大key数量
+         */
+        private long maximumSize = 10000;
+
+        /**
+         * 本地缓存写入后过期时间
+         */
+        private Duration expireAfterWrite = Duration.ofSeconds(30);
+
+        /**
+         * 需要走本地缓存的key前缀，为空时所有key都走本地缓存
+         */
+        private List<String> keyPrefixes = new ArrayList<>();
+
+        /**
+         * 失效通知的发布订阅channel
+         */
+        private String invalidateChannel = "gw:redis:near-cache:invalidate";
+    }
+
+    @Getter
+    @Setter
+    public static class RefreshAhead {
+
+        /**
+         * XFetch提前刷新系数，越大越倾向于提前刷新，默认1.0
+         */
+        private double beta = 1.0;
+
+        /**
+         * 逻辑过期后仍可返回旧值的宽限时间，key的实际过期时间为逻辑过期时间加上该值
+         */
+        private Duration staleGraceTime = Duration.ofSeconds(60);
+
+        /**
+         * 异步刷新线程池核心线程数
+         */
+        private int corePoolSize = 2;
+
+        /**
+         * 异步刷新线程池最大线程数
+         */
+        private int maxPoolSize = 8;
+
+        /**
+         * 异步刷新线程池队列长度，队列满时放弃本次刷新
+         */
+        private int queueCapacity = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Codec {
+
+        /**
+         * 默认编解码器：json、smile、cbor或自定义RedisValueCodec的名称，默认json
+         */
+        private String defaultCodec = "json";
+
+        /**
+         * key前缀 -&gt; 编解码器名称，最长前缀优先，含特殊字符的key需用[]包裹，如 key-prefix-codecs.[product:]=smile
+         */
+        private Map<String, String> keyPrefixCodecs = new LinkedHashMap<>();
+
+        /**
+         * json编解码器是否复用spring容器中的ObjectMapper，默认false使用new ObjectMapper()，与历史数据格式一致
+         * <span>开启后容器ObjectMapper的日期格式、NON_NULL/NON_EMPTY等配置会改变存储格式，滚动发布期间旧节点可能无法读取</span>
+         */
+        private boolean useSpringObjectMapper = false;
+
+        /**
+         * hash批量读取的结果数不小于该值时并行反序列化，默认0不并行
+         */
+        private int parallelDecodeThreshold = 0;
+    }
+
+    @Getter
+    @Setter
+    public static class Compression {
+
+        /**
+         * 写入时是否压缩，默认false；关闭时仍可读取其他节点写入的压缩数据
+         */
+        private boolean enabled = false;
+
+        /**
+         * 压缩算法：lz4、zstd或自定义RedisValueCompressor的名称，默认lz4
+         */
+        private String algorithm = "lz4";
+
+        /**
+         * 压缩阈值，序列化结果不小于该值时压缩
+         */
+        private DataSize threshold = DataSize.ofKilobytes(16);
+
+        /**
+         * key前缀 -&gt; 压缩阈值，最长前缀优先，含特殊字符的key需用[]包裹，如 key-prefix-thresholds.[product:]=4KB
+         */
+        private Map<String, DataSize> keyPrefixThresholds = new LinkedHashMap<>();
+
+        /**
+         * 允许的最大解压长度，压缩数据头中的原始长度超过该值时拒绝解压，默认64MB
+         */
+        private DataSize maxDecompressedSize = DataSize.ofMegabytes(64);
+
+        /**
+         * zstd压缩级别，1-22
+         */
+        private int zstdLevel = 3;
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimiter {
+
+        /**
+         * 限流key前缀
+         */
+        private String keyPrefix = "gw:rate-limit:";
+
+        /**
+         * redis异常时是否放行，默认true
+         */
+        private boolean failOpen = true;
+
+        /**
+         * 本地预取许可最多缓存的限流key数量
+         */
+        private long maximumLocalKeys = 10000;
+
+        /**
+         * web接口限流配置
+         */
+        private RateLimiterWeb web = new RateLimiterWeb();
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimiterWeb {
+
+        /**
+         * 是否开启web接口限流拦截器，默认false
+         */
+        private boolean enabled = false;
+
+        /**
+         * 标识客户端的请求头，默认为空；仅当remoteAddr为可信代理时使用，否则按客户端IP限流
+         */
+        private String clientHeader;
+
+        /**
+         * 可信代理的IP或CIDR，如 10.0.0.0/8；仅当remoteAddr为可信代理时才使用X-Forwarded-For，为空时只使用remoteAddr
+         */
+        private List<String> trustedProxies = new ArrayList<>();
+
+        /**
+         * 限流规则，按顺序匹配第一条
+         */
+        private List<WebRateLimitRule> rules = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    public static class WebRateLimitRule {
+
+        /**
+         * 请求路径，ant风格，如 /api/order/**
+         */
+        private String pathPattern;
+
+        /**
+         * 是否按具体URI分别限流，false时匹配pathPattern的所有URI共用限额
+         */
+        private boolean perUri = true;
+
+        /**
+         * 限流规则
+         */
+        private RateLimitRule rule = new RateLimitRule();
+    }
+
+    @Getter
+    @Setter
+    public static class Lock {
+
+        /**
+         * 锁释放消息的channel前缀，完整channel为前缀 + 锁key
+         */
+        private String channelPrefix = "gw:redis:lock:release:";
+
+        /**
+         * 看门狗续约检查间隔，锁的过期时间应不小于该间隔的3倍
+         */
+        private Duration watchdogInterval = Duration.ofMillis(500);
+
+        /**
+         * RedisLocks.acquire未指定等待时间时的最长等待时间
+         */
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Counter {
+
+        /**
+         * 分片计数器默认分片数，同一计数器的读写必须使用相同分片数
+         */
+        private int stripes = 16;
+
+        /**
+         * 缓冲计数器定时刷新间隔
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * 缓冲计数器待刷新key数量达到该值时立即刷新
+         */
+        private int flushThreshold = 10000;
+
+        /**
+         * 每个pipeline的最大INCRBY命令数
+         */
+        private int flushBatchSize = 500;
+
+        /**
+         * 刷新失败时需要保留增量重试的key前缀，其他key刷新失败后丢弃增量
+         */
+        private List<String> retryKeyPrefixes = new ArrayList<>();
+
+        /**
+         * 保留增量重试的最大刷新次数
+         */
+        private int maxRetries = 3;
+    }
+
+    @Getter
+    @Setter
+    public static class IdGenerator {
+
+        /**
+         * 初始号段长度，也是自适应调整的最小值
+         */
+        private long step = 1000;
+
+        /**
+         * 自适应调整的号段长度最大值
+         */
+        private long maxStep = 1000000;
+
+        /**
+         * 当前号段消耗该比例后异步预取下一号段
+         */
+        private double prefetchFraction = 0.1;
+
+        /**
+         * 期望一个号段的使用时长，实际消耗更快时号段翻倍，更慢时减半
+         */
+        private Duration segmentDuration = Duration.ofMinutes(15);
+    }
+
+    @Getter
+    @Setter
+    public static class Expiry {
+
+        /**
+         * key前缀 -&gt; 过期策略，最长前缀优先，含特殊字符的key需用[]包裹，如 policies.[product:].jitter=0.1
+         */
+        private Map<String, ExpiryPolicy> policies = new LinkedHashMap<>();
+
+        /**
+         * 读取续期的批量PEXPIRE间隔
+         */
+        private Duration touchInterval = Duration.ofSeconds(1);
+
+        /**
+         * 每个pipeline的最大PEXPIRE命令数
+         */
+        private int touchBatchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class ExpiryPolicy {
+
+        /**
+         * 过期时间随机增加的最大比例，如0.1表示在原过期时间上随机增加0~10%，避免同时过期
+         */
+        private double jitter = 0;
+
+        /**
+         * 未指定过期时间的写入使用的过期时间，为空时不设置
+         */
+        private Duration ttl;
+
+        /**
+         * 最大空闲时间：每次读取后过期时间重置为该值(滑动过期)，未指定过期时间且未配置ttl的写入也使用该值
+         */
+        private Duration maxIdle;
+    }
+
+    @Getter
+    @Setter
+    public static class Namespace {
+
+        /**
+         * 是否给starter组件读写的key加上spring.redis.prefix前缀，默认false不开启
+         * <li>开启后starter组件使用key序列化器为{@link fun.gangwan.data.redis.codec.PrefixedKeySerializer}的独立模板，
+         * 应用自己的StringRedisTemplate不受影响；已有的不带前缀的数据不再可见，需迁移后开启</li>
+         */
+        private boolean enabled = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Metrics {
+
+        /**
+         * 是否记录micrometer指标，需引入micrometer-core且容器中存在MeterRegistry，默认true
+         */
+        private boolean enabled = true;
+
+        /**
+         * 是否发布百分位直方图，默认false只记录次数、总耗时和最大值
+         */
+        private boolean percentileHistogram = false;
+
+        /**
+         * 指标中的key前缀，最长前缀优先，未匹配的key记为other；为空时按keyPrefixDelimiter自动截取
+         */
+        private List<String> keyPrefixes = new ArrayList<>();
+
+        /**
+         * 自动截取key前缀的分隔符，截取第一个分隔符之前的部分
+         */
+        private String keyPrefixDelimiter = ":";
+
+        /**
+         * 自动截取的key前缀最大个数，超过后新出现的前缀记为other，防止指标数量无限增长
+         */
+        private int maxKeyPrefixes = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class HotKey {
+
+        /**
+         * 是否开启热key、大key探测，默认false不开启
+         */
+        private boolean enabled = false;
+
+        /**
+         * 采样率，每N次读写抽样记录1次
+         */
+        private int sampleRate = 16;
+
+        /**
+         * 每个窗口产出的访问次数、字节数top-N
+         */
+        private int topN = 20;
+
+        /**
+         * 统计窗口
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * 一个窗口内访问次数估算值达到该值的top-N key判定为热key，小于等于0时不判定
+         */
+        private long hotThreshold = 10000;
+
+        /**
+         * count-min sketch每行的计数器个数，向上取2的幂
+         */
+        private int sketchWidth = 2048;
+
+        /**
+         * count-min sketch行数，最大8
+         */
+        private int sketchDepth = 4;
+
+        /**
+         * 热key本地缓存，只使用enabled、maximumSize、expireAfterWrite
+         */
+        private NearCache localCache = defaultLocalCache();
+
+        private static NearCache defaultLocalCache() {
+            NearCache localCache = new NearCache();
+            localCache.setMaximumSize(1000);
+            localCache.setExpireAfterWrite(Duration.ofSeconds(1));
+            return localCache;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class AnnotationCache {
+
+        /**
+         * 是否开启缓存注解，默认false；开启后容器中带缓存注解的bean会被代理
+         */
+        private boolean enabled = false;
+
+        /**
+         * 注解本地缓存(L1)最大key数量，只有注解设置了localTtlMillis的方法使用
+         */
+        private long localMaximumSize = 10000;
+
+        /**
+         * 未命中时加载数据的分布式锁超时时间，注解未指定时使用
+         */
+        private Duration waitLockTime = Duration.ofSeconds(10);
+    }
+
+}
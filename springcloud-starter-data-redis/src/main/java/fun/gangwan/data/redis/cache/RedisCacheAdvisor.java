@@ -0,0 +1,44 @@
+package fun.gangwan.data.redis.cache;
+
+import org.aopalliance.aop.Advice;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+
+import java.lang.reflect.Method;
+
+/**
+ *
+ * RedisCacheAdvisor
+ * <span>匹配带@RedisCacheable、@RedisCachePut、@RedisCacheEvict的方法，注解可在实现类或接口方法上</span>
+ *
+ */
+public class RedisCacheAdvisor extends AbstractPointcutAdvisor {
+
+    private final RedisCacheInterceptor interceptor;
+
+    private final Pointcut pointcut = new StaticMethodMatcherPointcut() {
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            Method specific = AopUtils.getMostSpecificMethod(method, targetClass);
+            return RedisCacheInterceptor.isAnnotated(specific)
+                    || (specific != method && RedisCacheInterceptor.isAnnotated(method));
+        }
+    };
+
+    public RedisCacheAdvisor(RedisCacheInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public Pointcut getPointcut() {
+        return pointcut;
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return interceptor;
+    }
+
+}
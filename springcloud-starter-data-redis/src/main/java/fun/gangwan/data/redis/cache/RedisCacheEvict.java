@@ -0,0 +1,42 @@
+package fun.gangwan.data.redis.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *
+ * RedisCacheEvict
+ * <span>删除缓存，同时失效本节点的注解本地缓存</span>
+ * <li>key表达式的值为集合或数组时删除每个元素对应的key，如 key = "#ids"</li>
+ * <li>默认方法正常返回后删除，可通过#result引用返回值；方法抛出异常时不删除</li>
+ *
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RedisCacheEvict {
+
+    /**
+     * key前缀，为空时为 类名.方法名:，与RedisCacheable配合时需指定相同的prefix
+     */
+    String prefix() default "";
+
+    /**
+     * key的SpEL表达式，为空时为全部参数以:拼接
+     */
+    String key() default "";
+
+    /**
+     * 删除条件的SpEL表达式，为空或结果为true时删除
+     */
+    String condition() default "";
+
+    /**
+     * 是否在方法执行前删除
+     */
+    boolean beforeInvocation() default false;
+
+}
@@ -0,0 +1,489 @@
+package fun.gangwan.data.redis.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import fun.gangwan.data.redis.codec.RedisValueCodecs;
+import fun.gangwan.data.redis.util.RedisUtils;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.BridgeMethodResolver;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * RedisCacheInterceptor
+ * <span>处理@RedisCacheable、@RedisCachePut、@RedisCacheEvict，缓存读写都通过RedisUtils，共用其编解码、过期策略、热key探测</span>
+ * <li>单个key未命中时走RedisUtils.redisGetOrLoad，JVM内请求合并、分布式锁防缓存击穿</li>
+ * <li>批量方法未命中的元素走RedisUtils.redisMultiGetOrSet，一次MGET、一次方法调用、一次pipeline回写</li>
+ * <li>注解本地缓存(L1)按注解的localTtlMillis过期，只在本节点RedisCachePut、RedisCacheEvict时失效</li>
+ * <li>方法的注解解析、SpEL表达式解析结果均缓存，不在每次调用时重复解析</li>
+ *
+ */
+@Slf4j
+public class RedisCacheInterceptor implements MethodInterceptor {
+
+    private static final String ITEM = "item";
+
+    private static final String RESULT = "result";
+
+    private static final String KEY_DELIMITER = ":";
+
+    private final ObjectProvider<RedisUtils> redisUtils;
+
+    private final long defaultWaitLockMillis;
+
+    private final Cache<String, LocalValue> localCache;
+
+    private final ConcurrentMap<MethodClassKey, CacheMethod> methods = new ConcurrentHashMap<>(64);
+
+    private final ConcurrentMap<String, Expression> expressions = new ConcurrentHashMap<>(64);
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    public RedisCacheInterceptor(ObjectProvider<RedisUtils> redisUtils, RedisHelperProperties.AnnotationCache config) {
+        this.redisUtils = redisUtils;
+        this.defaultWaitLockMillis = config.getWaitLockTime().toMillis();
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(config.getLocalMaximumSize())
+                .expireAfter(new Expiry<String, LocalValue>() {
+                    @Override
+                    public long expireAfterCreate(String key, LocalValue value, long currentTime) {
+                        return value.getTtlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, LocalValue value, long currentTime,
+                                                  long currentDuration) {
+                        return value.getTtlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, LocalValue value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @param method 方法
+     * @return 方法上是否有缓存注解
+     */
+    public static boolean isAnnotated(Method method) {
+        return AnnotatedElementUtils.hasAnnotation(method, RedisCacheable.class)
+                || AnnotatedElementUtils.hasAnnotation(method, RedisCachePut.class)
+                || AnnotatedElementUtils.hasAnnotation(method, RedisCacheEvict.class);
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        RedisUtils utils = redisUtils.getIfAvailable();
+        if (null == utils) {
+            return invocation.proceed();
+        }
+        Object target = invocation.getThis();
+        Class<?> targetClass = null == target
+                ? invocation.getMethod().getDeclaringClass() : AopUtils.getTargetClass(target);
+        CacheMethod cacheMethod = methods.computeIfAbsent(new MethodClassKey(invocation.getMethod(), targetClass),
+                k -> new CacheMethod(invocation.getMethod(), targetClass));
+        Object[] args = invocation.getArguments();
+        EvaluationContext context = new MethodBasedEvaluationContext(
+                new RootObject(cacheMethod.getMethod(), args, target, targetClass),
+                cacheMethod.getMethod(), args, parameterNameDiscoverer);
+
+        RedisCacheEvict evict = cacheMethod.getEvict();
+        if (null != evict && evict.beforeInvocation() && matches(evict.condition(), context)) {
+            evict(utils, cacheMethod, evict, args, context);
+        }
+
+        Object result;
+        RedisCacheable cacheable = cacheMethod.getCacheable();
+        try {
+            if (null == cacheable || !matches(cacheable.condition(), context)) {
+                result = invocation.proceed();
+            } else if (cacheMethod.isBatch()) {
+                result = batchGet(utils, invocation, cacheMethod, cacheable, context);
+            } else {
+                result = get(utils, invocation, cacheMethod, cacheable, context);
+            }
+        } catch (LoadException e) {
+            throw e.getCause();
+        }
+
+        context.setVariable(RESULT, result);
+        RedisCachePut put = cacheMethod.getPut();
+        if (null != put && matches(put.condition(), context)) {
+            String key = cacheMethod.getPutPrefix() + keyOf(put.key(), args, context);
+            localCache.invalidate(key);
+            if (null != result) {
+                utils.redisSet(key, result, ttlMillis(put.ttl(), put.timeUnit(), put.jitter()),
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        if (null != evict && !evict.beforeInvocation() && matches(evict.condition(), context)) {
+            evict(utils, cacheMethod, evict, args, context);
+        }
+        return result;
+    }
+
+    private Object get(RedisUtils utils, MethodInvocation invocation, CacheMethod cacheMethod,
+                       RedisCacheable cacheable, EvaluationContext context) {
+        Object[] args = invocation.getArguments();
+        String key = cacheMethod.getCacheablePrefix() + keyOf(cacheable.key(), args, context);
+        Object value = localGet(key, cacheable.localTtlMillis());
+        if (null != value) {
+            return value;
+        }
+        value = utils.redisGetOrLoad(key, () -> proceed(invocation, args),
+                ttlMillis(cacheable.ttl(), cacheable.timeUnit(), cacheable.jitter()),
+                waitLockMillis(cacheable), cacheMethod.getReturnType());
+        localPut(key, value, cacheable.localTtlMillis());
+        return value;
+    }
+
+    /**
+     * 按集合参数的元素批量读取，未命中的元素合并为一次方法调用
+     */
+    private Object batchGet(RedisUtils utils, MethodInvocation invocation, CacheMethod cacheMethod,
+                            RedisCacheable cacheable, EvaluationContext context) throws Throwable {
+        Collection<?> items = (Collection<?>) invocation.getArguments()[cacheMethod.getBatchIndex()];
+        if (null == items || items.isEmpty()) {
+            return invocation.proceed();
+        }
+        Map<String, Object> itemsByKey = new LinkedHashMap<>(items.size() * 2);
+        for (Object item : items) {
+            itemsByKey.putIfAbsent(itemKey(cacheMethod, cacheable, item, context), item);
+        }
+        Map<String, Object> values = new HashMap<>(itemsByKey.size() * 2);
+        List<String> misses = new ArrayList<>(itemsByKey.size());
+        for (String key : itemsByKey.keySet()) {
+            Object value = localGet(key, cacheable.localTtlMillis());
+            if (null == value) {
+                misses.add(key);
+            } else {
+                values.put(key, value);
+            }
+        }
+        if (!misses.isEmpty()) {
+            Map<String, Object> loaded = utils.redisMultiGetOrSet(misses,
+                    keys -> loadItems(invocation, cacheMethod, cacheable, context, itemsByKey, keys),
+                    ttlMillis(cacheable.ttl(), cacheable.timeUnit(), cacheable.jitter()),
+                    waitLockMillis(cacheable), cacheMethod.getElementType());
+            loaded.forEach((key, value) -> localPut(key, value, cacheable.localTtlMillis()));
+            values.putAll(loaded);
+        }
+        return cacheMethod.assemble(itemsByKey, values);
+    }
+
+    /**
+     * 以未命中的元素调用一次方法，结果按元素对应的key返回
+     */
+    private Map<String, Object> loadItems(MethodInvocation invocation, CacheMethod cacheMethod,
+                                          RedisCacheable cacheable, EvaluationContext context,
+                                          Map<String, Object> itemsByKey, Collection<String> keys) {
+        Collection<Object> missItems = cacheMethod.newItems(keys.size());
+        for (String key : keys) {
+            missItems.add(itemsByKey.get(key));
+        }
+        Object[] args = invocation.getArguments().clone();
+        args[cacheMethod.getBatchIndex()] = missItems;
+        Object loaded = proceed(invocation, args);
+        Map<String, Object> result = new HashMap<>(keys.size() * 2);
+        if (loaded instanceof Map) {
+            ((Map<?, ?>) loaded).forEach((item, value) -> {
+                if (null != value) {
+                    result.put(itemKey(cacheMethod, cacheable, item, context), value);
+                }
+            });
+        } else if (loaded instanceof Collection) {
+            Expression itemId = expression(cacheable.itemId());
+            for (Object value : (Collection<?>) loaded) {
+                if (null != value) {
+                    result.put(itemKey(cacheMethod, cacheable, itemId.getValue(value), context), value);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void evict(RedisUtils utils, CacheMethod cacheMethod, RedisCacheEvict evict, Object[] args,
+                       EvaluationContext context) {
+        Object value = evict.key().isEmpty() ? keyOf("", args, context) : expression(evict.key()).getValue(context);
+        Object[] parts = value instanceof Collection ? ((Collection<?>) value).toArray()
+                : ObjectUtils.isArray(value) ? ObjectUtils.toObjectArray(value) : new Object[]{value};
+        for (Object part : parts) {
+            String key = cacheMethod.getEvictPrefix() + ObjectUtils.nullSafeToString(part);
+            localCache.invalidate(key);
+            utils.redisDelete(key);
+        }
+    }
+
+    private String itemKey(CacheMethod cacheMethod, RedisCacheable cacheable, Object item,
+                           EvaluationContext context) {
+        if (cacheable.key().isEmpty()) {
+            return cacheMethod.getCacheablePrefix() + ObjectUtils.nullSafeToString(item);
+        }
+        context.setVariable(ITEM, item);
+        return cacheMethod.getCacheablePrefix()
+                + ObjectUtils.nullSafeToString(expression(cacheable.key()).getValue(context));
+    }
+
+    /**
+     * key表达式为空时为全部参数以:拼接
+     */
+    private String keyOf(String key, Object[] args, EvaluationContext context) {
+        if (key.isEmpty()) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    builder.append(KEY_DELIMITER);
+                }
+                builder.append(ObjectUtils.nullSafeToString(args[i]));
+            }
+            return builder.toString();
+        }
+        return ObjectUtils.nullSafeToString(expression(key).getValue(context));
+    }
+
+    private boolean matches(String condition, EvaluationContext context) {
+        return condition.isEmpty() || Boolean.TRUE.equals(expression(condition).getValue(context, Boolean.class));
+    }
+
+    private Expression expression(String expression) {
+        Expression parsed = expressions.get(expression);
+        if (null == parsed) {
+            parsed = expressions.computeIfAbsent(expression, parser::parseExpression);
+        }
+        return parsed;
+    }
+
+    private Object localGet(String key, long localTtlMillis) {
+        if (localTtlMillis <= 0) {
+            return null;
+        }
+        LocalValue value = localCache.getIfPresent(key);
+        return null == value ? null : value.getValue();
+    }
+
+    private void localPut(String key, Object value, long localTtlMillis) {
+        if (localTtlMillis > 0 && null != value) {
+            localCache.put(key, new LocalValue(value, TimeUnit.MILLISECONDS.toNanos(localTtlMillis)));
+        }
+    }
+
+    private long waitLockMillis(RedisCacheable cacheable) {
+        return cacheable.waitLockMillis() > 0 ? cacheable.waitLockMillis() : defaultWaitLockMillis;
+    }
+
+    private static long ttlMillis(long ttl, TimeUnit unit, double jitter) {
+        if (ttl <= 0) {
+            return 0;
+        }
+        long millis = unit.toMillis(ttl);
+        long bound = (long) (millis * jitter);
+        return bound <= 0 ? millis : millis + ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * 调用被代理的方法，可重复调用；受检异常包装为LoadException穿过加载回调
+     */
+    private static Object proceed(MethodInvocation invocation, Object[] args) {
+        try {
+            if (invocation instanceof ProxyMethodInvocation) {
+                return ((ProxyMethodInvocation) invocation).invocableClone(args).proceed();
+            }
+            return invocation.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new LoadException(e);
+        }
+    }
+
+    /**
+     * 方法上的缓存注解和批量参数，每个方法解析一次
+     */
+    @Getter
+    private static class CacheMethod {
+
+        private final Method method;
+
+        private final RedisCacheable cacheable;
+
+        private final RedisCachePut put;
+
+        private final RedisCacheEvict evict;
+
+        private final String cacheablePrefix;
+
+        private final String putPrefix;
+
+        private final String evictPrefix;
+
+        private final JavaType returnType;
+
+        /**
+         * 批量缓存的集合参数下标，不批量时为-1
+         */
+        private final int batchIndex;
+
+        private final JavaType elementType;
+
+        private final boolean mapResult;
+
+        private final boolean setResult;
+
+        private final boolean setItems;
+
+        CacheMethod(Method method, Class<?> targetClass) {
+            Method specific = BridgeMethodResolver.findBridgedMethod(AopUtils.getMostSpecificMethod(method, targetClass));
+            this.method = specific;
+            this.cacheable = find(specific, method, RedisCacheable.class);
+            this.put = find(specific, method, RedisCachePut.class);
+            this.evict = find(specific, method, RedisCacheEvict.class);
+            String defaultPrefix = ClassUtils.getUserClass(targetClass).getSimpleName() + "." + specific.getName()
+                    + KEY_DELIMITER;
+            this.cacheablePrefix = null == cacheable || cacheable.prefix().isEmpty() ? defaultPrefix : cacheable.prefix();
+            this.putPrefix = null == put || put.prefix().isEmpty() ? defaultPrefix : put.prefix();
+            this.evictPrefix = null == evict || evict.prefix().isEmpty() ? defaultPrefix : evict.prefix();
+            this.returnType = RedisValueCodecs.type(specific.getGenericReturnType());
+            if (null != cacheable && specific.getReturnType() == void.class) {
+                throw new IllegalStateException("@RedisCacheable不能用于void方法:" + specific);
+            }
+
+            Class<?> returnClass = specific.getReturnType();
+            this.mapResult = Map.class.isAssignableFrom(returnClass) && returnClass.isAssignableFrom(LinkedHashMap.class);
+            boolean listResult = Collection.class.isAssignableFrom(returnClass)
+                    && returnClass.isAssignableFrom(ArrayList.class);
+            this.setResult = !listResult && Collection.class.isAssignableFrom(returnClass)
+                    && returnClass.isAssignableFrom(LinkedHashSet.class);
+            int index = -1;
+            boolean itemsSet = false;
+            if (null != cacheable && cacheable.batch()
+                    && (mapResult || ((listResult || setResult) && !cacheable.itemId().isEmpty()))) {
+                Class<?>[] parameterTypes = specific.getParameterTypes();
+                for (int i = 0; i < parameterTypes.length && index < 0; i++) {
+                    if (Collection.class.isAssignableFrom(parameterTypes[i])) {
+                        if (parameterTypes[i].isAssignableFrom(ArrayList.class)) {
+                            index = i;
+                        } else if (parameterTypes[i].isAssignableFrom(LinkedHashSet.class)) {
+                            index = i;
+                            itemsSet = true;
+                        }
+                    }
+                }
+            }
+            this.batchIndex = index;
+            this.setItems = itemsSet;
+            this.elementType = index < 0 ? null : returnType.getContentType();
+        }
+
+        boolean isBatch() {
+            return batchIndex >= 0;
+        }
+
+        Collection<Object> newItems(int size) {
+            return setItems ? new LinkedHashSet<>(size * 2) : new ArrayList<>(size);
+        }
+
+        /**
+         * 按集合参数的顺序组装返回值，缺少的元素不放入
+         */
+        Object assemble(Map<String, Object> itemsByKey, Map<String, Object> values) {
+            if (mapResult) {
+                Map<Object, Object> result = new LinkedHashMap<>(itemsByKey.size() * 2);
+                itemsByKey.forEach((key, item) -> {
+                    Object value = values.get(key);
+                    if (null != value) {
+                        result.put(item, value);
+                    }
+                });
+                return result;
+            }
+            Collection<Object> result = setResult
+                    ? new LinkedHashSet<>(itemsByKey.size() * 2) : new ArrayList<>(itemsByKey.size());
+            for (String key : itemsByKey.keySet()) {
+                Object value = values.get(key);
+                if (null != value) {
+                    result.add(value);
+                }
+            }
+            return result;
+        }
+
+        private static <A extends Annotation> A find(Method specific, Method method, Class<A> type) {
+            A annotation = AnnotatedElementUtils.findMergedAnnotation(specific, type);
+            return null != annotation || specific == method ? annotation
+                    : AnnotatedElementUtils.findMergedAnnotation(method, type);
+        }
+    }
+
+    /**
+     * SpEL根对象，#root.method、#root.args、#root.target、#root.targetClass
+     */
+    @Value
+    public static class RootObject {
+
+        Method method;
+
+        Object[] args;
+
+        Object target;
+
+        Class<?> targetClass;
+    }
+
+    @Value
+    private static class LocalValue {
+
+        Object value;
+
+        long ttlNanos;
+    }
+
+    /**
+     * 方法抛出的受检异常，在invoke中还原
+     */
+    private static class LoadException extends RuntimeException {
+
+        LoadException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+}
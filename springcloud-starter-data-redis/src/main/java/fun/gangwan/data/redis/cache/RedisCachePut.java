@@ -0,0 +1,52 @@
+package fun.gangwan.data.redis.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * RedisCachePut
+ * <span>方法执行后将返回值写入缓存，返回null时不写入；同时失效本节点的注解本地缓存</span>
+ * <li>key、condition表达式可通过#result引用返回值，其余同RedisCacheable</li>
+ *
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RedisCachePut {
+
+    /**
+     * key前缀，为空时为 类名.方法名:，与RedisCacheable配合时需指定相同的prefix
+     */
+    String prefix() default "";
+
+    /**
+     * key的SpEL表达式，为空时为全部参数以:拼接
+     */
+    String key() default "";
+
+    /**
+     * 写入条件的SpEL表达式，为空或结果为true时写入
+     */
+    String condition() default "";
+
+    /**
+     * 过期时间，小于等于0时按key前缀的过期策略，未配置策略时不过期
+     */
+    long ttl() default 0;
+
+    /**
+     * 过期时间单位
+     */
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * 过期时间随机抖动比例，实际过期时间在 ttl ~ ttl * (1 + jitter) 之间
+     */
+    double jitter() default 0;
+
+}
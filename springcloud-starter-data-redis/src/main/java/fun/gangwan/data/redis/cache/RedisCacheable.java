@@ -0,0 +1,84 @@
+package fun.gangwan.data.redis.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * RedisCacheable
+ * <span>cache-aside缓存注解：先读redis，未命中时调用方法加载并写入，基于RedisUtils的get or set防缓存击穿</span>
+ * <li>key为 prefix + key表达式的值，表达式为SpEL，可引用方法参数(#参数名、#p0、#a0)和#root.method、#root.args、#root.target</li>
+ * <li>方法有集合参数且返回List、Set、Map时按元素批量缓存：一次MGET读取，未命中的元素合并为一次方法调用加载，
+ * key表达式中以#item引用集合元素；返回List、Set时需设置itemId从结果元素取得对应的集合元素</li>
+ * <li>方法返回null或批量结果中缺少的元素不写入缓存，下次调用仍会加载</li>
+ * <li>同一实例内部的方法调用不经过代理，注解不生效</li>
+ *
+ * <pre>
+ * &#64;RedisCacheable(prefix = "user:", key = "#id", ttl = 30, timeUnit = TimeUnit.MINUTES, jitter = 0.1)
+ * public UserDto findById(Long id)
+ *
+ * &#64;RedisCacheable(prefix = "user:", key = "#item", itemId = "id", ttl = 30, timeUnit = TimeUnit.MINUTES)
+ * public List&lt;UserDto&gt; findByIds(List&lt;Long&gt; ids)
+ * </pre>
+ *
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RedisCacheable {
+
+    /**
+     * key前缀，为空时为 类名.方法名:
+     */
+    String prefix() default "";
+
+    /**
+     * key的SpEL表达式，为空时为全部参数以:拼接；批量时为空表示集合元素本身
+     */
+    String key() default "";
+
+    /**
+     * 缓存条件的SpEL表达式，为空或结果为true时走缓存，否则直接调用方法
+     */
+    String condition() default "";
+
+    /**
+     * 批量方法返回List、Set时，结果元素对应的集合元素的SpEL表达式，以结果元素为根对象，如 id
+     */
+    String itemId() default "";
+
+    /**
+     * 是否按集合参数的元素批量缓存，为false时整个结果作为一个key缓存
+     */
+    boolean batch() default true;
+
+    /**
+     * 过期时间，小于等于0时按key前缀的过期策略，未配置策略时不过期
+     */
+    long ttl() default 0;
+
+    /**
+     * 过期时间单位
+     */
+    TimeUnit timeUnit() default TimeUnit.SECONDS;
+
+    /**
+     * 过期时间随机抖动比例，实际过期时间在 ttl ~ ttl * (1 + jitter) 之间，避免同时过期
+     */
+    double jitter() default 0;
+
+    /**
+     * 本地缓存(L1)过期时间ms，小于等于0时不使用本地缓存；其他节点更新后本节点最多在过期前读到旧值
+     */
+    long localTtlMillis() default 0;
+
+    /**
+     * 未命中时加载数据的分布式锁超时时间ms，小于等于0时使用spring.redis.helper.annotation-cache.wait-lock-time
+     */
+    long waitLockMillis() default 0;
+
+}
@@ -0,0 +1,169 @@
+package fun.gangwan.data.redis.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * RedisNearCache
+ * <span>Redis本地近端缓存(L1)，缓存反序列化后的对象，淘汰策略为Caffeine的W-TinyLFU</span>
+ * <span>写操作通过发布订阅通知所有节点失效对应key，未开启近端缓存的节点写入时不会发布失效消息，只能依赖本地过期时间兜底</span>
+ * <span>注意：返回的是共享对象实例，调用方不要修改其内容</span>
+ * <span>读取redis前取得key的版本号，写入本地缓存时版本号已变化则不写入，避免读取期间收到的失效通知被旧值覆盖</span>
+ *
+ */
+@Slf4j
+public class RedisNearCache implements MessageListener {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    /**
+     * redis key -> (hashKey, clazz) -> 反序列化后的对象
+     */
+    private final Cache<String, ConcurrentMap<SubKey, Object>> cache;
+
+    private final List<String> keyPrefixes;
+
+    private final String invalidateChannel;
+
+    /**
+     * 按key哈希分段的版本号，失效时递增
+     */
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public RedisNearCache(RedisHelperProperties.NearCache config) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite().toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        this.keyPrefixes = config.getKeyPrefixes();
+        this.invalidateChannel = config.getInvalidateChannel();
+    }
+
+    /**
+     * 判断key是否需要走本地缓存
+     * @param key redis key
+     * @return 配置的前缀为空或key匹配任一前缀时返回true
+     */
+    public boolean isCacheable(String key) {
+        if (key == null) {
+            return false;
+        }
+        if (keyPrefixes == null || keyPrefixes.isEmpty()) {
+            return true;
+        }
+        for (String prefix : keyPrefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取本地缓存的对象
+     * @param key redis key
+     * @param hashKey hashKey，String结构传null
+     * @param clazz 反序列化类型
+     * @param <T> T
+     * @return 未命中返回<code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, String hashKey, Class<? extends T> clazz) {
+        ConcurrentMap<SubKey, Object> values = cache.getIfPresent(key);
+        if (values == null) {
+            return null;
+        }
+        return (T) values.get(new SubKey(hashKey, clazz));
+    }
+
+    /**
+     * 读取redis前调用，写入本地缓存时传入
+     * @param key redis key
+     * @return key当前的版本号
+     */
+    public long generation(String key) {
+        return generations.get(stripe(key));
+    }
+
+    /**
+     * 写入本地缓存，value为null或读取期间key被失效时不缓存
+     * @param key redis key
+     * @param hashKey hashKey，String结构传null
+     * @param clazz 反序列化类型
+     * @param value 反序列化后的对象
+     * @param generation 读取redis前通过generation(key)取得的版本号
+     */
+    public void put(String key, String hashKey, Class<?> clazz, Object value, long generation) {
+        if (value == null) {
+            return;
+        }
+        int stripe = stripe(key);
+        if (generations.get(stripe) != generation) {
+            return;
+        }
+        cache.get(key, k -> new ConcurrentHashMap<>(4)).put(new SubKey(hashKey, clazz), value);
+        if (generations.get(stripe) != generation) {
+            //写入期间收到失效通知
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 失效本节点key下所有本地缓存
+     * @param key redis key
+     */
+    public void invalidate(String key) {
+        generations.incrementAndGet(stripe(key));
+        cache.invalidate(key);
+    }
+
+    /**
+     * 清空本节点本地缓存
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    public String getInvalidateChannel() {
+        return invalidateChannel;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (log.isDebugEnabled()) {
+            log.debug("收到本地缓存失效通知:key={}", key);
+        }
+        invalidate(key);
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    @Value
+    private static class SubKey {
+
+        String hashKey;
+
+        Class<?> type;
+    }
+
+}
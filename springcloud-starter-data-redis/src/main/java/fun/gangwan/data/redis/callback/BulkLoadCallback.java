@@ -0,0 +1,23 @@
+package fun.gangwan.data.redis.callback;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <p>
+ * 批量获取数据，{@link LoadCallback}的批量版本，当前用于 {@link fun.gangwan.data.redis.util.RedisUtils#redisMultiGetOrSet}。
+ * 如根据一批id从db中获取数据
+ * </p>
+ *
+ */
+public interface BulkLoadCallback<T> {
+    /**
+     * <p>
+     * 批量加载数据
+     * </p>
+     *
+     * @param keys 缓存未命中的redis key集合
+     * @return redis key -&gt; 数据，不存在的数据不需要放入
+     */
+    Map<String, T> load(Collection<String> keys);
+}
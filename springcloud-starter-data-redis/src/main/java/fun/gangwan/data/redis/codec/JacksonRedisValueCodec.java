@@ -0,0 +1,105 @@
+package fun.gangwan.data.redis.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ *
+ * JacksonRedisValueCodec
+ * <span>基于jackson ObjectMapper的编解码器，json、smile、cbor共用</span>
+ * <span>反序列化按目标类型缓存ObjectReader，避免每次readValue查找反序列化器</span>
+ * <span>smile、cbor需要业务方引入jackson-dataformat-smile、jackson-dataformat-cbor，由自动配置按classpath注册</span>
+ *
+ */
+public class JacksonRedisValueCodec implements RedisValueCodec {
+
+    public static final String JSON = "json";
+
+    public static final String SMILE = "smile";
+
+    public static final String CBOR = "cbor";
+
+    public static final byte SMILE_ID = 0x01;
+
+    public static final byte CBOR_ID = 0x02;
+
+    private final String name;
+
+    private final byte id;
+
+    private final ObjectMapper mapper;
+
+    /**
+     * 目标类型 -&gt; ObjectReader
+     */
+    private final ConcurrentMap<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public JacksonRedisValueCodec(String name, byte id, ObjectMapper mapper) {
+        this.name = name;
+        this.id = id;
+        this.mapper = mapper;
+    }
+
+    /**
+     * @param mapper json mapper，通常为spring容器中的ObjectMapper
+     * @return json编解码器
+     */
+    public static JacksonRedisValueCodec json(ObjectMapper mapper) {
+        return new JacksonRedisValueCodec(JSON, RedisValueCodecs.JSON_ID, mapper);
+    }
+
+    /**
+     * @return 与RedisUtils原有json序列化配置一致的json编解码器
+     */
+    public static JacksonRedisValueCodec json() {
+        return of(JSON, RedisValueCodecs.JSON_ID, new ObjectMapper());
+    }
+
+    /**
+     * @param name 编解码器名称
+     * @param id 头字节
+     * @param mapper smile、cbor等二进制格式的mapper
+     * @return 忽略未知字段的编解码器
+     */
+    public static JacksonRedisValueCodec of(String name, byte id, ObjectMapper mapper) {
+        return new JacksonRedisValueCodec(name, id, lenient(mapper));
+    }
+
+    private static ObjectMapper lenient(ObjectMapper mapper) {
+        return mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public byte getId() {
+        return id;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws Exception {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, int offset, int length, JavaType type) throws Exception {
+        ObjectReader reader = readers.get(type);
+        if (null == reader) {
+            reader = readers.computeIfAbsent(type, mapper::readerFor);
+        }
+        return reader.readValue(bytes, offset, length);
+    }
+
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+}
@@ -0,0 +1,58 @@
+package fun.gangwan.data.redis.codec;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ *
+ * Lz4RedisValueCompressor
+ * <span>LZ4压缩，速度优先，需要依赖lz4-java</span>
+ * <span>解压使用safeDecompressor按压缩数据长度解压，不信任帧头中的原始长度，防止损坏或外部写入的数据越界读取</span>
+ *
+ */
+public class Lz4RedisValueCompressor implements RedisValueCompressor {
+
+    public static final String NAME = "lz4";
+
+    public static final byte ID = 0x11;
+
+    private final LZ4Compressor compressor;
+
+    private final LZ4SafeDecompressor decompressor;
+
+    public Lz4RedisValueCompressor() {
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] src) {
+        return compressor.compress(src);
+    }
+
+    @Override
+    public byte[] decompress(byte[] src, int offset, int length, int originalLength) {
+        if (originalLength < 0) {
+            throw new IllegalStateException("lz4解压失败:原始长度非法:" + originalLength);
+        }
+        byte[] dest = new byte[originalLength];
+        int size = decompressor.decompress(src, offset, length, dest, 0, originalLength);
+        if (size != originalLength) {
+            throw new IllegalStateException("lz4解压失败:解压长度" + size + "与原始长度" + originalLength + "不一致");
+        }
+        return dest;
+    }
+
+}
@@ -0,0 +1,165 @@
+package fun.gangwan.data.redis.codec;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ *
+ * PrefixedKeySerializer
+ * <span>带命名空间前缀的key序列化器：前缀的UTF-8字节预先编码，序列化时先计算key的UTF-8长度，
+ * 再把前缀和key直接写入一个长度精确的byte[]，不拼接字符串、不产生中间数组</span>
+ * <li>返回的byte[]由驱动异步持有，不能复用，每次序列化只分配这一个数组</li>
+ * <li>反序列化(KEYS、SCAN结果)时去掉前缀，业务代码始终使用不带前缀的key</li>
+ * <li>集群按key中第一个{...}计算slot，前缀不允许包含'{'、'}'，key自带的hash tag加前缀后仍然生效，
+ * 使用{@link #tagged}生成的key落在同一slot，可用于MGET、Lua等多key命令</li>
+ *
+ */
+public class PrefixedKeySerializer implements RedisSerializer<String> {
+
+    private final String prefix;
+
+    private final byte[] prefixBytes;
+
+    public PrefixedKeySerializer(String prefix) {
+        if (null == prefix || prefix.isEmpty()) {
+            throw new IllegalArgumentException("key前缀不能为空");
+        }
+        if (prefix.indexOf('{') >= 0 || prefix.indexOf('}') >= 0) {
+            throw new IllegalArgumentException("key前缀不能包含hash tag字符'{'、'}':" + prefix);
+        }
+        this.prefix = prefix;
+        this.prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 生成带hash tag的key，相同tag的key在集群中落在同一slot
+     *
+     * @param tag hash tag，如用户id
+     * @param key tag之后的部分
+     * @return {tag}key
+     */
+    public static String tagged(String tag, String key) {
+        if (null == tag || tag.isEmpty() || tag.indexOf('}') >= 0) {
+            throw new IllegalArgumentException("hash tag不能为空且不能包含'}':" + tag);
+        }
+        return new StringBuilder(tag.length() + key.length() + 2).append('{').append(tag).append('}').append(key)
+                .toString();
+    }
+
+    @Override
+    public byte[] serialize(String key) {
+        if (null == key) {
+            return null;
+        }
+        int keyLength = key.length();
+        int utf8Length = utf8Length(key, keyLength);
+        byte[] raw = new byte[prefixBytes.length + utf8Length];
+        System.arraycopy(prefixBytes, 0, raw, 0, prefixBytes.length);
+        writeUtf8(key, keyLength, raw, prefixBytes.length);
+        return raw;
+    }
+
+    @Override
+    public String deserialize(byte[] bytes) {
+        if (null == bytes) {
+            return null;
+        }
+        if (hasPrefix(bytes)) {
+            return new String(bytes, prefixBytes.length, bytes.length - prefixBytes.length, StandardCharsets.UTF_8);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * SCAN/KEYS的匹配规则加上前缀，前缀中的通配符按字面匹配
+     *
+     * @param pattern 不带前缀的匹配规则
+     * @return 带前缀的匹配规则
+     */
+    public String toPattern(String pattern) {
+        StringBuilder builder = new StringBuilder(prefix.length() + pattern.length() + 4);
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.append(pattern).toString();
+    }
+
+    /**
+     * @param key 不带前缀的key
+     * @return 加前缀后key所在的集群slot
+     */
+    public int slot(String key) {
+        return SlotHash.getSlot(serialize(key));
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    private boolean hasPrefix(byte[] bytes) {
+        if (bytes.length < prefixBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < prefixBytes.length; i++) {
+            if (bytes[i] != prefixBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与String.getBytes(UTF_8)一致，孤立的代理字符按'?'计1字节
+     */
+    private static int utf8Length(String key, int keyLength) {
+        int length = keyLength;
+        for (int i = 0; i < keyLength; i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                length += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < keyLength
+                    && Character.isLowSurrogate(key.charAt(i + 1))) {
+                length += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    private static void writeUtf8(String key, int keyLength, byte[] raw, int pos) {
+        for (int i = 0; i < keyLength; i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                raw[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                raw[pos++] = (byte) (0xC0 | (c >> 6));
+                raw[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < keyLength
+                    && Character.isLowSurrogate(key.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, key.charAt(++i));
+                raw[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                raw[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                raw[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                raw[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                raw[pos++] = '?';
+            } else {
+                raw[pos++] = (byte) (0xE0 | (c >> 12));
+                raw[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                raw[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+}
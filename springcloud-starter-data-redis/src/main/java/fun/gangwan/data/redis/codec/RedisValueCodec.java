@@ -0,0 +1,49 @@
+package fun.gangwan.data.redis.codec;
+
+import com.fasterxml.jackson.databind.JavaType;
+
+/**
+ *
+ * RedisValueCodec
+ * <span>Redis value编解码SPI，注册为spring bean后即可通过名称或key前缀选用</span>
+ * <span>除json外，写入redis的数据首字节为{@link #getId()}，读取时按首字节自动选择编解码器，便于逐步迁移</span>
+ *
+ */
+public interface RedisValueCodec {
+
+    /**
+     * @return 编解码器名称，用于配置与按调用指定
+     */
+    String getName();
+
+    /**
+     * json固定为{@link RedisValueCodecs#JSON_ID}且不写头字节，
+     * 其他编解码器取值范围为[{@link RedisValueCodecs#MIN_HEADER_ID}, {@link RedisValueCodecs#MAX_HEADER_ID}]
+     *
+     * @return 头字节
+     */
+    byte getId();
+
+    /**
+     * 序列化，不包含头字节
+     *
+     * @param value value，不为null
+     * @return 序列化结果
+     * @throws Exception 序列化失败
+     */
+    byte[] encode(Object value) throws Exception;
+
+    /**
+     * 从字节数组的指定区间反序列化，区间不包含头字节
+     *
+     * @param bytes bytes
+     * @param offset 起始位置
+     * @param length 长度
+     * @param type 目标类型
+     * @param <T> T
+     * @return 反序列化结果
+     * @throws Exception 反序列化失败
+     */
+    <T> T decode(byte[] bytes, int offset, int length, JavaType type) throws Exception;
+
+}
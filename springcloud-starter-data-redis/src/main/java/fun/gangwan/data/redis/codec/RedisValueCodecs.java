@@ -0,0 +1,324 @@
+package fun.gangwan.data.redis.codec;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import fun.gangwan.data.redis.metrics.RedisMetrics;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * RedisValueCodecs
+ * <span>Redis value编解码器注册表：按调用指定或按key前缀选择编解码器写入，读取时按首字节自动识别</span>
+ * <li>json不写头字节，与历史数据、redisGet等字符串接口兼容</li>
+ * <li>其他编解码器首字节为编解码器id，json文本首字节不会落在该区间</li>
+ * <li>序列化结果超过压缩阈值时再整体压缩，见{@link RedisValueCompression}</li>
+ *
+ */
+public class RedisValueCodecs {
+
+    /**
+     * json编解码器id，不写头字节
+     */
+    public static final byte JSON_ID = 0;
+
+    /**
+     * 编解码器头字节最小值
+     */
+    public static final byte MIN_HEADER_ID = 0x01;
+
+    /**
+     * 编解码器头字节最大值，0x09起为json合法的空白字符，0x10起预留给压缩等数据头
+     */
+    public static final byte MAX_HEADER_ID = 0x08;
+
+    private static final TypeFactory TYPE_FACTORY = TypeFactory.defaultInstance();
+
+    private final RedisValueCodec json;
+
+    private final RedisValueCodec defaultCodec;
+
+    private final RedisValueCodec[] byId = new RedisValueCodec[MAX_HEADER_ID + 1];
+
+    private final Map<String, RedisValueCodec> byName = new HashMap<>();
+
+    /**
+     * key前缀 -&gt; 编解码器，按前缀长度倒序，最长前缀优先
+     */
+    private final List<Map.Entry<String, RedisValueCodec>> prefixCodecs = new ArrayList<>();
+
+    /**
+     * 压缩，默认不压缩
+     */
+    private RedisValueCompression compression = RedisValueCompression.none();
+
+    /**
+     * 序列化指标，默认不记录
+     */
+    private RedisMetrics metrics = RedisMetrics.NOOP;
+
+    /**
+     * @param json json编解码器
+     * @param codecs 其他编解码器
+     * @param defaultCodec 默认编解码器名称，为空时为json
+     * @param keyPrefixCodecs key前缀 -&gt; 编解码器名称
+     */
+    public RedisValueCodecs(RedisValueCodec json, Collection<? extends RedisValueCodec> codecs,
+                            String defaultCodec, Map<String, String> keyPrefixCodecs) {
+        if (json.getId() != JSON_ID) {
+            throw new IllegalArgumentException("json编解码器id必须为" + JSON_ID);
+        }
+        this.json = json;
+        byName.put(json.getName(), json);
+        for (RedisValueCodec codec : codecs) {
+            if (codec.getId() == JSON_ID) {
+                continue;
+            }
+            if (codec.getId() < MIN_HEADER_ID || codec.getId() > MAX_HEADER_ID) {
+                throw new IllegalArgumentException("编解码器id超出范围:" + codec.getName() + "=" + codec.getId());
+            }
+            if (byId[codec.getId()] != null || byName.containsKey(codec.getName())) {
+                throw new IllegalArgumentException("编解码器id或名称重复:" + codec.getName() + "=" + codec.getId());
+            }
+            byId[codec.getId()] = codec;
+            byName.put(codec.getName(), codec);
+        }
+        this.defaultCodec = defaultCodec == null || defaultCodec.isEmpty() ? json : getCodec(defaultCodec);
+        if (keyPrefixCodecs != null) {
+            keyPrefixCodecs.forEach((prefix, name) ->
+                    prefixCodecs.add(new AbstractMap.SimpleImmutableEntry<>(prefix, getCodec(name))));
+            prefixCodecs.sort(Comparator.comparingInt(
+                    (Map.Entry<String, RedisValueCodec> entry) -> entry.getKey().length()).reversed());
+        }
+    }
+
+    /**
+     * @return 只有json编解码器的注册表
+     */
+    public static RedisValueCodecs jsonOnly() {
+        return new RedisValueCodecs(JacksonRedisValueCodec.json(), Collections.emptyList(), null, null);
+    }
+
+    /**
+     * @param name 编解码器名称
+     * @return 编解码器
+     * @throws IllegalArgumentException 未注册
+     */
+    public RedisValueCodec getCodec(String name) {
+        RedisValueCodec codec = byName.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("未注册的redis编解码器:" + name);
+        }
+        return codec;
+    }
+
+    /**
+     * @param key redis key
+     * @return key前缀匹配的编解码器，未匹配时为默认编解码器
+     */
+    public RedisValueCodec codecFor(String key) {
+        for (Map.Entry<String, RedisValueCodec> entry : prefixCodecs) {
+            if (key.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return defaultCodec;
+    }
+
+    /**
+     * 按key前缀选择编解码器序列化
+     *
+     * @param key redis key
+     * @param value value
+     * @return 带头字节的序列化结果
+     */
+    public byte[] encode(String key, Object value) {
+        return encode(key, codecFor(key), value);
+    }
+
+    /**
+     * 使用指定编解码器序列化，超过key的压缩阈值时压缩
+     *
+     * @param key redis key
+     * @param codec 编解码器
+     * @param value value
+     * @return 带头字节的序列化结果
+     */
+    public byte[] encode(String key, RedisValueCodec codec, Object value) {
+        if (!metrics.isEnabled()) {
+            return compression.compress(key, encode(codec, value));
+        }
+        long start = System.nanoTime();
+        byte[] bytes = compression.compress(key, encode(codec, value));
+        metrics.recordSerialization(RedisMetrics.ENCODE, codec.getName(), System.nanoTime() - start, bytes.length);
+        return bytes;
+    }
+
+    private byte[] encode(RedisValueCodec codec, Object value) {
+        byte[] body;
+        try {
+            body = codec.encode(value);
+        } catch (Exception e) {
+            throw new SerializationException("redis value序列化失败:codec=" + codec.getName(), e);
+        }
+        if (codec.getId() == JSON_ID) {
+            return body;
+        }
+        byte[] bytes = new byte[body.length + 1];
+        bytes[0] = codec.getId();
+        System.arraycopy(body, 0, bytes, 1, body.length);
+        return bytes;
+    }
+
+    /**
+     * 按首字节识别编解码器反序列化
+     *
+     * @param bytes redis value
+     * @param type 目标类型
+     * @param <T> T
+     * @return 为空时返回null
+     */
+    public <T> T decode(byte[] bytes, JavaType type) {
+        return bytes == null ? null : decode(bytes, 0, bytes.length, type);
+    }
+
+    /**
+     * 按首字节识别编解码器反序列化，堆内buffer不复制
+     *
+     * @param buffer redis value
+     * @param type 目标类型
+     * @param <T> T
+     * @return 为空时返回null
+     */
+    public <T> T decode(ByteBuffer buffer, JavaType type) {
+        if (buffer == null) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            return decode(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), type);
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return decode(bytes, 0, bytes.length, type);
+    }
+
+    /**
+     * 按首字节识别编解码器反序列化
+     *
+     * @param bytes redis value
+     * @param offset 起始位置
+     * @param length 长度
+     * @param type 目标类型
+     * @param <T> T
+     * @return 为空时返回null
+     */
+    public <T> T decode(byte[] bytes, int offset, int length, JavaType type) {
+        if (length <= 0) {
+            return null;
+        }
+        if (!metrics.isEnabled()) {
+            return doDecode(bytes, offset, length, type);
+        }
+        long start = System.nanoTime();
+        T value = doDecode(bytes, offset, length, type);
+        metrics.recordSerialization(RedisMetrics.DECODE, codecName(bytes[offset]), System.nanoTime() - start, length);
+        return value;
+    }
+
+    private String codecName(byte header) {
+        if (RedisValueCompression.isCompressed(header)) {
+            return "compressed";
+        }
+        RedisValueCodec codec = header >= MIN_HEADER_ID && header <= MAX_HEADER_ID ? byId[header] : null;
+        return null == codec ? json.getName() : codec.getName();
+    }
+
+    private <T> T doDecode(byte[] bytes, int offset, int length, JavaType type) {
+        byte header = bytes[offset];
+        if (RedisValueCompression.isCompressed(header)) {
+            byte[] decompressed;
+            try {
+                decompressed = compression.decompress(bytes, offset, length);
+            } catch (Exception e) {
+                throw new SerializationException("redis value解压失败:type=" + type, e);
+            }
+            return decompressed.length == 0 ? null : doDecode(decompressed, 0, decompressed.length, type);
+        }
+        RedisValueCodec codec = header >= MIN_HEADER_ID && header <= MAX_HEADER_ID ? byId[header] : null;
+        try {
+            if (codec == null) {
+                return json.decode(bytes, offset, length, type);
+            }
+            return length == 1 ? null : codec.decode(bytes, offset + 1, length - 1, type);
+        } catch (Exception e) {
+            throw new SerializationException("redis value反序列化失败:codec="
+                    + (codec == null ? json.getName() : codec.getName()) + ",type=" + type, e);
+        }
+    }
+
+    /**
+     * @param clazz clazz
+     * @return clazz对应的JavaType
+     */
+    public static JavaType type(Class<?> clazz) {
+        return TYPE_FACTORY.constructType(clazz);
+    }
+
+    /**
+     * @param type 泛型类型，如方法的返回值类型
+     * @return type对应的JavaType
+     */
+    public static JavaType type(Type type) {
+        return TYPE_FACTORY.constructType(type);
+    }
+
+    /**
+     * @param clazz 元素类型
+     * @return List&lt;clazz&gt;对应的JavaType
+     */
+    public static JavaType listType(Class<?> clazz) {
+        return TYPE_FACTORY.constructCollectionType(List.class, clazz);
+    }
+
+    /**
+     * @param raw 泛型类
+     * @param parameters 泛型参数
+     * @return raw&lt;parameters&gt;对应的JavaType
+     */
+    public static JavaType parametricType(Class<?> raw, Class<?>... parameters) {
+        return TYPE_FACTORY.constructParametricType(raw, parameters);
+    }
+
+    public RedisValueCodec getDefaultCodec() {
+        return defaultCodec;
+    }
+
+    /**
+     * @param compression 压缩
+     */
+    public void setCompression(RedisValueCompression compression) {
+        this.compression = compression;
+    }
+
+    public RedisValueCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @param metrics 序列化指标
+     */
+    public void setMetrics(RedisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+}
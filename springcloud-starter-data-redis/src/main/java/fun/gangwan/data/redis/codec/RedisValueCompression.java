@@ -0,0 +1,260 @@
+package fun.gangwan.data.redis.codec;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * RedisValueCompression
+ * <span>Redis value压缩：序列化结果超过阈值时压缩，数据格式为 头字节 + 4字节原始长度 + 压缩数据</span>
+ * <span>读取时按头字节自动解压，不论写入是否开启压缩，已注册的压缩算法都可以解压</span>
+ *
+ */
+public class RedisValueCompression {
+
+    /**
+     * 压缩数据头字节最小值
+     */
+    public static final byte MIN_HEADER_ID = 0x10;
+
+    /**
+     * 压缩数据头字节最大值，0x20为json合法的空白字符
+     */
+    public static final byte MAX_HEADER_ID = 0x1F;
+
+    private static final int FRAME_HEADER_LENGTH = 5;
+
+    /**
+     * 默认允许的最大解压长度，64MB
+     */
+    public static final int DEFAULT_MAX_DECOMPRESSED_LENGTH = 64 * 1024 * 1024;
+
+    private final RedisValueCompressor[] byId = new RedisValueCompressor[MAX_HEADER_ID + 1];
+
+    /**
+     * 写入使用的压缩算法，为null时不压缩
+     */
+    private final RedisValueCompressor writeCompressor;
+
+    private final int defaultThreshold;
+
+    /**
+     * 允许的最大解压长度，防止损坏或恶意数据中的原始长度导致分配超大数组
+     */
+    private final int maxDecompressedLength;
+
+    /**
+     * key前缀 -&gt; 压缩阈值，按前缀长度倒序，最长前缀优先
+     */
+    private final List<Map.Entry<String, Integer>> prefixThresholds = new ArrayList<>();
+
+    private final LongAdder compressedCount = new LongAdder();
+
+    private final LongAdder skippedCount = new LongAdder();
+
+    private final LongAdder originalBytes = new LongAdder();
+
+    private final LongAdder compressedBytes = new LongAdder();
+
+    private final LongAdder compressNanos = new LongAdder();
+
+    private final LongAdder decompressedCount = new LongAdder();
+
+    private final LongAdder decompressNanos = new LongAdder();
+
+    /**
+     * @param compressors 已注册的压缩算法
+     * @param writeCompressor 写入使用的压缩算法名称，为null时只解压不压缩
+     * @param defaultThreshold 默认压缩阈值，序列化结果不小于该字节数时压缩
+     * @param keyPrefixThresholds key前缀 -&gt; 压缩阈值
+     */
+    public RedisValueCompression(Collection<? extends RedisValueCompressor> compressors, String writeCompressor,
+                                 int defaultThreshold, Map<String, Integer> keyPrefixThresholds) {
+        this(compressors, writeCompressor, defaultThreshold, keyPrefixThresholds, DEFAULT_MAX_DECOMPRESSED_LENGTH);
+    }
+
+    /**
+     * @param compressors 已注册的压缩算法
+     * @param writeCompressor 写入使用的压缩算法名称，为null时只解压不压缩
+     * @param defaultThreshold 默认压缩阈值，序列化结果不小于该字节数时压缩
+     * @param keyPrefixThresholds key前缀 -&gt; 压缩阈值
+     * @param maxDecompressedLength 允许的最大解压长度
+     */
+    public RedisValueCompression(Collection<? extends RedisValueCompressor> compressors, String writeCompressor,
+                                 int defaultThreshold, Map<String, Integer> keyPrefixThresholds,
+                                 int maxDecompressedLength) {
+        if (maxDecompressedLength <= 0) {
+            throw new IllegalArgumentException("最大解压长度必须大于0:" + maxDecompressedLength);
+        }
+        this.maxDecompressedLength = maxDecompressedLength;
+        RedisValueCompressor selected = null;
+        for (RedisValueCompressor compressor : compressors) {
+            if (compressor.getId() < MIN_HEADER_ID || compressor.getId() > MAX_HEADER_ID) {
+                throw new IllegalArgumentException("压缩算法id超出范围:" + compressor.getName() + "=" + compressor.getId());
+            }
+            if (byId[compressor.getId()] != null) {
+                throw new IllegalArgumentException("压缩算法id重复:" + compressor.getName() + "=" + compressor.getId());
+            }
+            byId[compressor.getId()] = compressor;
+            if (compressor.getName().equals(writeCompressor)) {
+                selected = compressor;
+            }
+        }
+        if (writeCompressor != null && selected == null) {
+            throw new IllegalArgumentException("未注册的redis压缩算法:" + writeCompressor);
+        }
+        this.writeCompressor = selected;
+        this.defaultThreshold = defaultThreshold;
+        if (keyPrefixThresholds != null) {
+            keyPrefixThresholds.forEach((prefix, threshold) ->
+                    prefixThresholds.add(new AbstractMap.SimpleImmutableEntry<>(prefix, threshold)));
+            prefixThresholds.sort(Comparator.comparingInt(
+                    (Map.Entry<String, Integer> entry) -> entry.getKey().length()).reversed());
+        }
+    }
+
+    /**
+     * @return 不压缩也不能解压的实例
+     */
+    public static RedisValueCompression none() {
+        return new RedisValueCompression(Collections.emptyList(), null, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * @param key redis key
+     * @return key前缀匹配的压缩阈值
+     */
+    public int thresholdFor(String key) {
+        for (Map.Entry<String, Integer> entry : prefixThresholds) {
+            if (key.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return defaultThreshold;
+    }
+
+    /**
+     * 超过阈值且压缩后更小时压缩
+     *
+     * @param key redis key
+     * @param encoded 序列化结果
+     * @return 压缩数据或原数据
+     */
+    public byte[] compress(String key, byte[] encoded) {
+        RedisValueCompressor compressor = this.writeCompressor;
+        if (compressor == null || encoded.length < thresholdFor(key)) {
+            return encoded;
+        }
+        long start = System.nanoTime();
+        byte[] compressed = compressor.compress(encoded);
+        compressNanos.add(System.nanoTime() - start);
+        if (compressed.length + FRAME_HEADER_LENGTH >= encoded.length) {
+            skippedCount.increment();
+            return encoded;
+        }
+        compressedCount.increment();
+        originalBytes.add(encoded.length);
+        compressedBytes.add(compressed.length + FRAME_HEADER_LENGTH);
+
+        byte[] frame = new byte[compressed.length + FRAME_HEADER_LENGTH];
+        frame[0] = compressor.getId();
+        int length = encoded.length;
+        frame[1] = (byte) (length >>> 24);
+        frame[2] = (byte) (length >>> 16);
+        frame[3] = (byte) (length >>> 8);
+        frame[4] = (byte) length;
+        System.arraycopy(compressed, 0, frame, FRAME_HEADER_LENGTH, compressed.length);
+        return frame;
+    }
+
+    /**
+     * @param header 首字节
+     * @return 是否为压缩数据
+     */
+    public static boolean isCompressed(byte header) {
+        return header >= MIN_HEADER_ID && header <= MAX_HEADER_ID;
+    }
+
+    /**
+     * @param bytes 压缩数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 解压后的序列化结果
+     */
+    public byte[] decompress(byte[] bytes, int offset, int length) {
+        RedisValueCompressor compressor = byId[bytes[offset]];
+        if (compressor == null) {
+            throw new IllegalStateException("未注册的redis压缩算法:id=" + bytes[offset]);
+        }
+        if (length < FRAME_HEADER_LENGTH) {
+            throw new IllegalStateException("redis压缩数据不完整:length=" + length);
+        }
+        int originalLength = ((bytes[offset + 1] & 0xFF) << 24) | ((bytes[offset + 2] & 0xFF) << 16)
+                | ((bytes[offset + 3] & 0xFF) << 8) | (bytes[offset + 4] & 0xFF);
+        if (originalLength < 0 || originalLength > maxDecompressedLength) {
+            throw new IllegalStateException("redis压缩数据原始长度非法:originalLength=" + originalLength
+                    + ", max=" + maxDecompressedLength);
+        }
+        long start = System.nanoTime();
+        byte[] decompressed = compressor.decompress(bytes, offset + FRAME_HEADER_LENGTH,
+                length - FRAME_HEADER_LENGTH, originalLength);
+        decompressNanos.add(System.nanoTime() - start);
+        decompressedCount.increment();
+        return decompressed;
+    }
+
+    /**
+     * @return 压缩的次数
+     */
+    public long getCompressedCount() {
+        return compressedCount.sum();
+    }
+
+    /**
+     * @return 超过阈值但压缩后未变小而放弃压缩的次数
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    public long getOriginalBytes() {
+        return originalBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * @return 压缩率：压缩后字节数 / 原始字节数，未压缩过时为1
+     */
+    public double getCompressionRatio() {
+        long original = originalBytes.sum();
+        return original == 0 ? 1.0 : (double) compressedBytes.sum() / original;
+    }
+
+    /**
+     * @return 累计压缩耗时ns，包含放弃压缩的耗时
+     */
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    public long getDecompressedCount() {
+        return decompressedCount.sum();
+    }
+
+    /**
+     * @return 累计解压耗时ns
+     */
+    public long getDecompressNanos() {
+        return decompressNanos.sum();
+    }
+
+}
@@ -0,0 +1,38 @@
+package fun.gangwan.data.redis.codec;
+
+/**
+ *
+ * RedisValueCompressor
+ * <span>Redis value压缩算法SPI，注册为spring bean后即可用于写入与自动解压</span>
+ *
+ */
+public interface RedisValueCompressor {
+
+    /**
+     * @return 压缩算法名称，用于配置
+     */
+    String getName();
+
+    /**
+     * 取值范围为[{@link RedisValueCompression#MIN_HEADER_ID}, {@link RedisValueCompression#MAX_HEADER_ID}]
+     *
+     * @return 压缩数据头字节
+     */
+    byte getId();
+
+    /**
+     * @param src 原始数据
+     * @return 压缩后的数据
+     */
+    byte[] compress(byte[] src);
+
+    /**
+     * @param src 压缩数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @param originalLength 原始数据长度，已由调用方校验不超过配置的最大解压长度
+     * @return 原始数据
+     */
+    byte[] decompress(byte[] src, int offset, int length, int originalLength);
+
+}
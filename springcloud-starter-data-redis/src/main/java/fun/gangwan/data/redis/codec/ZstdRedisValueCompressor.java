@@ -0,0 +1,57 @@
+package fun.gangwan.data.redis.codec;
+
+import com.github.luben.zstd.Zstd;
+
+/**
+ *
+ * ZstdRedisValueCompressor
+ * <span>Zstd压缩，压缩率优先，需要依赖zstd-jni</span>
+ *
+ */
+public class ZstdRedisValueCompressor implements RedisValueCompressor {
+
+    public static final String NAME = "zstd";
+
+    public static final byte ID = 0x12;
+
+    private final int level;
+
+    /**
+     * @param level 压缩级别，1-22，越大压缩率越高、速度越慢
+     */
+    public ZstdRedisValueCompressor(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] src) {
+        return Zstd.compress(src, level);
+    }
+
+    @Override
+    public byte[] decompress(byte[] src, int offset, int length, int originalLength) {
+        if (originalLength < 0) {
+            throw new IllegalStateException("zstd解压失败:原始长度非法:" + originalLength);
+        }
+        byte[] dest = new byte[originalLength];
+        long size = Zstd.decompressByteArray(dest, 0, originalLength, src, offset, length);
+        if (Zstd.isError(size)) {
+            throw new IllegalStateException("zstd解压失败:" + Zstd.getErrorName(size));
+        }
+        if (size != originalLength) {
+            throw new IllegalStateException("zstd解压失败:解压长度" + size + "与原始长度" + originalLength + "不一致");
+        }
+        return dest;
+    }
+
+}
@@ -52,21 +52,25 @@ public class RedisCommand {
     /**
      * List命令构建器
      */
+    @Builder.Default
     private RedisListCmdBuilder redisListCmdBuilder = new RedisListCmdBuilder();
 
     /**
      * Hash命令构建器
      */
+    @Builder.Default
     private RedisHashCmdBuilder redisHashCmdBuilder = new RedisHashCmdBuilder();
 
     /**
      * Set命令构建器
      */
+    @Builder.Default
     private RedisSetCmdBuilder redisSetCmdBuilder = new RedisSetCmdBuilder();
 
     /**
      * SortedSet命令构建器
      */
+    @Builder.Default
     private RedisSortedSetCmdBuilder redisSortedSetCmdBuilder = new RedisSortedSetCmdBuilder();
 
 }
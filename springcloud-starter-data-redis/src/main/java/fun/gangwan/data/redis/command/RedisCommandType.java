@@ -120,12 +120,162 @@ public enum RedisCommandType {
      * 保留指定范围内的元素
      * @see <a href="https://redis.io/commands/ltrim">Redis Documentation: LTRIM</a>
      */
-    LTRIM;
+    LTRIM,
 
-    /**********************  TODO Hash命令 ******************/
+    /**********************  Hash命令 ******************/
 
-    /**********************  TODO Set命令 ******************/
+    /**
+     * 设置hash字段的值
+     * @see <a href="https://redis.io/commands/hset">Redis Documentation: HSET</a>
+     */
+    HSET,
+
+    /**
+     * 获取hash字段的值
+     * @see <a href="https://redis.io/commands/hget">Redis Documentation: HGET</a>
+     */
+    HGET,
+
+    /**
+     * 批量设置hash字段的值
+     * @see <a href="https://redis.io/commands/hmset">Redis Documentation: HMSET</a>
+     */
+    HMSET,
+
+    /**
+     * 批量获取hash字段的值
+     * @see <a href="https://redis.io/commands/hmget">Redis Documentation: HMGET</a>
+     */
+    HMGET,
+
+    /**
+     * 删除一个或多个hash字段
+     * @see <a href="https://redis.io/commands/hdel">Redis Documentation: HDEL</a>
+     */
+    HDEL,
+
+    /**
+     * 获取hash所有字段和值
+     * @see <a href="https://redis.io/commands/hgetall">Redis Documentation: HGETALL</a>
+     */
+    HGETALL,
+
+    /**
+     * 判断hash字段是否存在
+     * @see <a href="https://redis.io/commands/hexists">Redis Documentation: HEXISTS</a>
+     */
+    HEXISTS,
+
+    /**
+     * 将hash字段的值加上给定的步长（delta）
+     * @see <a href="https://redis.io/commands/hincrby">Redis Documentation: HINCRBY</a>
+     */
+    HINCRBY,
+
+    /**
+     * 获取hash字段数量
+     * @see <a href="https://redis.io/commands/hlen">Redis Documentation: HLEN</a>
+     */
+    HLEN,
+
+    /**********************  Set命令 ******************/
 
-    /**********************  TODO SortedSet命令 ******************/
+    /**
+     * 向集合添加一个或多个成员
+     * @see <a href="https://redis.io/commands/sadd">Redis Documentation: SADD</a>
+     */
+    SADD,
+
+    /**
+     * 移除集合中一个或多个成员
+     * @see <a href="https://redis.io/commands/srem">Redis Documentation: SREM</a>
+     */
+    SREM,
+
+    /**
+     * 返回集合中的所有成员
+     * @see <a href="https://redis.io/commands/smembers">Redis Documentation: SMEMBERS</a>
+     */
+    SMEMBERS,
+
+    /**
+     * 判断是否为集合的成员
+     * @see <a href="https://redis.io/commands/sismember">Redis Documentation: SISMEMBER</a>
+     */
+    SISMEMBER,
+
+    /**
+     * 获取集合的成员数
+     * @see <a href="https://redis.io/commands/scard">Redis Documentation: SCARD</a>
+     */
+    SCARD,
+
+    /**
+     * 移除并返回集合中的一个或多个随机成员
+     * @see <a href="https://redis.io/commands/spop">Redis Documentation: SPOP</a>
+     */
+    SPOP,
+
+    /**********************  SortedSet命令 ******************/
+
+    /**
+     * 向有序集合添加一个或多个成员，或者更新已存在成员的分数
+     * @see <a href="https://redis.io/commands/zadd">Redis Documentation: ZADD</a>
+     */
+    ZADD,
+
+    /**
+     * 移除有序集合中的一个或多个成员
+     * @see <a href="https://redis.io/commands/zrem">Redis Documentation: ZREM</a>
+     */
+    ZREM,
+
+    /**
+     * 返回有序集合中成员的分数
+     * @see <a href="https://redis.io/commands/zscore">Redis Documentation: ZSCORE</a>
+     */
+    ZSCORE,
+
+    /**
+     * 有序集合中对指定成员的分数加上增量
+     * @see <a href="https://redis.io/commands/zincrby">Redis Documentation: ZINCRBY</a>
+     */
+    ZINCRBY,
+
+    /**
+     * 通过索引区间返回有序集合指定区间内的成员，分数从低到高
+     * @see <a href="https://redis.io/commands/zrange">Redis Documentation: ZRANGE</a>
+     */
+    ZRANGE,
+
+    /**
+     * 通过索引区间返回有序集合指定区间内的成员，分数从高到低
+     * @see <a href="https://redis.io/commands/zrevrange">Redis Documentation: ZREVRANGE</a>
+     */
+    ZREVRANGE,
+
+    /**
+     * 通过分数返回有序集合指定区间内的成员
+     * @see <a href="https://redis.io/commands/zrangebyscore">Redis Documentation: ZRANGEBYSCORE</a>
+     */
+    ZRANGEBYSCORE,
+
+    /**
+     * 返回有序集合中指定成员的索引
+     * @see <a href="https://redis.io/commands/zrank">Redis Documentation: ZRANK</a>
+     */
+    ZRANK,
+
+    /**
+     * 获取有序集合的成员数
+     * @see <a href="https://redis.io/commands/zcard">Redis Documentation: ZCARD</a>
+     */
+    ZCARD,
+
+    /**
+     * 移除有序集合中给定的分数区间的所有成员
+     * @see <a href="https://redis.io/commands/zremrangebyscore">Redis Documentation: ZREMRANGEBYSCORE</a>
+     */
+    ZREMRANGEBYSCORE;
 
 }
@@ -1,9 +1,13 @@
 package fun.gangwan.data.redis.command;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  *
  * Redis Hash 命令参数
@@ -12,7 +16,27 @@ import lombok.NoArgsConstructor;
 @Data
 @Builder
 @NoArgsConstructor
+@AllArgsConstructor
 public class RedisHashCmdBuilder {
 
-    //TODO
+    /**
+     * 单个hash字段，值取RedisCommand的value
+     * @see <a href="https://redis.io/commands/hset">Redis Documentation: HSET</a>
+     * @see <a href="https://redis.io/commands/hget">Redis Documentation: HGET</a>
+     * @see <a href="https://redis.io/commands/hincrby">Redis Documentation: HINCRBY</a>
+     */
+    private Object hashKey;
+
+    /**
+     * 多个hash字段
+     * @see <a href="https://redis.io/commands/hmget">Redis Documentation: HMGET</a>
+     * @see <a href="https://redis.io/commands/hdel">Redis Documentation: HDEL</a>
+     */
+    private Collection<?> hashKeys;
+
+    /**
+     * 多个hash字段和值
+     * @see <a href="https://redis.io/commands/hmset">Redis Documentation: HMSET</a>
+     */
+    private Map<?, ?> hashValues;
 }
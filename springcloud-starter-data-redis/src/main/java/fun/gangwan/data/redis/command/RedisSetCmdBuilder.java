@@ -1,9 +1,12 @@
 package fun.gangwan.data.redis.command;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Collection;
+
 /**
  *
  * Redis Set 命令参数
@@ -12,7 +15,19 @@ import lombok.NoArgsConstructor;
 @Data
 @Builder
 @NoArgsConstructor
+@AllArgsConstructor
 public class RedisSetCmdBuilder {
 
-    //TODO
+    /**
+     * 多个成员，为空时取RedisCommand的value作为单个成员
+     * @see <a href="https://redis.io/commands/sadd">Redis Documentation: SADD</a>
+     * @see <a href="https://redis.io/commands/srem">Redis Documentation: SREM</a>
+     */
+    private Collection<?> members;
+
+    /**
+     * 弹出数量，为空时弹出一个
+     * @see <a href="https://redis.io/commands/spop">Redis Documentation: SPOP</a>
+     */
+    private Long count;
 }
@@ -1,9 +1,13 @@
 package fun.gangwan.data.redis.command;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  *
  * Redis SortedSet 命令参数
@@ -12,7 +16,65 @@ import lombok.NoArgsConstructor;
 @Data
 @Builder
 @NoArgsConstructor
+@AllArgsConstructor
 public class RedisSortedSetCmdBuilder {
 
-    //TODO
+    /**
+     * 单个成员的分数，成员取RedisCommand的value；ZINCRBY命令时为增量
+     * @see <a href="https://redis.io/commands/zadd">Redis Documentation: ZADD</a>
+     * @see <a href="https://redis.io/commands/zincrby">Redis Documentation: ZINCRBY</a>
+     */
+    private Double score;
+
+    /**
+     * 多个成员及其分数
+     * @see <a href="https://redis.io/commands/zadd">Redis Documentation: ZADD</a>
+     */
+    private Map<?, Double> scoreMembers;
+
+    /**
+     * 多个成员，为空时取RedisCommand的value作为单个成员
+     * @see <a href="https://redis.io/commands/zrem">Redis Documentation: ZREM</a>
+     */
+    private Collection<?> members;
+
+    /**
+     * range命令 -> 开始位置
+     * @see <a href="https://redis.io/commands/zrange">Redis Documentation: ZRANGE</a>
+     * @see <a href="https://redis.io/commands/zrevrange">Redis Documentation: ZREVRANGE</a>
+     */
+    private Long start;
+
+    /**
+     * range命令 -> 结束位置
+     * @see <a href="https://redis.io/commands/zrange">Redis Documentation: ZRANGE</a>
+     * @see <a href="https://redis.io/commands/zrevrange">Redis Documentation: ZREVRANGE</a>
+     */
+    private Long end;
+
+    /**
+     * 最小分数
+     * @see <a href="https://redis.io/commands/zrangebyscore">Redis Documentation: ZRANGEBYSCORE</a>
+     * @see <a href="https://redis.io/commands/zremrangebyscore">Redis Documentation: ZREMRANGEBYSCORE</a>
+     */
+    private Double min;
+
+    /**
+     * 最大分数
+     * @see <a href="https://redis.io/commands/zrangebyscore">Redis Documentation: ZRANGEBYSCORE</a>
+     * @see <a href="https://redis.io/commands/zremrangebyscore">Redis Documentation: ZREMRANGEBYSCORE</a>
+     */
+    private Double max;
+
+    /**
+     * ZRANGEBYSCORE LIMIT offset，需与count同时设置
+     * @see <a href="https://redis.io/commands/zrangebyscore">Redis Documentation: ZRANGEBYSCORE</a>
+     */
+    private Long offset;
+
+    /**
+     * ZRANGEBYSCORE LIMIT count，需与offset同时设置
+     * @see <a href="https://redis.io/commands/zrangebyscore">Redis Documentation: ZRANGEBYSCORE</a>
+     */
+    private Long count;
 }
@@ -0,0 +1,103 @@
+package fun.gangwan.data.redis.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *
+ * RedisLock
+ * <span>已获取的分布式锁，持有期间由{@link RedisLocks}的看门狗线程自动续约，close时释放</span>
+ * <pre>
+ * try (RedisLock lock = redisLocks.acquire(key, Duration.ofSeconds(30))) {
+ *     ...
+ * }
+ * </pre>
+ *
+ */
+public class RedisLock implements AutoCloseable {
+
+    private final RedisLocks locks;
+
+    private final String key;
+
+    private final String value;
+
+    private final long leaseMillis;
+
+    private final long acquiredNanos = System.nanoTime();
+
+    /**
+     * 上次续约成功的时间ms，仅看门狗线程修改
+     */
+    private volatile long renewedAt = System.currentTimeMillis();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * 续约失败，锁已过期或被其他线程持有
+     */
+    private volatile boolean lost;
+
+    RedisLock(RedisLocks locks, String key, String value, long leaseMillis) {
+        this.locks = locks;
+        this.key = key;
+        this.value = value;
+        this.leaseMillis = leaseMillis;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return 锁的值，与RedisUtils.releaseLock等方法兼容
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    /**
+     * @return 是否仍持有锁：未释放且续约未失败
+     */
+    public boolean isHeld() {
+        return !closed.get() && !lost;
+    }
+
+    /**
+     * @return 已持有时间ms
+     */
+    public long getHoldMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - acquiredNanos);
+    }
+
+    /**
+     * 释放锁，重复调用无副作用
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            locks.release(this);
+        }
+    }
+
+    long getRenewedAt() {
+        return renewedAt;
+    }
+
+    void renewed(long now) {
+        this.renewedAt = now;
+    }
+
+    void markLost() {
+        this.lost = true;
+    }
+
+    boolean isLost() {
+        return lost;
+    }
+
+}
@@ -0,0 +1,17 @@
+package fun.gangwan.data.redis.lock;
+
+/**
+ *
+ * RedisLockException
+ * <span>获取分布式锁超时或被中断</span>
+ *
+ */
+public class RedisLockException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RedisLockException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,598 @@
+package fun.gangwan.data.redis.lock;
+
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ *
+ * RedisLocks
+ * <span>分布式锁：释放锁的Lua脚本同时发布释放消息，等待方订阅后立即被唤醒，不再轮询</span>
+ * <li>同一JVM内同一key的等待方在本地排队，同一时刻只有一个线程与其他进程竞争</li>
+ * <li>只在本JVM有等待方期间订阅该key的释放消息channel，没有等待方的节点不接收释放消息</li>
+ * <li>发布订阅消息可能丢失，等待时间最长为锁的剩余过期时间，并且不超过{@link #MAX_WAIT_SLICE_MILLIS}</li>
+ * <li>可重入锁见{@link RedisReentrantLock}，读写锁见{@link RedisReadWriteLock}，与普通锁共用释放消息</li>
+ * <li>acquire返回的{@link RedisLock}由单个看门狗线程统一续约，每次检查只发起一次pipeline，锁的过期时间过去1/3时续约；看门狗在首次acquire时启动</li>
+ *
+ */
+@Slf4j
+public class RedisLocks implements MessageListener {
+
+    /**
+     * 单次等待释放消息的最长时间ms，兜底消息丢失
+     */
+    private static final long MAX_WAIT_SLICE_MILLIS = 1000;
+
+    /**
+     * 加锁，成功返回nil，失败返回锁的剩余过期时间ms
+     */
+    private static final RedisScript<Long> LOCK_SCRIPT = RedisScript.of(
+            "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return nil end "
+            + "return redis.call('pttl', KEYS[1])",
+            Long.class);
+
+    /**
+     * 释放锁并发布释放消息，结果为1释放成功
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "redis.call('del', KEYS[1]); redis.call('publish', ARGV[2], KEYS[1]); return 1 "
+            + "else return 0 end",
+            Long.class);
+
+    /**
+     * 持有者一致时续约，结果为1续约成功
+     */
+    private static final byte[] RENEW_SCRIPT = ("if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end").getBytes(StandardCharsets.UTF_8);
+
+    private final StringRedisTemplate redis;
+
+    private final String channelPrefix;
+
+    /**
+     * 本实例id，与线程id组成可重入锁的持有者id
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final long acquireTimeoutMillis;
+
+    private final long watchdogIntervalMillis;
+
+    /**
+     * 看门狗线程，所有持有中的锁共用，首次acquire时创建
+     */
+    private volatile ScheduledExecutorService watchdog;
+
+    private volatile boolean shutdown;
+
+    /**
+     * 订阅释放消息的监听容器，为null时只按等待时间片轮询
+     */
+    private final RedisMessageListenerContainer container;
+
+    /**
+     * 持有中需要续约的锁
+     */
+    private final Set<RedisLock> heldLocks = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder acquiredCount = new LongAdder();
+
+    private final LongAdder releasedCount = new LongAdder();
+
+    private final LongAdder holdMillis = new LongAdder();
+
+    private final LongAccumulator maxHoldMillis = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder renewalCount = new LongAdder();
+
+    private final LongAdder renewalFailureCount = new LongAdder();
+
+    private final LongAdder lostCount = new LongAdder();
+
+    /**
+     * 锁key -&gt; 本JVM内的等待方
+     */
+    private final ConcurrentMap<String, KeyWaiters> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * @param redis redis
+     * @param config 锁配置
+     * @param container 订阅释放消息的监听容器，为null时只按等待时间片轮询
+     */
+    public RedisLocks(StringRedisTemplate redis, RedisHelperProperties.Lock config,
+                      RedisMessageListenerContainer container) {
+        this.redis = redis;
+        this.channelPrefix = config.getChannelPrefix();
+        this.acquireTimeoutMillis = config.getAcquireTimeout().toMillis();
+        this.watchdogIntervalMillis = config.getWatchdogInterval().toMillis();
+        this.container = container;
+    }
+
+    private void startWatchdog() {
+        if (null != watchdog) {
+            return;
+        }
+        synchronized (this) {
+            if (null != watchdog || shutdown) {
+                return;
+            }
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-lock-watchdog-");
+            threadFactory.setDaemon(true);
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            executor.scheduleWithFixedDelay(this::renewHeldLocks, watchdogIntervalMillis, watchdogIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+            watchdog = executor;
+        }
+    }
+
+    /**
+     * 加锁，不等待
+     *
+     * @param key 锁key
+     * @param leaseMillis 锁过期时间ms
+     * @return 获取成功返回锁的值(用于释放锁)，失败返回<code>null</code>
+     */
+    public String tryLock(String key, long leaseMillis) {
+        String value = UUID.randomUUID().toString();
+        try {
+            return null == tryLock(key, value, leaseMillis) ? value : null;
+        } catch (Exception e) {
+            log.error("获取锁失败:key={}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 加锁，锁被占用时等待释放消息
+     *
+     * @param key 锁key
+     * @param leaseMillis 锁过期时间ms
+     * @param waitMillis 最长等待时间ms
+     * @return 获取成功返回锁的值(用于释放锁)，超时或中断返回<code>null</code>
+     */
+    public String lock(String key, long leaseMillis, long waitMillis) {
+        String value = UUID.randomUUID().toString();
+        try {
+            return waitFor(key, waitMillis, () -> tryLock(key, value, leaseMillis)) ? value : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("获取锁等待中断:key={}", key, e);
+            return null;
+        } catch (Exception e) {
+            log.error("获取锁失败:key={}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 先直接尝试加锁一次，失败后在本JVM内排队，反复尝试直到成功或超时，两次尝试之间等待释放消息
+     *
+     * @param key 锁key，释放消息的channel为前缀 + key
+     * @param waitMillis 最长等待时间ms
+     * @param attempt 加锁，成功返回null，失败返回锁的剩余过期时间ms
+     * @return 是否获取成功
+     * @throws InterruptedException 等待中断
+     */
+    boolean waitFor(String key, long waitMillis, Supplier<Long> attempt) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        KeyWaiters keyWaiters = retain(key);
+        boolean gated = false;
+        try {
+            //先不排队直接尝试一次，已持有锁的线程重入时不会排在本JVM的等待方之后
+            if (null == attempt.get()) {
+                return true;
+            }
+            //本JVM内排队，只有排在队首的线程访问redis
+            gated = keyWaiters.gate.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()),
+                    TimeUnit.MILLISECONDS);
+            if (!gated) {
+                return false;
+            }
+            while (true) {
+                long observed = keyWaiters.version();
+                Long ttl = attempt.get();
+                if (null == ttl) {
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                //ttl为-2时锁刚好过期，立即重试；为-1时锁没有过期时间，只能等待释放消息
+                if (ttl != -2) {
+                    long waitSlice = Math.min(remaining, MAX_WAIT_SLICE_MILLIS);
+                    keyWaiters.await(observed, ttl > 0 ? Math.min(ttl, waitSlice) : waitSlice);
+                }
+            }
+        } finally {
+            if (gated) {
+                keyWaiters.gate.release();
+            }
+            release(key, keyWaiters);
+        }
+    }
+
+    /**
+     * 执行锁脚本，以key为唯一的KEYS
+     */
+    <T> T execute(RedisScript<T> script, String key, Object... args) {
+        return redis.execute(script, Collections.singletonList(key), args);
+    }
+
+    /**
+     * @param key 锁key
+     * @return 锁释放消息的channel
+     */
+    String channelOf(String key) {
+        return channelPrefix + key;
+    }
+
+    /**
+     * @return 当前线程在可重入锁、读写锁中的持有者id：实例id + 线程id
+     */
+    String currentOwner() {
+        return instanceId + ":" + Thread.currentThread().getId();
+    }
+
+    /**
+     * @param key 锁key
+     * @return 可重入锁，同一线程可重复加锁，加锁几次需要释放几次
+     */
+    public RedisReentrantLock getReentrantLock(String key) {
+        return new RedisReentrantLock(this, key);
+    }
+
+    /**
+     * @param key 锁key
+     * @return 读写锁，读锁可并发持有，写锁独占
+     */
+    public RedisReadWriteLock getReadWriteLock(String key) {
+        return new RedisReadWriteLock(this, key);
+    }
+
+    /**
+     * 加锁，不等待，持有期间自动续约
+     *
+     * @param key 锁key
+     * @param lease 锁过期时间，持有者宕机后最长经过该时间锁自动释放
+     * @return 获取成功返回锁，失败返回<code>null</code>
+     */
+    public RedisLock tryAcquire(String key, Duration lease) {
+        long leaseMillis = lease.toMillis();
+        String value = tryLock(key, leaseMillis);
+        return null == value ? null : hold(key, value, leaseMillis);
+    }
+
+    /**
+     * 加锁，锁被占用时等待释放消息，持有期间自动续约
+     *
+     * @param key 锁key
+     * @param lease 锁过期时间，持有者宕机后最长经过该时间锁自动释放
+     * @param waitTime 最长等待时间
+     * @return 获取成功返回锁，超时或中断返回<code>null</code>
+     */
+    public RedisLock tryAcquire(String key, Duration lease, Duration waitTime) {
+        long leaseMillis = lease.toMillis();
+        String value = lock(key, leaseMillis, waitTime.toMillis());
+        return null == value ? null : hold(key, value, leaseMillis);
+    }
+
+    /**
+     * 加锁，最长等待spring.redis.helper.lock.acquire-timeout，持有期间自动续约
+     *
+     * @param key 锁key
+     * @param lease 锁过期时间，持有者宕机后最长经过该时间锁自动释放
+     * @return 锁，使用try-with-resources释放
+     * @throws RedisLockException 等待超时或中断
+     */
+    public RedisLock acquire(String key, Duration lease) {
+        RedisLock lock = tryAcquire(key, lease, Duration.ofMillis(acquireTimeoutMillis));
+        if (null == lock) {
+            throw new RedisLockException("获取锁超时或中断:key=" + key);
+        }
+        return lock;
+    }
+
+    private RedisLock hold(String key, String value, long leaseMillis) {
+        startWatchdog();
+        RedisLock lock = new RedisLock(this, key, value, leaseMillis);
+        heldLocks.add(lock);
+        acquiredCount.increment();
+        return lock;
+    }
+
+    /**
+     * RedisLock.close时调用：停止续约并释放锁
+     */
+    void release(RedisLock lock) {
+        heldLocks.remove(lock);
+        long held = lock.getHoldMillis();
+        releasedCount.increment();
+        holdMillis.add(held);
+        maxHoldMillis.accumulate(held);
+        if (lock.isLost()) {
+            return;
+        }
+        try {
+            if (!unlock(lock.getKey(), lock.getValue())) {
+                log.warn("释放锁失败，锁已过期或被其他线程持有:key={},holdMillis={}", lock.getKey(), held);
+            }
+        } catch (Exception e) {
+            log.error("释放锁失败:key={}", lock.getKey(), e);
+        }
+    }
+
+    /**
+     * 看门狗：过期时间已过去1/3的锁在同一个pipeline中续约，续约结果为0说明锁已丢失，不再续约
+     */
+    private void renewHeldLocks() {
+        if (heldLocks.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<RedisLock> due = new ArrayList<>();
+        for (RedisLock lock : heldLocks) {
+            if (now - lock.getRenewedAt() >= lock.getLeaseMillis() / 3) {
+                due.add(lock);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        List<Object> results;
+        try {
+            @SuppressWarnings("unchecked")
+            RedisSerializer<String> keySerializer = (RedisSerializer<String>) redis.getKeySerializer();
+            results = redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (RedisLock lock : due) {
+                    connection.eval(RENEW_SCRIPT, ReturnType.INTEGER, 1,
+                            keySerializer.serialize(lock.getKey()),
+                            lock.getValue().getBytes(StandardCharsets.UTF_8),
+                            String.valueOf(lock.getLeaseMillis()).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            //网络异常时下一次检查重试，锁过期前未恢复则续约失败
+            renewalFailureCount.add(due.size());
+            log.error("锁续约失败:count={}", due.size(), e);
+            return;
+        }
+        for (int i = 0; i < due.size(); i++) {
+            RedisLock lock = due.get(i);
+            Object result = i < results.size() ? results.get(i) : null;
+            if (result instanceof Long && (Long) result == 1) {
+                lock.renewed(now);
+                renewalCount.increment();
+            } else if (heldLocks.remove(lock)) {
+                //续约期间已close的锁不计入失败
+                lock.markLost();
+                renewalFailureCount.increment();
+                lostCount.increment();
+                log.warn("锁续约失败，锁已过期或被其他线程持有:key={},holdMillis={}", lock.getKey(), lock.getHoldMillis());
+            }
+        }
+    }
+
+    /**
+     * 停止看门狗，未释放的锁在过期后自动释放
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            if (null != watchdog) {
+                watchdog.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 释放锁，并通知所有节点的等待方
+     *
+     * @param key 锁key
+     * @param value 加锁时返回的值
+     * @return 是否释放成功，锁已过期或被其他线程持有时返回false
+     */
+    public boolean unlock(String key, String value) {
+        Long result = execute(UNLOCK_SCRIPT, key, value, channelOf(key));
+        return null != result && result == 1;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // 释放脚本发布的是序列化后的KEYS[1]，开启命名空间时带前缀，需反序列化为waiters中的key
+        String key = (String) redis.getKeySerializer().deserialize(message.getBody());
+        if (null == key) {
+            return;
+        }
+        KeyWaiters keyWaiters = waiters.get(key);
+        if (null != keyWaiters) {
+            keyWaiters.signal();
+        }
+    }
+
+    private Long tryLock(String key, String value, long leaseMillis) {
+        return execute(LOCK_SCRIPT, key, value, String.valueOf(leaseMillis));
+    }
+
+    private KeyWaiters retain(String key) {
+        boolean[] created = new boolean[1];
+        KeyWaiters retained = waiters.compute(key, (k, current) -> {
+            KeyWaiters keyWaiters = current;
+            if (null == keyWaiters) {
+                keyWaiters = new KeyWaiters();
+                created[0] = true;
+            }
+            keyWaiters.users++;
+            return keyWaiters;
+        });
+        if (created[0]) {
+            subscribe(key);
+        }
+        return retained;
+    }
+
+    private void release(String key, KeyWaiters keyWaiters) {
+        boolean[] removed = new boolean[1];
+        waiters.computeIfPresent(key, (k, current) -> {
+            if (current != keyWaiters) {
+                return current;
+            }
+            if (--current.users == 0) {
+                removed[0] = true;
+                return null;
+            }
+            return current;
+        });
+        if (removed[0]) {
+            unsubscribe(key);
+            //取消订阅期间其他线程开始等待时重新订阅
+            if (waiters.containsKey(key)) {
+                subscribe(key);
+            }
+        }
+    }
+
+    /**
+     * 订阅在本JVM内的锁调用中执行，不在waiters.compute中执行，避免持有map的锁访问redis
+     */
+    private void subscribe(String key) {
+        if (null == container) {
+            return;
+        }
+        try {
+            container.addMessageListener(this, new ChannelTopic(channelOf(key)));
+        } catch (Exception e) {
+            //订阅失败时按等待时间片轮询
+            log.warn("订阅锁释放消息失败:key={}", key, e);
+        }
+    }
+
+    private void unsubscribe(String key) {
+        if (null == container) {
+            return;
+        }
+        try {
+            container.removeMessageListener(this, new ChannelTopic(channelOf(key)));
+        } catch (Exception e) {
+            log.warn("取消订阅锁释放消息失败:key={}", key, e);
+        }
+    }
+
+    /**
+     * @return 本JVM内有等待方的锁数量
+     */
+    public int getWaitingKeyCount() {
+        return waiters.size();
+    }
+
+    /**
+     * @return 持有中的锁数量
+     */
+    public int getHeldCount() {
+        return heldLocks.size();
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    public long getReleasedCount() {
+        return releasedCount.sum();
+    }
+
+    /**
+     * @return 已释放的锁累计持有时间ms
+     */
+    public long getTotalHoldMillis() {
+        return holdMillis.sum();
+    }
+
+    /**
+     * @return 已释放的锁平均持有时间ms
+     */
+    public double getAverageHoldMillis() {
+        long released = releasedCount.sum();
+        return released == 0 ? 0 : (double) holdMillis.sum() / released;
+    }
+
+    public long getMaxHoldMillis() {
+        return maxHoldMillis.get();
+    }
+
+    public long getRenewalCount() {
+        return renewalCount.sum();
+    }
+
+    /**
+     * @return 续约失败次数，包括网络异常和锁已丢失
+     */
+    public long getRenewalFailureCount() {
+        return renewalFailureCount.sum();
+    }
+
+    /**
+     * @return 持有期间丢失的锁数量
+     */
+    public long getLostCount() {
+        return lostCount.sum();
+    }
+
+    /**
+     * 同一key的等待方：gate保证本JVM只有一个线程访问redis，version用于避免错过释放消息
+     */
+    private static class KeyWaiters {
+
+        private final Semaphore gate = new Semaphore(1, true);
+
+        /**
+         * 仅在waiters.compute中修改
+         */
+        private int users;
+
+        private long version;
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized void await(long observed, long millis) throws InterruptedException {
+            if (version == observed && millis > 0) {
+                wait(millis);
+            }
+        }
+
+        synchronized void signal() {
+            version++;
+            notifyAll();
+        }
+    }
+
+}
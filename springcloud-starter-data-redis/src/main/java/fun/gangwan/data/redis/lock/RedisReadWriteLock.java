@@ -0,0 +1,156 @@
+package fun.gangwan.data.redis.lock;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ *
+ * RedisReadWriteLock
+ * <span>分布式读写锁：锁key为hash，mode字段为read或write，持有者id:read/持有者id:write字段为各自的重入次数</span>
+ * <li>没有写锁时多个读锁可并发持有，写锁独占，读锁和写锁均可重入</li>
+ * <li>持有写锁的线程可以再加读锁(锁降级)，写锁释放后mode变为read</li>
+ * <li>所有读锁共用key的过期时间，加读锁时取剩余过期时间与lease的较大值</li>
+ * <li>加锁和释放必须在同一线程，持有期间不自动续约</li>
+ *
+ */
+@Slf4j
+public class RedisReadWriteLock {
+
+    /**
+     * 加读锁，ARGV: lease, 读字段, 写字段；成功返回nil，失败返回锁的剩余过期时间ms
+     */
+    private static final RedisScript<Long> READ_LOCK_SCRIPT = RedisScript.of(
+            "local mode = redis.call('hget', KEYS[1], 'mode') "
+            + "if mode == false then "
+            + "redis.call('hset', KEYS[1], 'mode', 'read'); redis.call('hincrby', KEYS[1], ARGV[2], 1); "
+            + "redis.call('pexpire', KEYS[1], ARGV[1]); return nil end "
+            + "if mode == 'read' or redis.call('hexists', KEYS[1], ARGV[3]) == 1 then "
+            + "redis.call('hincrby', KEYS[1], ARGV[2], 1); "
+            + "redis.call('pexpire', KEYS[1], math.max(redis.call('pttl', KEYS[1]), tonumber(ARGV[1]))); "
+            + "return nil end "
+            + "return redis.call('pttl', KEYS[1])",
+            Long.class);
+
+    /**
+     * 加写锁，ARGV: lease, 写字段；成功返回nil，失败返回锁的剩余过期时间ms
+     */
+    private static final RedisScript<Long> WRITE_LOCK_SCRIPT = RedisScript.of(
+            "local mode = redis.call('hget', KEYS[1], 'mode') "
+            + "if mode == false then "
+            + "redis.call('hset', KEYS[1], 'mode', 'write'); redis.call('hincrby', KEYS[1], ARGV[2], 1); "
+            + "redis.call('pexpire', KEYS[1], ARGV[1]); return nil end "
+            + "if mode == 'write' and redis.call('hexists', KEYS[1], ARGV[2]) == 1 then "
+            + "redis.call('hincrby', KEYS[1], ARGV[2], 1); redis.call('pexpire', KEYS[1], ARGV[1]); return nil end "
+            + "return redis.call('pttl', KEYS[1])",
+            Long.class);
+
+    /**
+     * 释放一次读锁，ARGV: 读字段, channel；返回-1未持有，否则为剩余重入次数
+     */
+    private static final RedisScript<Long> READ_UNLOCK_SCRIPT = RedisScript.of(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then return -1 end "
+            + "local count = redis.call('hincrby', KEYS[1], ARGV[1], -1) "
+            + "if count > 0 then return count end "
+            + "redis.call('hdel', KEYS[1], ARGV[1]) "
+            + "if redis.call('hlen', KEYS[1]) > 1 then return 0 end "
+            + "redis.call('del', KEYS[1]); redis.call('publish', ARGV[2], KEYS[1]); return 0",
+            Long.class);
+
+    /**
+     * 释放一次写锁，ARGV: 写字段, channel；返回-1未持有，否则为剩余重入次数
+     */
+    private static final RedisScript<Long> WRITE_UNLOCK_SCRIPT = RedisScript.of(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then return -1 end "
+            + "local count = redis.call('hincrby', KEYS[1], ARGV[1], -1) "
+            + "if count > 0 then return count end "
+            + "redis.call('hdel', KEYS[1], ARGV[1]) "
+            + "if redis.call('hlen', KEYS[1]) > 1 then redis.call('hset', KEYS[1], 'mode', 'read') "
+            + "else redis.call('del', KEYS[1]) end "
+            + "redis.call('publish', ARGV[2], KEYS[1]); return 0",
+            Long.class);
+
+    private final RedisLocks locks;
+
+    private final String key;
+
+    RedisReadWriteLock(RedisLocks locks, String key) {
+        this.locks = locks;
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 加读锁，有其他线程持有写锁时等待释放消息
+     *
+     * @param lease 锁过期时间
+     * @param waitTime 最长等待时间
+     * @return 是否获取成功，超时或中断返回false
+     */
+    public boolean tryReadLock(Duration lease, Duration waitTime) {
+        String owner = locks.currentOwner();
+        String leaseMillis = String.valueOf(lease.toMillis());
+        return waitFor(waitTime, () -> locks.execute(READ_LOCK_SCRIPT, key, leaseMillis,
+                readField(owner), writeField(owner)));
+    }
+
+    /**
+     * 加写锁，有其他线程持有读锁或写锁时等待释放消息
+     *
+     * @param lease 锁过期时间
+     * @param waitTime 最长等待时间
+     * @return 是否获取成功，超时或中断返回false
+     */
+    public boolean tryWriteLock(Duration lease, Duration waitTime) {
+        String owner = locks.currentOwner();
+        String leaseMillis = String.valueOf(lease.toMillis());
+        return waitFor(waitTime, () -> locks.execute(WRITE_LOCK_SCRIPT, key, leaseMillis, writeField(owner)));
+    }
+
+    /**
+     * 释放一次读锁
+     *
+     * @return 当前线程是否持有读锁
+     */
+    public boolean readUnlock() {
+        Long result = locks.execute(READ_UNLOCK_SCRIPT, key, readField(locks.currentOwner()), locks.channelOf(key));
+        return null != result && result >= 0;
+    }
+
+    /**
+     * 释放一次写锁，完全释放后通知等待的读写方
+     *
+     * @return 当前线程是否持有写锁
+     */
+    public boolean writeUnlock() {
+        Long result = locks.execute(WRITE_UNLOCK_SCRIPT, key, writeField(locks.currentOwner()), locks.channelOf(key));
+        return null != result && result >= 0;
+    }
+
+    private boolean waitFor(Duration waitTime, Supplier<Long> attempt) {
+        try {
+            return locks.waitFor(key, waitTime.toMillis(), attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("获取读写锁等待中断:key={}", key, e);
+            return false;
+        } catch (Exception e) {
+            log.error("获取读写锁失败:key={}", key, e);
+            return false;
+        }
+    }
+
+    private static String readField(String owner) {
+        return owner + ":read";
+    }
+
+    private static String writeField(String owner) {
+        return owner + ":write";
+    }
+
+}
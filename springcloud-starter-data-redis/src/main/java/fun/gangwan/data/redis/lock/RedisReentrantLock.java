@@ -0,0 +1,102 @@
+package fun.gangwan.data.redis.lock;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+
+/**
+ *
+ * RedisReentrantLock
+ * <span>可重入分布式锁：锁key为hash，field为持有者id(实例id + 线程id)，value为重入次数</span>
+ * <li>同一线程重复加锁时次数加1并重置过期时间，释放到0时删除key并发布释放消息</li>
+ * <li>加锁和释放必须在同一线程，持有期间不自动续约，过期时间需覆盖整个临界区</li>
+ *
+ */
+@Slf4j
+public class RedisReentrantLock {
+
+    /**
+     * 加锁，成功返回nil，失败返回锁的剩余过期时间ms
+     */
+    private static final RedisScript<Long> LOCK_SCRIPT = RedisScript.of(
+            "if redis.call('exists', KEYS[1]) == 0 or redis.call('hexists', KEYS[1], ARGV[1]) == 1 then "
+            + "redis.call('hincrby', KEYS[1], ARGV[1], 1); redis.call('pexpire', KEYS[1], ARGV[2]); return nil end "
+            + "return redis.call('pttl', KEYS[1])",
+            Long.class);
+
+    /**
+     * 释放一次，返回-1未持有，0已完全释放，大于0为剩余重入次数
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = RedisScript.of(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then return -1 end "
+            + "local count = redis.call('hincrby', KEYS[1], ARGV[1], -1) "
+            + "if count > 0 then return count end "
+            + "redis.call('del', KEYS[1]); redis.call('publish', ARGV[2], KEYS[1]); return 0",
+            Long.class);
+
+    private final RedisLocks locks;
+
+    private final String key;
+
+    RedisReentrantLock(RedisLocks locks, String key) {
+        this.locks = locks;
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 加锁，不等待
+     *
+     * @param lease 锁过期时间
+     * @return 是否获取成功
+     */
+    public boolean tryLock(Duration lease) {
+        try {
+            return null == attempt(locks.currentOwner(), lease.toMillis());
+        } catch (Exception e) {
+            log.error("获取可重入锁失败:key={}", key, e);
+            return false;
+        }
+    }
+
+    /**
+     * 加锁，锁被其他线程持有时等待释放消息
+     *
+     * @param lease 锁过期时间
+     * @param waitTime 最长等待时间
+     * @return 是否获取成功，超时或中断返回false
+     */
+    public boolean tryLock(Duration lease, Duration waitTime) {
+        String owner = locks.currentOwner();
+        long leaseMillis = lease.toMillis();
+        try {
+            return locks.waitFor(key, waitTime.toMillis(), () -> attempt(owner, leaseMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("获取可重入锁等待中断:key={}", key, e);
+            return false;
+        } catch (Exception e) {
+            log.error("获取可重入锁失败:key={}", key, e);
+            return false;
+        }
+    }
+
+    /**
+     * 释放一次，重入次数减到0时真正释放
+     *
+     * @return 当前线程是否持有该锁，锁已过期时返回false
+     */
+    public boolean unlock() {
+        Long result = locks.execute(UNLOCK_SCRIPT, key, locks.currentOwner(), locks.channelOf(key));
+        return null != result && result >= 0;
+    }
+
+    private Long attempt(String owner, long leaseMillis) {
+        return locks.execute(LOCK_SCRIPT, key, owner, String.valueOf(leaseMillis));
+    }
+
+}
@@ -0,0 +1,162 @@
+package fun.gangwan.data.redis.metrics;
+
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * MicrometerRedisMetrics
+ * <span>基于micrometer的指标实现，通过actuator的/metrics、/prometheus等端点暴露</span>
+ * <li>redis.helper.operation：操作耗时(不含本线程序列化)，tag component、operation、prefix、result</li>
+ * <li>redis.helper.operation.serialization：操作内本线程的序列化耗时，tag component、operation、prefix</li>
+ * <li>redis.helper.serialization、redis.helper.payload：单次序列化耗时和字节数，tag action、codec</li>
+ * <li>redis.helper.pipeline.commands：每次pipeline的命令数，tag operation</li>
+ * <li>key前缀个数有上限，meter按tag组合缓存，不在每次记录时重新注册</li>
+ *
+ */
+public class MicrometerRedisMetrics implements RedisMetrics {
+
+    private static final String OTHER = "other";
+
+    private static final String NONE = "none";
+
+    private final MeterRegistry registry;
+
+    private final boolean percentileHistogram;
+
+    /**
+     * 配置的key前缀，按长度倒序
+     */
+    private final List<String> keyPrefixes;
+
+    private final String keyPrefixDelimiter;
+
+    private final int maxKeyPrefixes;
+
+    /**
+     * 自动截取并已计入指标的key前缀
+     */
+    private final Set<String> seenPrefixes = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    /**
+     * 当前线程累计的序列化耗时ns
+     */
+    private final ThreadLocal<long[]> serializationNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    public MicrometerRedisMetrics(MeterRegistry registry, RedisHelperProperties.Metrics config) {
+        this.registry = registry;
+        this.percentileHistogram = config.isPercentileHistogram();
+        this.keyPrefixes = new ArrayList<>(config.getKeyPrefixes());
+        this.keyPrefixes.sort(Comparator.comparingInt(String::length).reversed());
+        this.keyPrefixDelimiter = config.getKeyPrefixDelimiter();
+        this.maxKeyPrefixes = config.getMaxKeyPrefixes();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordOperation(String component, String operation, String key, String result,
+                                long networkNanos, long serializationNanos) {
+        String prefix = prefixOf(key);
+        timer("redis.helper.operation", component + '|' + operation + '|' + prefix + '|' + result,
+                "component", component, "operation", operation, "prefix", prefix, "result", result)
+                .record(networkNanos, TimeUnit.NANOSECONDS);
+        if (serializationNanos > 0) {
+            timer("redis.helper.operation.serialization", component + '|' + operation + '|' + prefix,
+                    "component", component, "operation", operation, "prefix", prefix)
+                    .record(serializationNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void recordSerialization(String action, String codec, long nanos, int bytes) {
+        serializationNanos.get()[0] += nanos;
+        String cacheKey = action + '|' + codec;
+        timer("redis.helper.serialization", cacheKey, "action", action, "codec", codec)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        summary("redis.helper.payload", cacheKey, "bytes", "action", action, "codec", codec).record(bytes);
+    }
+
+    @Override
+    public void recordPipeline(String operation, long commands) {
+        summary("redis.helper.pipeline.commands", operation, null, "operation", operation).record(commands);
+    }
+
+    @Override
+    public long currentThreadSerializationNanos() {
+        return serializationNanos.get()[0];
+    }
+
+    /**
+     * 配置了key前缀时按配置匹配，否则截取第一个分隔符之前的部分，超过最大个数后记为other
+     */
+    private String prefixOf(String key) {
+        if (null == key || key.isEmpty()) {
+            return NONE;
+        }
+        if (!keyPrefixes.isEmpty()) {
+            for (String prefix : keyPrefixes) {
+                if (key.startsWith(prefix)) {
+                    return prefix;
+                }
+            }
+            return OTHER;
+        }
+        int index = key.indexOf(keyPrefixDelimiter);
+        if (index <= 0) {
+            return OTHER;
+        }
+        String prefix = key.substring(0, index);
+        if (seenPrefixes.contains(prefix)) {
+            return prefix;
+        }
+        if (seenPrefixes.size() >= maxKeyPrefixes) {
+            return OTHER;
+        }
+        seenPrefixes.add(prefix);
+        return prefix;
+    }
+
+    private Timer timer(String name, String cacheKey, String... tags) {
+        String id = name + '|' + cacheKey;
+        Timer timer = timers.get(id);
+        if (null == timer) {
+            timer = timers.computeIfAbsent(id, k -> Timer.builder(name)
+                    .tags(tags)
+                    .publishPercentileHistogram(percentileHistogram)
+                    .register(registry));
+        }
+        return timer;
+    }
+
+    private DistributionSummary summary(String name, String cacheKey, String baseUnit, String... tags) {
+        String id = name + '|' + cacheKey;
+        DistributionSummary summary = summaries.get(id);
+        if (null == summary) {
+            summary = summaries.computeIfAbsent(id, k -> DistributionSummary.builder(name)
+                    .baseUnit(baseUnit)
+                    .tags(tags)
+                    .publishPercentileHistogram(percentileHistogram)
+                    .register(registry));
+        }
+        return summary;
+    }
+
+}
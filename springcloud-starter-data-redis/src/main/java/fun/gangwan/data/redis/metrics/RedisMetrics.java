@@ -0,0 +1,93 @@
+package fun.gangwan.data.redis.metrics;
+
+/**
+ *
+ * RedisMetrics
+ * <span>Redis操作指标记录，未开启指标时使用{@link #NOOP}，调用方先判断{@link #isEnabled()}，关闭时不计时</span>
+ *
+ */
+public interface RedisMetrics {
+
+    String ENCODE = "encode";
+
+    String DECODE = "decode";
+
+    String HIT = "hit";
+
+    String MISS = "miss";
+
+    String SUCCESS = "success";
+
+    String ERROR = "error";
+
+    /**
+     * 不记录任何指标
+     */
+    RedisMetrics NOOP = new RedisMetrics() {
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordOperation(String component, String operation, String key, String result,
+                                    long networkNanos, long serializationNanos) {
+        }
+
+        @Override
+        public void recordSerialization(String action, String codec, long nanos, int bytes) {
+        }
+
+        @Override
+        public void recordPipeline(String operation, long commands) {
+        }
+
+        @Override
+        public long currentThreadSerializationNanos() {
+            return 0;
+        }
+    };
+
+    /**
+     * @return 是否记录指标
+     */
+    boolean isEnabled();
+
+    /**
+     * 记录一次操作
+     *
+     * @param component 组件，如utils、pipeline、counter
+     * @param operation 操作，即方法名
+     * @param key redis key，用于提取key前缀，可为null
+     * @param result hit、miss、success、error
+     * @param networkNanos 除本线程序列化外的耗时ns，主要为网络耗时
+     * @param serializationNanos 本线程序列化耗时ns
+     */
+    void recordOperation(String component, String operation, String key, String result,
+                         long networkNanos, long serializationNanos);
+
+    /**
+     * 记录一次value序列化或反序列化
+     *
+     * @param action encode、decode
+     * @param codec 编解码器名称
+     * @param nanos 耗时ns
+     * @param bytes 序列化后的字节数
+     */
+    void recordSerialization(String action, String codec, long nanos, int bytes);
+
+    /**
+     * 记录一次pipeline的命令数
+     *
+     * @param operation 操作，即方法名
+     * @param commands 命令数
+     */
+    void recordPipeline(String operation, long commands);
+
+    /**
+     * @return 当前线程累计的序列化耗时ns，操作前后相减得到操作内的序列化耗时
+     */
+    long currentThreadSerializationNanos();
+
+}
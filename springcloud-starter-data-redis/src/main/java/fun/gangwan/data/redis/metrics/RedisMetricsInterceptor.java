@@ -0,0 +1,140 @@
+package fun.gangwan.data.redis.metrics;
+
+import fun.gangwan.data.redis.callback.BulkLoadCallback;
+import fun.gangwan.data.redis.callback.LoadCallback;
+import fun.gangwan.data.redis.template.PipelineSummary;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *
+ * RedisMetricsInterceptor
+ * <span>按方法记录RedisUtils、RedisPipelineTemplate、RedisCounter的操作指标，只在开启指标时代理</span>
+ * <li>key取第一个String参数，或第一个集合参数的第一个元素</li>
+ * <li>带LoadCallback、BulkLoadCallback的方法：回调被调用记为miss，否则为hit</li>
+ * <li>redisGet*、redisHashGet*、redisHashMultiGet*：返回null或空集合记为miss，否则为hit</li>
+ * <li>getter、setter不记录；同一实例内部的方法调用不经过代理，只记录最外层操作</li>
+ *
+ */
+public class RedisMetricsInterceptor implements MethodInterceptor {
+
+    private final String component;
+
+    private final RedisMetrics metrics;
+
+    public RedisMetricsInterceptor(String component, RedisMetrics metrics) {
+        this.component = component;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        if (!isOperation(method)) {
+            return invocation.proceed();
+        }
+        Object[] args = invocation.getArguments();
+        AtomicBoolean loaded = wrapLoadCallbacks(args);
+        long serializationStart = metrics.currentThreadSerializationNanos();
+        long start = System.nanoTime();
+        String result = RedisMetrics.ERROR;
+        try {
+            Object value = invocation.proceed();
+            result = resultOf(method.getName(), value, loaded);
+            if (value instanceof PipelineSummary) {
+                metrics.recordPipeline(method.getName(), ((PipelineSummary) value).getTotalCommands());
+            } else if (component.equals(RedisMetricsPostProcessor.PIPELINE) && args.length > 0
+                    && args[0] instanceof Collection) {
+                metrics.recordPipeline(method.getName(), ((Collection<?>) args[0]).size());
+            }
+            return value;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            long serialization = metrics.currentThreadSerializationNanos() - serializationStart;
+            metrics.recordOperation(component, method.getName(), keyOf(args), result,
+                    Math.max(0, elapsed - serialization), serialization);
+        }
+    }
+
+    private static boolean isOperation(Method method) {
+        if (method.getDeclaringClass() == Object.class) {
+            return false;
+        }
+        String name = method.getName();
+        int parameters = method.getParameterCount();
+        if (parameters == 0 && (name.startsWith("get") || name.startsWith("is"))) {
+            return false;
+        }
+        if (parameters == 1 && name.startsWith("set") && method.getReturnType() == void.class) {
+            return false;
+        }
+        return !"getInstance".equals(name);
+    }
+
+    /**
+     * 替换加载回调，记录是否被调用
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicBoolean wrapLoadCallbacks(Object[] args) {
+        AtomicBoolean loaded = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof LoadCallback) {
+                LoadCallback<?> callback = (LoadCallback<?>) args[i];
+                if (null == loaded) {
+                    loaded = new AtomicBoolean();
+                }
+                AtomicBoolean flag = loaded;
+                args[i] = (LoadCallback) () -> {
+                    flag.set(true);
+                    return callback.load();
+                };
+            } else if (args[i] instanceof BulkLoadCallback) {
+                BulkLoadCallback<?> callback = (BulkLoadCallback<?>) args[i];
+                if (null == loaded) {
+                    loaded = new AtomicBoolean();
+                }
+                AtomicBoolean flag = loaded;
+                args[i] = (BulkLoadCallback) keys -> {
+                    flag.set(true);
+                    return callback.load(keys);
+                };
+            }
+        }
+        return loaded;
+    }
+
+    private static String resultOf(String operation, Object value, AtomicBoolean loaded) {
+        if (null != loaded) {
+            return loaded.get() ? RedisMetrics.MISS : RedisMetrics.HIT;
+        }
+        if (operation.startsWith("redisGet") || operation.startsWith("redisHashGet")
+                || operation.startsWith("redisHashMultiGet")) {
+            boolean empty = null == value
+                    || (value instanceof Collection && ((Collection<?>) value).isEmpty())
+                    || (value instanceof Map && ((Map<?, ?>) value).isEmpty());
+            return empty ? RedisMetrics.MISS : RedisMetrics.HIT;
+        }
+        return RedisMetrics.SUCCESS;
+    }
+
+    private static String keyOf(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof String) {
+                return (String) arg;
+            }
+            if (arg instanceof Collection) {
+                Iterator<?> iterator = ((Collection<?>) arg).iterator();
+                Object first = iterator.hasNext() ? iterator.next() : null;
+                return first instanceof String ? (String) first : null;
+            }
+        }
+        return null;
+    }
+
+}
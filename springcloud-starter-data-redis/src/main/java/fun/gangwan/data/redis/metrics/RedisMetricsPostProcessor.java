@@ -0,0 +1,57 @@
+package fun.gangwan.data.redis.metrics;
+
+import fun.gangwan.data.redis.support.RedisCounter;
+import fun.gangwan.data.redis.template.RedisPipelineTemplate;
+import fun.gangwan.data.redis.util.RedisUtils;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ *
+ * RedisMetricsPostProcessor
+ * <span>开启指标时为RedisUtils、RedisPipelineTemplate、RedisCounter创建记录指标的代理，未开启时不创建代理，热路径没有额外开销</span>
+ * <li>RedisUtils.initInstance()同时替换为代理</li>
+ *
+ */
+public class RedisMetricsPostProcessor implements BeanPostProcessor {
+
+    public static final String UTILS = "utils";
+
+    public static final String PIPELINE = "pipeline";
+
+    public static final String COUNTER = "counter";
+
+    private final ObjectProvider<RedisMetrics> metrics;
+
+    public RedisMetricsPostProcessor(ObjectProvider<RedisMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        String component;
+        if (bean instanceof RedisUtils) {
+            component = UTILS;
+        } else if (bean instanceof RedisPipelineTemplate) {
+            component = PIPELINE;
+        } else if (bean instanceof RedisCounter) {
+            component = COUNTER;
+        } else {
+            return bean;
+        }
+        RedisMetrics redisMetrics = metrics.getIfAvailable(() -> RedisMetrics.NOOP);
+        if (!redisMetrics.isEnabled()) {
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new RedisMetricsInterceptor(component, redisMetrics));
+        Object proxy = proxyFactory.getProxy(bean.getClass().getClassLoader());
+        if (proxy instanceof RedisUtils && RedisUtils.initInstance() == bean) {
+            RedisUtils.initInstance((RedisUtils) proxy);
+        }
+        return proxy;
+    }
+
+}
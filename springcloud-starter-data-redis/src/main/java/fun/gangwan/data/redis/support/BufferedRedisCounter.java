@@ -0,0 +1,338 @@
+package fun.gangwan.data.redis.support;
+
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ *
+ * BufferedRedisCounter
+ * <span>本地缓冲计数器：增量先累加到本JVM的LongAdder，后台线程定时或待刷新key过多时用pipeline INCRBY批量写入</span>
+ * <li>适用于允许秒级延迟的统计类计数，读取Redis中的值不包含未刷新的增量</li>
+ * <li>刷新失败的增量：匹配retryKeyPrefixes的key保留在内存中重试，超过maxRetries后与其他key一样丢弃并上报</li>
+ * <li>网络异常时无法确认INCRBY是否已执行，重试可能重复计数</li>
+ *
+ */
+@Slf4j
+public class BufferedRedisCounter {
+
+    private final StringRedisTemplate redis;
+
+    private final int flushThreshold;
+
+    private final int flushBatchSize;
+
+    private final List<String> retryKeyPrefixes;
+
+    private final int maxRetries;
+
+    /**
+     * key -&gt; 未刷新的增量
+     */
+    private final ConcurrentMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 上次刷新时增量为0而移出pending的计数器，下次刷新时再收集一次，避免丢失移出前拿到引用的线程写入的增量
+     */
+    private List<Map.Entry<String, LongAdder>> retired = new ArrayList<>();
+
+    /**
+     * key -&gt; 已失败的刷新次数，仅刷新线程访问
+     */
+    private final Map<String, Integer> retries = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private volatile BiConsumer<Map<String, Long>, Throwable> failureHandler;
+
+    private final LongAdder flushCount = new LongAdder();
+
+    private final LongAdder flushedKeyCount = new LongAdder();
+
+    private final LongAdder failedFlushCount = new LongAdder();
+
+    private final LongAdder retriedKeyCount = new LongAdder();
+
+    private final LongAdder droppedKeyCount = new LongAdder();
+
+    public BufferedRedisCounter(StringRedisTemplate redis, RedisHelperProperties.Counter config) {
+        this.redis = redis;
+        this.flushThreshold = config.getFlushThreshold();
+        this.flushBatchSize = config.getFlushBatchSize();
+        this.retryKeyPrefixes = new ArrayList<>(config.getRetryKeyPrefixes());
+        this.maxRetries = config.getMaxRetries();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-counter-flush-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = config.getFlushInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 自增1
+     *
+     * @param key key
+     */
+    public void increment(String key) {
+        increment(key, 1);
+    }
+
+    /**
+     * 累加增量，不访问Redis
+     *
+     * @param key key
+     * @param delta 增量，可以为负数
+     */
+    public void increment(String key, long delta) {
+        LongAdder adder = pending.get(key);
+        if (null == adder) {
+            adder = pending.computeIfAbsent(key, k -> new LongAdder());
+            if (pending.size() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::flushQuietly);
+                } catch (RejectedExecutionException e) {
+                    flushRequested.set(false);
+                }
+            }
+        }
+        adder.add(delta);
+    }
+
+    /**
+     * @param key key
+     * @return 本JVM内未刷新的增量
+     */
+    public long getPending(String key) {
+        LongAdder adder = pending.get(key);
+        return null == adder ? 0 : adder.sum();
+    }
+
+    /**
+     * @param handler 丢弃增量时回调，参数为丢弃的key -&gt; 增量及失败原因
+     */
+    public void setFailureHandler(BiConsumer<Map<String, Long>, Throwable> handler) {
+        this.failureHandler = handler;
+    }
+
+    /**
+     * 立即刷新，在刷新线程中执行
+     */
+    public void flushNow() {
+        executor.execute(this::flushQuietly);
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("刷新缓冲计数器失败", e);
+        }
+    }
+
+    /**
+     * 收集所有增量并分批写入，只在刷新线程或关闭时调用
+     */
+    private synchronized void flush() {
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        List<Map.Entry<String, LongAdder>> idle = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            long delta = drain(entry.getValue());
+            if (delta != 0) {
+                deltas.merge(entry.getKey(), delta, Long::sum);
+            } else if (pending.remove(entry.getKey(), entry.getValue())) {
+                idle.add(entry);
+            }
+        }
+        for (Map.Entry<String, LongAdder> entry : retired) {
+            long delta = drain(entry.getValue());
+            if (delta != 0) {
+                deltas.merge(entry.getKey(), delta, Long::sum);
+            }
+        }
+        retired = idle;
+        if (deltas.isEmpty()) {
+            return;
+        }
+        flushCount.increment();
+        List<Map.Entry<String, Long>> batch = new ArrayList<>(Math.min(deltas.size(), flushBatchSize));
+        for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+            batch.add(entry);
+            if (batch.size() >= flushBatchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    /**
+     * 取出增量：sum后减去，不会丢失并发写入的增量
+     */
+    private static long drain(LongAdder adder) {
+        long delta = adder.sum();
+        if (delta != 0) {
+            adder.add(-delta);
+        }
+        return delta;
+    }
+
+    private void write(List<Map.Entry<String, Long>> batch) {
+        List<Object> results;
+        Throwable cause = null;
+        try {
+            @SuppressWarnings("unchecked")
+            RedisSerializer<String> keySerializer = (RedisSerializer<String>) redis.getKeySerializer();
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<String, Long> entry : batch) {
+                    connection.incrBy(keySerializer.serialize(entry.getKey()), entry.getValue());
+                }
+                return null;
+            });
+            results = Collections.emptyList();
+        } catch (RedisPipelineException e) {
+            results = e.getPipelineResult();
+            cause = e;
+        } catch (Exception e) {
+            results = null;
+            cause = e;
+        }
+        Map<String, Long> dropped = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Map.Entry<String, Long> entry = batch.get(i);
+            boolean failed = null == results
+                    || (i < results.size() && results.get(i) instanceof Throwable);
+            if (!failed) {
+                flushedKeyCount.increment();
+                retries.remove(entry.getKey());
+            } else if (retryable(entry.getKey())) {
+                //增量放回内存，下次刷新时与新增量合并
+                retriedKeyCount.increment();
+                increment(entry.getKey(), entry.getValue());
+            } else {
+                droppedKeyCount.increment();
+                dropped.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (null != cause) {
+            failedFlushCount.increment();
+            log.error("缓冲计数器刷新失败:keys={},dropped={}", batch.size(), dropped.size(), cause);
+        }
+        if (!dropped.isEmpty()) {
+            BiConsumer<Map<String, Long>, Throwable> handler = this.failureHandler;
+            if (null != handler) {
+                try {
+                    handler.accept(dropped, cause);
+                } catch (Exception e) {
+                    log.error("缓冲计数器失败回调异常", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 匹配重试前缀且未超过最大重试次数时计数并返回true，否则清除重试次数
+     */
+    private boolean retryable(String key) {
+        boolean matched = false;
+        for (String prefix : retryKeyPrefixes) {
+            if (key.startsWith(prefix)) {
+                matched = true;
+                break;
+            }
+        }
+        if (matched && retries.merge(key, 1, Integer::sum) <= maxRetries) {
+            return true;
+        }
+        retries.remove(key);
+        return false;
+    }
+
+    /**
+     * 停止定时刷新并刷新剩余增量
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("缓冲计数器刷新线程未在5s内结束");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("关闭时刷新缓冲计数器失败", e);
+        }
+        if (!pending.isEmpty()) {
+            long remaining = pending.values().stream().filter(adder -> adder.sum() != 0).count();
+            if (remaining > 0) {
+                log.error("关闭时缓冲计数器仍有未刷新的增量:keys={}", remaining);
+            }
+        }
+    }
+
+    /**
+     * @return 本JVM内待刷新的key数量
+     */
+    public int getPendingKeyCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return 有增量需要写入的刷新次数
+     */
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    public long getFlushedKeyCount() {
+        return flushedKeyCount.sum();
+    }
+
+    /**
+     * @return 写入失败的pipeline次数
+     */
+    public long getFailedFlushCount() {
+        return failedFlushCount.sum();
+    }
+
+    /**
+     * @return 写入失败后放回内存重试的key次数
+     */
+    public long getRetriedKeyCount() {
+        return retriedKeyCount.sum();
+    }
+
+    /**
+     * @return 写入失败后丢弃增量的key次数
+     */
+    public long getDroppedKeyCount() {
+        return droppedKeyCount.sum();
+    }
+
+}
@@ -0,0 +1,95 @@
+package fun.gangwan.data.redis.support;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+
+/**
+ *
+ * 限流规则
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+public class RateLimitRule {
+
+    public enum Algorithm {
+
+        /**
+         * 令牌桶：按limit/window匀速补充令牌，允许burst的突发
+         */
+        TOKEN_BUCKET,
+
+        /**
+         * 滑动窗口日志：精确统计窗口内的请求，每个请求占用一个zset成员，适合limit较小的场景
+         */
+        SLIDING_WINDOW_LOG,
+
+        /**
+         * 滑动窗口计数：按上一窗口计数加权估算，只占用一个hash
+         */
+        SLIDING_WINDOW_COUNTER
+    }
+
+    @Builder.Default
+    private Algorithm algorithm = Algorithm.TOKEN_BUCKET;
+
+    /**
+     * 窗口内允许的请求数
+     */
+    private long limit;
+
+    /**
+     * 窗口长度，默认1s
+     */
+    @Builder.Default
+    private Duration window = Duration.ofSeconds(1);
+
+    /**
+     * 令牌桶容量，不大于0时等于limit
+     */
+    @Builder.Default
+    private long burst = 0;
+
+    /**
+     * 本地预取的许可数，大于1时每次从redis批量租用许可，本JVM内消费完之前不访问redis
+     */
+    @Builder.Default
+    private long localBatch = 1;
+
+    /**
+     * 本地预取许可的有效期，过期未用完的许可作废，默认100ms
+     */
+    @Builder.Default
+    private Duration localLeaseTime = Duration.ofMillis(100);
+
+    public RateLimitRule(Algorithm algorithm, long limit, Duration window, long burst, long localBatch,
+                         Duration localLeaseTime) {
+        this.algorithm = algorithm;
+        this.limit = limit;
+        this.window = window;
+        this.burst = burst;
+        this.localBatch = localBatch;
+        this.localLeaseTime = localLeaseTime;
+        validate();
+    }
+
+    /**
+     * 校验规则，limit与window不大于0时令牌补充速率无法计算
+     */
+    public void validate() {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("限流limit必须大于0:" + limit);
+        }
+        if (window == null || window.toMillis() <= 0) {
+            throw new IllegalArgumentException("限流window必须不小于1ms:" + window);
+        }
+    }
+
+    public long getCapacity() {
+        return burst > 0 ? burst : limit;
+    }
+}
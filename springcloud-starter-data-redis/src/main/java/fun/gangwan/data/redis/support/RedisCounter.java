@@ -1,25 +1,52 @@
 package fun.gangwan.data.redis.support;
 
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import fun.gangwan.data.redis.template.RedisHelperTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
  *
  * RedisCounter
  * <span>Redis计数器工具类，提供自增、自减计数方法</span>
+ * <span>热点计数器使用分片计数：写入随机分片 key:s{i}，读取时一次MGET求和，分片分散在不同hash slot</span>
+ * <span>允许秒级延迟的统计类计数使用{@link BufferedRedisCounter}，不在请求线程访问Redis</span>
  *
  *
  */
 @Component
 public class RedisCounter {
 
-    @Resource
+    /**
+     * 自增并设置过期时间，ARGV: 增量, 过期时间ms
+     */
+    private static final RedisScript<Long> INCR_EXPIRE_SCRIPT = RedisScript.of(
+            "local value = redis.call('incrby', KEYS[1], ARGV[1]) "
+            + "redis.call('pexpire', KEYS[1], ARGV[2]) return value",
+            Long.class);
+
     private StringRedisTemplate stringRedisTemplate;
 
+    /**
+     * 使用starter的模板，开启key命名空间时key带前缀
+     */
+    @Resource
+    void setRedisHelperTemplate(RedisHelperTemplate redisHelperTemplate) {
+        this.stringRedisTemplate = redisHelperTemplate.getTemplate();
+    }
+
+    @Resource
+    private RedisHelperProperties redisHelperProperties;
+
     /**
      * 获取当前计数器数值
      * @param key key
@@ -48,9 +75,32 @@ public class RedisCounter {
      * @return 自增后的值
      */
     public Long increment(String key, long timeout, TimeUnit unit){
-        Long result = stringRedisTemplate.opsForValue().increment(key);
-        stringRedisTemplate.expire(key, timeout, unit);
-        return result;
+        return incrementBy(key, 1, timeout, unit);
+    }
+
+    /**
+     * 按增量自增长
+     * 如果key不存在，则在执行操作前将其设置为0
+     * @param key key
+     * @param delta 增量，可以为负数
+     * @return 自增后的值
+     */
+    public Long incrementBy(String key, long delta){
+        return stringRedisTemplate.opsForValue().increment(key, delta);
+    }
+
+    /**
+     * 自增长并设置过期时间，一次Lua脚本完成
+     * 如果key不存在，则在执行操作前将其设置为0
+     * @param key key
+     * @param delta 增量，可以为负数
+     * @param timeout 过期时间
+     * @param unit 时间单位
+     * @return 自增后的值
+     */
+    public Long incrementBy(String key, long delta, long timeout, TimeUnit unit){
+        return stringRedisTemplate.execute(INCR_EXPIRE_SCRIPT, Collections.singletonList(key),
+                String.valueOf(delta), String.valueOf(unit.toMillis(timeout)));
     }
 
     /**
@@ -99,9 +149,7 @@ public class RedisCounter {
      * @return 自减后的值，如果键不存在，那么在执行decrement()操作前，会先将其初始化为0
      */
     public Long decrement(String key, long timeout, TimeUnit unit) {
-        Long result = stringRedisTemplate.opsForValue().decrement(key);
-        stringRedisTemplate.expire(key, timeout, unit);
-        return result;
+        return incrementBy(key, -1, timeout, unit);
     }
 
     /**
@@ -118,4 +166,103 @@ public class RedisCounter {
         return stringRedisTemplate.opsForValue().decrement(key);
     }
 
+    /**
+     * 分片自增，使用默认分片数
+     *
+     * @param key 计数器key
+     * @param delta 增量
+     * @return 本次写入分片自增后的值，不是计数器总数
+     */
+    public Long stripedIncrement(String key, long delta) {
+        return stripedIncrement(key, delta, redisHelperProperties.getCounter().getStripes());
+    }
+
+    /**
+     * 分片自增
+     *
+     * @param key 计数器key
+     * @param delta 增量
+     * @param stripes 分片数
+     * @return 本次写入分片自增后的值，不是计数器总数
+     */
+    public Long stripedIncrement(String key, long delta, int stripes) {
+        return stringRedisTemplate.opsForValue().increment(randomStripe(key, stripes), delta);
+    }
+
+    /**
+     * 分片自增并设置分片过期时间，一次Lua脚本完成
+     *
+     * @param key 计数器key
+     * @param delta 增量
+     * @param stripes 分片数
+     * @param timeout 过期时间
+     * @param unit 时间单位
+     * @return 本次写入分片自增后的值，不是计数器总数
+     */
+    public Long stripedIncrement(String key, long delta, int stripes, long timeout, TimeUnit unit) {
+        return incrementBy(randomStripe(key, stripes), delta, timeout, unit);
+    }
+
+    /**
+     * 分片计数器总数，使用默认分片数
+     *
+     * @param key 计数器key
+     * @return 所有分片之和，不存在时为0
+     */
+    public long getStripedCounter(String key) {
+        return getStripedCounter(key, redisHelperProperties.getCounter().getStripes());
+    }
+
+    /**
+     * 分片计数器总数，一次MGET读取所有分片
+     *
+     * @param key 计数器key
+     * @param stripes 分片数
+     * @return 所有分片之和，不存在时为0
+     */
+    public long getStripedCounter(String key, int stripes) {
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(stripeKeys(key, stripes));
+        long sum = 0;
+        if (values != null) {
+            for (String value : values) {
+                if (value != null) {
+                    sum += Long.parseLong(value);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 删除分片计数器的所有分片
+     *
+     * @param key 计数器key
+     * @param stripes 分片数
+     * @return 删除的分片数
+     */
+    public Long deleteStriped(String key, int stripes) {
+        return stringRedisTemplate.delete(stripeKeys(key, stripes));
+    }
+
+    /**
+     * @param key 计数器key
+     * @param stripes 分片数
+     * @return 所有分片key，key包含hash tag时所有分片位于同一slot
+     */
+    public static List<String> stripeKeys(String key, int stripes) {
+        List<String> keys = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            keys.add(stripeKey(key, i));
+        }
+        return keys;
+    }
+
+    private static String randomStripe(String key, int stripes) {
+        return stripeKey(key, ThreadLocalRandom.current().nextInt(stripes));
+    }
+
+    private static String stripeKey(String key, int stripe) {
+        return key + ":s" + stripe;
+    }
+
 }
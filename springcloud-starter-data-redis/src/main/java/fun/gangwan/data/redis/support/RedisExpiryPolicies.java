@@ -0,0 +1,225 @@
+package fun.gangwan.data.redis.support;
+
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * RedisExpiryPolicies
+ * <span>按key前缀的过期策略：写入时过期时间随机抖动、未指定过期时间时补充默认值，读取时滑动续期</span>
+ * <li>RedisUtils的redisSet*、redisHash*、get or set写入自动应用，最长前缀优先</li>
+ * <li>滑动续期的key在本地去重后由后台线程定时批量pipeline PEXPIRE，不在读取线程访问Redis</li>
+ *
+ */
+@Slf4j
+public class RedisExpiryPolicies {
+
+    private final StringRedisTemplate redis;
+
+    /**
+     * key前缀 -&gt; 过期策略，按前缀长度倒序
+     */
+    private final List<Map.Entry<String, RedisHelperProperties.ExpiryPolicy>> policies = new ArrayList<>();
+
+    private final int touchBatchSize;
+
+    /**
+     * 待续期的key，去重
+     */
+    private final Set<String> pendingTouches = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 存在滑动过期策略时创建
+     */
+    private final ScheduledExecutorService executor;
+
+    private final LongAdder touchedCount = new LongAdder();
+
+    private final LongAdder touchFailureCount = new LongAdder();
+
+    public RedisExpiryPolicies(StringRedisTemplate redis, RedisHelperProperties.Expiry config) {
+        this.redis = redis;
+        this.touchBatchSize = Math.max(1, config.getTouchBatchSize());
+        boolean sliding = false;
+        for (Map.Entry<String, RedisHelperProperties.ExpiryPolicy> entry : config.getPolicies().entrySet()) {
+            policies.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+            sliding |= null != entry.getValue().getMaxIdle();
+        }
+        policies.sort(Comparator.comparingInt(
+                (Map.Entry<String, RedisHelperProperties.ExpiryPolicy> entry) -> entry.getKey().length()).reversed());
+        if (sliding) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-expiry-touch-");
+            threadFactory.setDaemon(true);
+            this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            long interval = config.getTouchInterval().toMillis();
+            executor.scheduleWithFixedDelay(this::flushTouches, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * @return 没有任何策略的实例
+     */
+    public static RedisExpiryPolicies none() {
+        return new RedisExpiryPolicies(null, new RedisHelperProperties.Expiry());
+    }
+
+    /**
+     * @param key redis key
+     * @return key前缀匹配的策略，未匹配时为null
+     */
+    public RedisHelperProperties.ExpiryPolicy policyFor(String key) {
+        for (Map.Entry<String, RedisHelperProperties.ExpiryPolicy> entry : policies) {
+            if (key.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 写入时的过期时间
+     *
+     * @param key redis key
+     * @param ttlMillis 调用方指定的过期时间ms，小于等于0表示未指定
+     * @return 应用策略后的过期时间ms，小于等于0表示不设置过期时间
+     */
+    public long ttlMillis(String key, long ttlMillis) {
+        if (policies.isEmpty()) {
+            return ttlMillis;
+        }
+        RedisHelperProperties.ExpiryPolicy policy = policyFor(key);
+        if (null == policy) {
+            return ttlMillis;
+        }
+        if (ttlMillis <= 0) {
+            if (null != policy.getTtl()) {
+                ttlMillis = policy.getTtl().toMillis();
+            } else if (null != policy.getMaxIdle()) {
+                ttlMillis = policy.getMaxIdle().toMillis();
+            } else {
+                return ttlMillis;
+            }
+        }
+        return jitter(ttlMillis, policy.getJitter());
+    }
+
+    /**
+     * 读取后续期，key匹配滑动过期策略时加入待续期集合
+     *
+     * @param key redis key
+     */
+    public void touch(String key) {
+        if (null == executor) {
+            return;
+        }
+        RedisHelperProperties.ExpiryPolicy policy = policyFor(key);
+        if (null != policy && null != policy.getMaxIdle()) {
+            pendingTouches.add(key);
+        }
+    }
+
+    /**
+     * 读取后续期
+     *
+     * @param keys redis key
+     */
+    public void touch(Iterable<String> keys) {
+        if (null == executor) {
+            return;
+        }
+        for (String key : keys) {
+            touch(key);
+        }
+    }
+
+    private void flushTouches() {
+        if (pendingTouches.isEmpty()) {
+            return;
+        }
+        List<String> batch = new ArrayList<>(Math.min(pendingTouches.size(), touchBatchSize));
+        Iterator<String> iterator = pendingTouches.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            iterator.remove();
+            if (batch.size() >= touchBatchSize || !iterator.hasNext()) {
+                pexpire(batch);
+                batch = new ArrayList<>(touchBatchSize);
+            }
+        }
+    }
+
+    private void pexpire(List<String> keys) {
+        try {
+            @SuppressWarnings("unchecked")
+            RedisSerializer<String> keySerializer = (RedisSerializer<String>) redis.getKeySerializer();
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    RedisHelperProperties.ExpiryPolicy policy = policyFor(key);
+                    connection.pExpire(keySerializer.serialize(key),
+                            jitter(policy.getMaxIdle().toMillis(), policy.getJitter()));
+                }
+                return null;
+            });
+            touchedCount.add(keys.size());
+        } catch (Exception e) {
+            touchFailureCount.add(keys.size());
+            log.error("滑动过期续期失败:keys={}", keys.size(), e);
+        }
+    }
+
+    private static long jitter(long ttlMillis, double jitter) {
+        if (jitter <= 0) {
+            return ttlMillis;
+        }
+        long bound = (long) (ttlMillis * jitter);
+        return bound <= 0 ? ttlMillis : ttlMillis + ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * 停止续期线程，未续期的key不再处理
+     */
+    public void shutdown() {
+        if (null != executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isEmpty() {
+        return policies.isEmpty();
+    }
+
+    /**
+     * @return 已续期的key次数
+     */
+    public long getTouchedCount() {
+        return touchedCount.sum();
+    }
+
+    /**
+     * @return 续期失败的key次数
+     */
+    public long getTouchFailureCount() {
+        return touchFailureCount.sum();
+    }
+
+}
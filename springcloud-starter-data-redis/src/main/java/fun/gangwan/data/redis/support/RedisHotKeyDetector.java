@@ -0,0 +1,285 @@
+package fun.gangwan.data.redis.support;
+
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import fun.gangwan.data.redis.cache.RedisNearCache;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * RedisHotKeyDetector
+ * <span>客户端热key、大key探测：按采样率抽样RedisUtils的读写，用count-min sketch估算每个key在当前窗口的访问次数和字节数，
+ * 候选集合保留估算值较大的key，每个窗口结束时产出访问次数、字节数的top-N，并确定下一窗口的热key</span>
+ * <li>sketch为定长AtomicLongArray，使用String缓存的hashCode，记录时不分配对象</li>
+ * <li>估算值只会偏大，不会偏小；采样记录按采样率放大</li>
+ * <li>开启本地缓存时热key的读取走短过期时间的本地缓存，其他节点写入时本节点最多在本地缓存过期前读到旧值</li>
+ *
+ */
+@Slf4j
+public class RedisHotKeyDetector {
+
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F, 0x165667B1, 0xD3A2646C,
+            0xFD7046C5, 0xB55A4F09};
+
+    private final int sampleRate;
+
+    private final int topN;
+
+    private final int maxCandidates;
+
+    private final long hotThreshold;
+
+    private final long windowMillis;
+
+    private final int depth;
+
+    private final int widthMask;
+
+    private final AtomicLongArray accessSketch;
+
+    private final AtomicLongArray bytesSketch;
+
+    /**
+     * 当前窗口的候选key
+     */
+    private final Set<String> candidates = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 候选集合达到topN*4后，访问次数估算值不低于该值的key才能进入候选集合，最多topN*16个
+     */
+    private volatile long admitThreshold;
+
+    /**
+     * 候选集合达到topN*4后，字节数估算值不低于该值的key才能进入候选集合
+     */
+    private volatile long bytesAdmitThreshold = Long.MAX_VALUE;
+
+    private volatile Set<String> hotKeys = Collections.emptySet();
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    /**
+     * 热key本地缓存，未开启时为null
+     */
+    private final RedisNearCache localCache;
+
+    private final ScheduledExecutorService executor;
+
+    private final LongAdder sampledCount = new LongAdder();
+
+    public RedisHotKeyDetector(RedisHelperProperties.HotKey config) {
+        this.sampleRate = Math.max(1, config.getSampleRate());
+        this.topN = Math.max(1, config.getTopN());
+        this.maxCandidates = topN * 4;
+        this.admitThreshold = 2L * sampleRate;
+        this.hotThreshold = config.getHotThreshold();
+        this.windowMillis = config.getWindow().toMillis();
+        this.depth = Math.min(Math.max(1, config.getSketchDepth()), SEEDS.length);
+        int width = Integer.highestOneBit(Math.max(16, config.getSketchWidth() - 1) << 1);
+        this.widthMask = width - 1;
+        this.accessSketch = new AtomicLongArray(depth * width);
+        this.bytesSketch = new AtomicLongArray(depth * width);
+        this.localCache = config.getLocalCache().isEnabled() ? new RedisNearCache(config.getLocalCache()) : null;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-hot-key-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        executor.scheduleAtFixedRate(this::rollover, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一次读写，按采样率抽样
+     *
+     * @param key redis key
+     * @param bytes value字节数，未知时传0
+     */
+    public void record(String key, int bytes) {
+        if (null == key || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+            return;
+        }
+        sampledCount.increment();
+        int hash = key.hashCode();
+        long access = Long.MAX_VALUE;
+        long totalBytes = Long.MAX_VALUE;
+        long weightedBytes = (long) bytes * sampleRate;
+        for (int i = 0; i < depth; i++) {
+            int index = i * (widthMask + 1) + (mix(hash, SEEDS[i]) & widthMask);
+            access = Math.min(access, accessSketch.addAndGet(index, sampleRate));
+            totalBytes = Math.min(totalBytes, weightedBytes > 0
+                    ? bytesSketch.addAndGet(index, weightedBytes) : bytesSketch.get(index));
+        }
+        int size = candidates.size();
+        if (size < maxCandidates
+                || (size < maxCandidates * 4 && (access >= admitThreshold || totalBytes >= bytesAdmitThreshold))) {
+            candidates.add(key);
+        }
+    }
+
+    /**
+     * @param key redis key
+     * @return 是否为上一窗口探测出的热key
+     */
+    public boolean isHot(String key) {
+        return hotKeys.contains(key);
+    }
+
+    /**
+     * @param key redis key
+     * @return 热key且开启本地缓存时返回本地缓存，否则为null
+     */
+    public RedisNearCache localCacheFor(String key) {
+        return null != localCache && hotKeys.contains(key) ? localCache : null;
+    }
+
+    /**
+     * 本节点写入时失效热key本地缓存
+     *
+     * @param key redis key
+     */
+    public void invalidate(String key) {
+        if (null != localCache) {
+            localCache.invalidate(key);
+        }
+    }
+
+    /**
+     * @return 上一窗口的探测结果
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return 采样记录的次数
+     */
+    public long getSampledCount() {
+        return sampledCount.sum();
+    }
+
+    /**
+     * 停止窗口切换线程
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 窗口结束：按候选集合产出top-N，确定热key，清空sketch和候选集合
+     */
+    private void rollover() {
+        try {
+            List<KeyStat> stats = new ArrayList<>(candidates.size());
+            for (String key : candidates) {
+                stats.add(new KeyStat(key, estimate(accessSketch, key), estimate(bytesSketch, key)));
+            }
+            candidates.clear();
+            clear(accessSketch);
+            clear(bytesSketch);
+
+            stats.sort(Comparator.comparingLong(KeyStat::getAccessCount).reversed());
+            List<KeyStat> byAccess = new ArrayList<>(stats.subList(0, Math.min(topN, stats.size())));
+            Set<String> hot = new HashSet<>();
+            for (KeyStat stat : byAccess) {
+                if (hotThreshold > 0 && stat.getAccessCount() >= hotThreshold) {
+                    hot.add(stat.getKey());
+                }
+            }
+            stats.sort(Comparator.comparingLong(KeyStat::getBytes).reversed());
+            List<KeyStat> byBytes = new ArrayList<>(stats.subList(0, Math.min(topN, stats.size())));
+
+            admitThreshold = Math.max(2L * sampleRate, byAccess.size() < topN
+                    ? 0 : byAccess.get(byAccess.size() - 1).getAccessCount() / 2);
+            bytesAdmitThreshold = byBytes.size() < topN
+                    ? Long.MAX_VALUE : Math.max(1, byBytes.get(byBytes.size() - 1).getBytes() / 2);
+            hotKeys = hot;
+            snapshot = new Snapshot(System.currentTimeMillis(), windowMillis, byAccess, byBytes, hot);
+            if (!hot.isEmpty() && log.isInfoEnabled()) {
+                log.info("探测到redis热key:{}", hot);
+            }
+        } catch (Exception e) {
+            log.error("redis热key窗口切换失败", e);
+        }
+    }
+
+    private long estimate(AtomicLongArray sketch, String key) {
+        int hash = key.hashCode();
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, sketch.get(i * (widthMask + 1) + (mix(hash, SEEDS[i]) & widthMask)));
+        }
+        return min;
+    }
+
+    private static void clear(AtomicLongArray sketch) {
+        for (int i = 0; i < sketch.length(); i++) {
+            sketch.set(i, 0);
+        }
+    }
+
+    private static int mix(int hash, int seed) {
+        int h = (hash ^ seed) * 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 单个key在一个窗口内的估算值
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class KeyStat {
+
+        private String key;
+
+        /**
+         * 访问次数估算值
+         */
+        private long accessCount;
+
+        /**
+         * 读写字节数估算值
+         */
+        private long bytes;
+    }
+
+    /**
+     * 一个窗口的探测结果
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Snapshot {
+
+        /**
+         * 窗口结束时间
+         */
+        private long timestamp;
+
+        private long windowMillis;
+
+        private List<KeyStat> topByAccess = Collections.emptyList();
+
+        private List<KeyStat> topByBytes = Collections.emptyList();
+
+        private Set<String> hotKeys = Collections.emptySet();
+    }
+
+}
@@ -0,0 +1,236 @@
+package fun.gangwan.data.redis.support;
+
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * RedisIdGenerator
+ * <span>号段id生成器：通过{@link RedisCounter#incrementBy}一次申请一段id，在本地用AtomicLong分配，热路径不访问Redis</span>
+ * <li>当前号段消耗prefetchFraction后异步预取下一号段，用完时直接切换</li>
+ * <li>号段实际使用时长小于segmentDuration的一半时号段长度翻倍，大于2倍时减半</li>
+ * <li>id全局唯一、单实例内递增，多实例之间不保证递增；实例重启时未使用的id被丢弃</li>
+ * <li>与RedisCounter.increment使用同一key时从当前值继续分配</li>
+ *
+ */
+@Slf4j
+public class RedisIdGenerator {
+
+    /**
+     * 号段用完时等待预取结果的最长时间s，超时后同步申请
+     */
+    private static final long PREFETCH_WAIT_SECONDS = 5;
+
+    private final RedisCounter counter;
+
+    private final long minStep;
+
+    private final long maxStep;
+
+    private final double prefetchFraction;
+
+    private final long segmentDurationNanos;
+
+    private final ConcurrentMap<String, IdBuffer> buffers = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor;
+
+    private final LongAdder segmentCount = new LongAdder();
+
+    private final LongAdder syncFetchCount = new LongAdder();
+
+    public RedisIdGenerator(RedisCounter counter, RedisHelperProperties.IdGenerator config) {
+        this.counter = counter;
+        this.minStep = config.getStep();
+        this.maxStep = Math.max(config.getMaxStep(), minStep);
+        this.prefetchFraction = config.getPrefetchFraction();
+        this.segmentDurationNanos = config.getSegmentDuration().toNanos();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-id-prefetch-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * 获取下一个id
+     *
+     * @param key 计数器key
+     * @return id
+     */
+    public long nextId(String key) {
+        return buffers.computeIfAbsent(key, IdBuffer::new).next();
+    }
+
+    /**
+     * 停止预取线程
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return 申请号段的次数
+     */
+    public long getSegmentCount() {
+        return segmentCount.sum();
+    }
+
+    /**
+     * @return 预取未完成或失败时在调用线程同步申请号段的次数
+     */
+    public long getSyncFetchCount() {
+        return syncFetchCount.sum();
+    }
+
+    /**
+     * @param key 计数器key
+     * @return 当前号段长度，未使用过时为初始号段长度
+     */
+    public long getStep(String key) {
+        IdBuffer buffer = buffers.get(key);
+        return null == buffer ? minStep : buffer.step;
+    }
+
+    /**
+     * 号段 [start, max]
+     */
+    private static class Segment {
+
+        private final long start;
+
+        private final long max;
+
+        private final long prefetchAt;
+
+        private final AtomicLong cursor;
+
+        private final AtomicBoolean prefetched = new AtomicBoolean();
+
+        Segment(long start, long max, double prefetchFraction) {
+            this.start = start;
+            this.max = max;
+            this.prefetchAt = start + (long) ((max - start + 1) * prefetchFraction);
+            this.cursor = new AtomicLong(start);
+        }
+    }
+
+    /**
+     * 单个key的当前号段和预取中的下一号段
+     */
+    private class IdBuffer {
+
+        private final String key;
+
+        private volatile Segment current;
+
+        /**
+         * 预取中的下一号段，仅在synchronized中修改
+         */
+        private CompletableFuture<Segment> next;
+
+        private volatile long step = minStep;
+
+        /**
+         * 申请号段时加锁，与切换号段的锁分开，切换时等待预取结果不会死锁
+         */
+        private final Object fetchLock = new Object();
+
+        /**
+         * 上次申请号段的时间ns，仅在fetchLock中访问
+         */
+        private long fetchedAt;
+
+        IdBuffer(String key) {
+            this.key = key;
+        }
+
+        long next() {
+            while (true) {
+                Segment segment = current;
+                if (null != segment) {
+                    long id = segment.cursor.getAndIncrement();
+                    if (id <= segment.max) {
+                        if (id >= segment.prefetchAt && segment.prefetched.compareAndSet(false, true)) {
+                            prefetch();
+                        }
+                        return id;
+                    }
+                }
+                switchSegment(segment);
+            }
+        }
+
+        private synchronized void prefetch() {
+            if (null == next) {
+                try {
+                    next = CompletableFuture.supplyAsync(this::fetch, executor);
+                } catch (RejectedExecutionException e) {
+                    log.warn("预取线程已关闭，号段用完时同步申请:key={}", key);
+                }
+            }
+        }
+
+        /**
+         * 当前号段用完时切换到预取的号段，预取失败时同步申请
+         */
+        private synchronized void switchSegment(Segment exhausted) {
+            if (current != exhausted) {
+                return;
+            }
+            Segment segment = null;
+            if (null != next) {
+                try {
+                    segment = next.get(PREFETCH_WAIT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("等待预取id号段中断:key=" + key, e);
+                } catch (Exception e) {
+                    log.warn("预取id号段失败，同步申请:key={}", key, e);
+                }
+                next = null;
+            }
+            if (null == segment) {
+                syncFetchCount.increment();
+                segment = fetch();
+            }
+            current = segment;
+        }
+
+        /**
+         * 按上一号段的使用时长调整号段长度后申请号段
+         */
+        private Segment fetch() {
+            synchronized (fetchLock) {
+                long now = System.nanoTime();
+                if (fetchedAt != 0) {
+                    long elapsed = now - fetchedAt;
+                    if (elapsed < segmentDurationNanos / 2) {
+                        step = Math.min(step * 2, maxStep);
+                    } else if (elapsed > segmentDurationNanos * 2) {
+                        step = Math.max(step / 2, minStep);
+                    }
+                }
+                fetchedAt = now;
+                long size = step;
+                Long max = counter.incrementBy(key, size);
+                if (null == max) {
+                    throw new IllegalStateException("申请id号段失败:key=" + key);
+                }
+                segmentCount.increment();
+                return new Segment(max - size + 1, max, prefetchFraction);
+            }
+        }
+    }
+
+}
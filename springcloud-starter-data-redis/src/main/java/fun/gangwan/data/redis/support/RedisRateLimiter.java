@@ -0,0 +1,242 @@
+package fun.gangwan.data.redis.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * RedisRateLimiter
+ * <span>基于Lua脚本的原子限流：令牌桶、滑动窗口日志、滑动窗口计数，时间统一取redis服务端时间</span>
+ * <span>规则的localBatch大于1时，本JVM按key批量租用许可，同一key同一时刻只有一个线程访问redis</span>
+ *
+ */
+@Slf4j
+public class RedisRateLimiter {
+
+    /**
+     * 令牌桶，ARGV：每ms补充令牌数、容量、申请数；返回实际授予数
+     */
+    private static final RedisScript<Long> TOKEN_BUCKET_SCRIPT = RedisScript.of(
+            "redis.replicate_commands() "
+            + "local t = redis.call('TIME') "
+            + "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) "
+            + "local rate = tonumber(ARGV[1]) "
+            + "local capacity = tonumber(ARGV[2]) "
+            + "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts') "
+            + "local tokens = tonumber(bucket[1]) "
+            + "local ts = tonumber(bucket[2]) "
+            + "if tokens == nil or ts == nil then tokens = capacity; ts = now end "
+            + "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate) "
+            + "local granted = math.max(0, math.min(tonumber(ARGV[3]), math.floor(tokens))) "
+            + "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens - granted), 'ts', now) "
+            + "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate) + 1000) "
+            + "return granted",
+            Long.class);
+
+    /**
+     * 滑动窗口日志，ARGV：窗口ms、limit、申请数、成员前缀；返回实际授予数
+     */
+    private static final RedisScript<Long> SLIDING_WINDOW_LOG_SCRIPT = RedisScript.of(
+            "redis.replicate_commands() "
+            + "local t = redis.call('TIME') "
+            + "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) "
+            + "local window = tonumber(ARGV[1]) "
+            + "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window) "
+            + "local count = redis.call('ZCARD', KEYS[1]) "
+            + "local granted = math.max(0, math.min(tonumber(ARGV[3]), tonumber(ARGV[2]) - count)) "
+            + "for i = 1, granted do redis.call('ZADD', KEYS[1], now, ARGV[4] .. ':' .. i) end "
+            + "redis.call('PEXPIRE', KEYS[1], window) "
+            + "return granted",
+            Long.class);
+
+    /**
+     * 滑动窗口计数，hash字段：cw当前窗口序号、cc当前窗口计数、pc上一窗口计数；ARGV：窗口ms、limit、申请数
+     */
+    private static final RedisScript<Long> SLIDING_WINDOW_COUNTER_SCRIPT = RedisScript.of(
+            "redis.replicate_commands() "
+            + "local t = redis.call('TIME') "
+            + "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) "
+            + "local window = tonumber(ARGV[1]) "
+            + "local current = math.floor(now / window) "
+            + "local data = redis.call('HMGET', KEYS[1], 'cw', 'cc', 'pc') "
+            + "local cw = tonumber(data[1]) "
+            + "local cc = tonumber(data[2]) or 0 "
+            + "local pc = tonumber(data[3]) or 0 "
+            + "if cw ~= current then "
+            + "  if cw == current - 1 then pc = cc else pc = 0 end "
+            + "  cc = 0 "
+            + "end "
+            + "local weight = 1 - (now - current * window) / window "
+            + "local granted = math.max(0, math.min(tonumber(ARGV[3]), math.floor(tonumber(ARGV[2]) - pc * weight - cc))) "
+            + "redis.call('HMSET', KEYS[1], 'cw', current, 'cc', cc + granted, 'pc', pc) "
+            + "redis.call('PEXPIRE', KEYS[1], window * 2) "
+            + "return granted",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+
+    private final String keyPrefix;
+
+    private final boolean failOpen;
+
+    /**
+     * 限流key -&gt; 本地预取的许可
+     */
+    private final Cache<String, Reservoir> reservoirs;
+
+    private final LongAdder allowedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder localHitCount = new LongAdder();
+
+    private final LongAdder errorCount = new LongAdder();
+
+    public RedisRateLimiter(StringRedisTemplate redis, RedisHelperProperties.RateLimiter config) {
+        this.redis = redis;
+        this.keyPrefix = config.getKeyPrefix();
+        this.failOpen = config.isFailOpen();
+        this.reservoirs = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumLocalKeys())
+                .expireAfterAccess(1, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * 申请一个许可
+     *
+     * @param key 限流key，如接口+客户端
+     * @param rule 限流规则
+     * @return 是否允许
+     */
+    public boolean tryAcquire(String key, RateLimitRule rule) {
+        boolean allowed = rule.getLocalBatch() > 1 ? tryAcquireLocal(key, rule) : acquireRemote(key, rule, 1) > 0;
+        if (allowed) {
+            allowedCount.increment();
+        } else {
+            rejectedCount.increment();
+        }
+        return allowed;
+    }
+
+    private boolean tryAcquireLocal(String key, RateLimitRule rule) {
+        Reservoir reservoir = reservoirs.get(key, k -> new Reservoir());
+        if (reservoir.tryTake()) {
+            localHitCount.increment();
+            return true;
+        }
+        //同一key只有一个线程从redis租用许可，其余线程等待后优先消费租到的许可
+        synchronized (reservoir) {
+            if (reservoir.tryTake()) {
+                localHitCount.increment();
+                return true;
+            }
+            long granted = acquireRemote(key, rule, rule.getLocalBatch());
+            if (granted <= 0) {
+                return false;
+            }
+            reservoir.refill(granted - 1, System.currentTimeMillis() + rule.getLocalLeaseTime().toMillis());
+            return true;
+        }
+    }
+
+    /**
+     * 直接从redis申请许可，不经过本地预取
+     *
+     * @param key 限流key
+     * @param rule 限流规则
+     * @param permits 申请数
+     * @return 实际授予数，可能小于申请数
+     */
+    public long acquireRemote(String key, RateLimitRule rule, long permits) {
+        rule.validate();
+        long windowMillis = rule.getWindow().toMillis();
+        String redisKey = keyPrefix + key;
+        try {
+            Long granted;
+            switch (rule.getAlgorithm()) {
+                case SLIDING_WINDOW_LOG:
+                    granted = redis.execute(SLIDING_WINDOW_LOG_SCRIPT, Collections.singletonList(redisKey),
+                            String.valueOf(windowMillis), String.valueOf(rule.getLimit()), String.valueOf(permits),
+                            UUID.randomUUID().toString());
+                    break;
+                case SLIDING_WINDOW_COUNTER:
+                    granted = redis.execute(SLIDING_WINDOW_COUNTER_SCRIPT, Collections.singletonList(redisKey),
+                            String.valueOf(windowMillis), String.valueOf(rule.getLimit()), String.valueOf(permits));
+                    break;
+                case TOKEN_BUCKET:
+                default:
+                    granted = redis.execute(TOKEN_BUCKET_SCRIPT, Collections.singletonList(redisKey),
+                            String.valueOf((double) rule.getLimit() / windowMillis), String.valueOf(rule.getCapacity()),
+                            String.valueOf(permits));
+                    break;
+            }
+            return granted == null ? 0 : granted;
+        } catch (Exception e) {
+            errorCount.increment();
+            log.warn("redis限流异常,failOpen={}:key={}", failOpen, redisKey, e);
+            return failOpen ? permits : 0;
+        }
+    }
+
+    /**
+     * 清除本地预取的许可
+     *
+     * @param key 限流key
+     */
+    public void resetLocal(String key) {
+        reservoirs.invalidate(key);
+    }
+
+    public long getAllowedCount() {
+        return allowedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * @return 本地预取许可命中次数，即未访问redis的放行次数
+     */
+    public long getLocalHitCount() {
+        return localHitCount.sum();
+    }
+
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    /**
+     * 本地预取的许可
+     */
+    private static class Reservoir {
+
+        private long permits;
+
+        private long expireAt;
+
+        synchronized boolean tryTake() {
+            if (permits > 0 && System.currentTimeMillis() < expireAt) {
+                permits--;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void refill(long permits, long expireAt) {
+            this.permits = permits;
+            this.expireAt = expireAt;
+        }
+    }
+
+}
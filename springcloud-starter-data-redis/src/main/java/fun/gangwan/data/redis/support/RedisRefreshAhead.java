@@ -0,0 +1,116 @@
+package fun.gangwan.data.redis.support;
+
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * RedisRefreshAhead
+ * <span>get or set 提前刷新：基于XFetch算法在逻辑过期前按概率触发异步刷新，逻辑过期后宽限期内继续返回旧值</span>
+ *
+ */
+@Slf4j
+public class RedisRefreshAhead {
+
+    private final double beta;
+
+    private final long staleGraceMillis;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 本JVM内正在刷新的key，避免重复提交
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder submittedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public RedisRefreshAhead(RedisHelperProperties.RefreshAhead config) {
+        this.beta = config.getBeta();
+        this.staleGraceMillis = config.getStaleGraceTime().toMillis();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-refresh-ahead-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(config.getCorePoolSize(), config.getMaxPoolSize(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(config.getQueueCapacity()), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * XFetch：now - delta * beta * ln(random) &gt;= expireAt 时需要刷新，逻辑过期后必然返回true
+     *
+     * @param holder 缓存值
+     * @param now 当前时间戳ms
+     * @return 是否需要刷新
+     */
+    public boolean shouldRefresh(RefreshAheadValue<?> holder, long now) {
+        double random = ThreadLocalRandom.current().nextDouble();
+        // nextDouble可能为0，ln(0)为负无穷
+        if (random <= 0) {
+            return true;
+        }
+        return now - holder.getDelta() * beta * Math.log(random) >= holder.getExpireAt();
+    }
+
+    /**
+     * 提交异步刷新任务，同一key正在刷新或线程池已满时放弃
+     *
+     * @param key redis key
+     * @param task 刷新任务
+     * @return 是否提交成功
+     */
+    public boolean submit(String key, Runnable task) {
+        if (!refreshing.add(key)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.info("redis提前刷新失败:key={}", key, e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+            submittedCount.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            rejectedCount.increment();
+            log.debug("redis提前刷新线程池已满,放弃本次刷新:key={}", key);
+            return false;
+        }
+    }
+
+    /**
+     * @return 逻辑过期后的宽限时间ms
+     */
+    public long getStaleGraceMillis() {
+        return staleGraceMillis;
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
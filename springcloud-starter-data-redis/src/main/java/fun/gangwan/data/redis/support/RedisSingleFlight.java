@@ -0,0 +1,292 @@
+package fun.gangwan.data.redis.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ *
+ * RedisSingleFlight
+ * <span>JVM内请求合并：同一个key同一时刻只有一个leader线程执行加载，其余线程等待leader的结果</span>
+ * <li>等待分两段：等待leader获取分布式锁最长waitMillis，leader通过loading()标记开始加载后，再等待加载最长waitMillis</li>
+ * <li>等待超时或被中断时重新读取缓存，仍未命中时调用fallback兜底加载，不再直接返回空结果</li>
+ * <li>leader执行失败时重新读取缓存，仍未命中时抛出leader的异常</li>
+ *
+ */
+@Slf4j
+public class RedisSingleFlight {
+
+    /**
+     * 正在执行中的加载任务
+     */
+    private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 作为leader执行加载的次数
+     */
+    private final LongAdder ledCount = new LongAdder();
+
+    /**
+     * 合并到leader结果的次数
+     */
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * 等待leader超时的次数
+     */
+    private final LongAdder timedOutCount = new LongAdder();
+
+    /**
+     * 执行加载，同一key并发调用时只有一个线程执行loader
+     *
+     * @param key 合并的key
+     * @param waitMillis 非leader线程等待leader获取锁、等待leader加载各自的最长时间ms
+     * @param loader leader执行的加载逻辑
+     * @param cacheReader 等待超时、被中断或leader执行失败时重新读取缓存
+     * @param fallback 等待超时或被中断且缓存未命中时的兜底加载
+     * @param <T> T
+     * @return 加载结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, long waitMillis, Supplier<T> loader, Supplier<T> cacheReader,
+                         Supplier<T> fallback) {
+        Flight flight = new Flight();
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing == null) {
+            ledCount.increment();
+            try {
+                T value = loader.get();
+                flight.future.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                flight.future.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+
+        coalescedCount.increment();
+        Throwable failure = null;
+        boolean interrupted = false;
+        try {
+            return (T) await(existing, System.currentTimeMillis(), waitMillis);
+        } catch (TimeoutException e) {
+            timedOutCount.increment();
+            log.warn("等待合并请求结果超时,重新读取缓存:key={},waitMillis={}", key, waitMillis);
+        } catch (InterruptedException e) {
+            interrupted = true;
+            log.info("等待合并请求结果中断,重新读取缓存:key={}", key, e);
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+            log.info("合并请求leader执行失败,重新读取缓存:key={}", key, failure);
+        }
+        try {
+            T value = cacheReader.get();
+            if (null != value) {
+                return value;
+            }
+            if (null != failure) {
+                throw propagate(failure);
+            }
+            return fallback.get();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 批量执行加载，每个key独立合并：
+     * 本线程首先登记的key由本线程调用loader批量加载，其他线程正在加载的key等待其结果
+     *
+     * @param keys 合并的key集合
+     * @param waitMillis 等待其他线程获取锁、等待其他线程加载各自的最长时间ms
+     * @param loader 批量加载本线程负责的key，返回key -&gt; 结果
+     * @param cacheReader 等待超时、被中断或其他线程加载失败的key重新批量读取缓存
+     * @param fallback 等待超时或被中断且缓存未命中的key的兜底批量加载
+     * @param <T> T
+     * @return key -&gt; 结果，无结果的key不包含在内
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> executeAll(Collection<String> keys, long waitMillis,
+                                         Function<Collection<String>, Map<String, T>> loader,
+                                         Function<Collection<String>, Map<String, T>> cacheReader,
+                                         Function<Collection<String>, Map<String, T>> fallback) {
+        Map<String, Flight> led = new HashMap<>(keys.size());
+        Map<String, Flight> joined = new HashMap<>();
+        for (String key : keys) {
+            Flight flight = new Flight();
+            Flight existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                led.put(key, flight);
+            } else {
+                joined.put(key, existing);
+            }
+        }
+
+        Map<String, T> result = new HashMap<>(keys.size());
+        if (!led.isEmpty()) {
+            ledCount.increment();
+            try {
+                Map<String, T> loaded = loader.apply(new ArrayList<>(led.keySet()));
+                if (loaded != null) {
+                    result.putAll(loaded);
+                }
+                led.forEach((key, flight) -> flight.future.complete(result.get(key)));
+            } catch (RuntimeException | Error e) {
+                led.values().forEach(flight -> flight.future.completeExceptionally(e));
+                throw e;
+            } finally {
+                led.forEach(inFlight::remove);
+            }
+        }
+
+        if (joined.isEmpty()) {
+            return result;
+        }
+        coalescedCount.increment();
+        long joinedAt = System.currentTimeMillis();
+        List<String> rereadKeys = new ArrayList<>();
+        Map<String, Throwable> failures = new HashMap<>();
+        boolean interrupted = false;
+        for (Map.Entry<String, Flight> entry : joined.entrySet()) {
+            String key = entry.getKey();
+            try {
+                T value = (T) await(entry.getValue(), joinedAt, waitMillis);
+                if (value != null) {
+                    result.put(key, value);
+                }
+            } catch (TimeoutException e) {
+                timedOutCount.increment();
+                rereadKeys.add(key);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                rereadKeys.add(key);
+            } catch (ExecutionException e) {
+                failures.put(key, e.getCause());
+                rereadKeys.add(key);
+            }
+        }
+        if (rereadKeys.isEmpty()) {
+            return result;
+        }
+        log.warn("等待合并请求结果失败,重新读取缓存:keys={},waitMillis={}", rereadKeys, waitMillis);
+        try {
+            Map<String, T> cached = cacheReader.apply(rereadKeys);
+            if (cached != null) {
+                result.putAll(cached);
+            }
+            for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+                if (!result.containsKey(failure.getKey())) {
+                    throw propagate(failure.getValue());
+                }
+            }
+            List<String> fallbackKeys = new ArrayList<>();
+            for (String key : rereadKeys) {
+                if (!result.containsKey(key)) {
+                    fallbackKeys.add(key);
+                }
+            }
+            if (!fallbackKeys.isEmpty()) {
+                Map<String, T> loaded = fallback.apply(fallbackKeys);
+                if (loaded != null) {
+                    result.putAll(loaded);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * leader获取分布式锁后、开始加载前调用，等待的线程从此时起再等待最长waitMillis
+     *
+     * @param key 合并的key
+     */
+    public void loading(String key) {
+        Flight flight = inFlight.get(key);
+        if (flight != null && flight.loadingSince == 0) {
+            flight.loadingSince = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 等待leader的结果：先等待waitMillis，leader已开始加载时延长到开始加载后waitMillis
+     */
+    private static Object await(Flight flight, long joinedAt, long waitMillis)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = joinedAt + waitMillis;
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining > 0) {
+                try {
+                    return flight.future.get(remaining, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    //检查leader是否已开始加载
+                }
+            } else if (flight.future.isDone()) {
+                return flight.future.get();
+            }
+            long loadingSince = flight.loadingSince;
+            if (loadingSince == 0 || loadingSince + waitMillis <= deadline) {
+                throw new TimeoutException();
+            }
+            deadline = loadingSince + waitMillis;
+        }
+    }
+
+    private static RuntimeException propagate(Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return failure instanceof RuntimeException ? (RuntimeException) failure : new IllegalStateException(failure);
+    }
+
+    /**
+     * @return 当前执行中的加载任务数
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getLedCount() {
+        return ledCount.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.sum();
+    }
+
+    private static class Flight {
+
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        /**
+         * leader开始加载的时间，0表示仍在等待分布式锁
+         */
+        private volatile long loadingSince;
+    }
+
+}
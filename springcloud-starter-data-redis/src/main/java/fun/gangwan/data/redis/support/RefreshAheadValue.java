@@ -0,0 +1,33 @@
+package fun.gangwan.data.redis.support;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ *
+ * RefreshAheadValue
+ * <span>提前刷新模式下存入Redis的值，携带加载耗时和逻辑过期时间</span>
+ *
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RefreshAheadValue<T> {
+
+    /**
+     * 缓存的数据
+     */
+    private T value;
+
+    /**
+     * 加载数据耗时ms
+     */
+    private long delta;
+
+    /**
+     * 逻辑过期时间戳ms
+     */
+    private long expireAt;
+
+}
@@ -0,0 +1,60 @@
+package fun.gangwan.data.redis.template;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.function.Consumer;
+
+/**
+ *
+ * 按匹配规则批量删除/设置过期时间的参数
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatternOperationOptions {
+
+    /**
+     * 匹配规则
+     */
+    private String match;
+
+    /**
+     * 每次SCAN的COUNT
+     */
+    @Builder.Default
+    private int scanCount = 1000;
+
+    /**
+     * 每个pipeline的最大命令数
+     */
+    @Builder.Default
+    private int batchSize = 500;
+
+    /**
+     * 每秒最多处理的key数，小于1时不限速
+     */
+    @Builder.Default
+    private int maxKeysPerSecond = 0;
+
+    /**
+     * 最多处理的key数
+     */
+    @Builder.Default
+    private long maxKeys = Long.MAX_VALUE;
+
+    /**
+     * 集群并行扫描的线程数，小于1时每个主节点一个线程
+     */
+    @Builder.Default
+    private int parallelism = 0;
+
+    /**
+     * 每批执行后回调当前进度，集群并行时在多个线程中回调
+     */
+    private Consumer<PatternOperationSummary> progressListener;
+}
@@ -0,0 +1,52 @@
+package fun.gangwan.data.redis.template;
+
+import lombok.Data;
+
+/**
+ *
+ * 按匹配规则批量删除/设置过期时间的执行汇总
+ *
+ */
+@Data
+public class PatternOperationSummary {
+
+    /**
+     * 扫描到的key数
+     */
+    private long scannedKeys;
+
+    /**
+     * 实际删除或设置过期时间成功的key数
+     */
+    private long affectedKeys;
+
+    /**
+     * 执行的pipeline批数
+     */
+    private long batches;
+
+    /**
+     * 执行失败的批数
+     */
+    private long failedBatches;
+
+    /**
+     * 最后一次失败信息
+     */
+    private String lastError;
+
+    /**
+     * 总耗时ms
+     */
+    private long totalMillis;
+
+    synchronized void addBatch(long scanned, long affected, String error) {
+        scannedKeys += scanned;
+        affectedKeys += affected;
+        batches++;
+        if (error != null) {
+            failedBatches++;
+            lastError = error;
+        }
+    }
+}
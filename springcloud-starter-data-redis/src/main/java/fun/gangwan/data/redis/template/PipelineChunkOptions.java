@@ -0,0 +1,36 @@
+package fun.gangwan.data.redis.template;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ *
+ * Redis pipeline 分批执行参数
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineChunkOptions {
+
+    /**
+     * 每批最大命令数
+     */
+    @Builder.Default
+    private int maxCommands = 1000;
+
+    /**
+     * 每批最大预估字节数，默认1MB
+     */
+    @Builder.Default
+    private long maxBytes = 1024 * 1024;
+
+    /**
+     * 并行发送的批数，默认1串行发送
+     */
+    @Builder.Default
+    private int parallelism = 1;
+}
@@ -0,0 +1,37 @@
+package fun.gangwan.data.redis.template;
+
+import lombok.Data;
+
+/**
+ *
+ * Redis pipeline 单批执行统计
+ *
+ */
+@Data
+public class PipelineChunkStat {
+
+    /**
+     * 批次序号，从0开始
+     */
+    private int index;
+
+    /**
+     * 命令数
+     */
+    private int commands;
+
+    /**
+     * 预估字节数
+     */
+    private long bytes;
+
+    /**
+     * 耗时ms，包含结果回调耗时
+     */
+    private long millis;
+
+    /**
+     * 执行失败时的异常，成功为null
+     */
+    private Exception error;
+}
@@ -0,0 +1,43 @@
+package fun.gangwan.data.redis.template;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Redis pipeline 分批执行汇总
+ *
+ */
+@Data
+public class PipelineSummary {
+
+    /**
+     * 每批执行统计，并行执行时按完成顺序排列
+     */
+    private final List<PipelineChunkStat> chunks = new ArrayList<>();
+
+    /**
+     * 总耗时ms
+     */
+    private long totalMillis;
+
+    synchronized void add(PipelineChunkStat stat) {
+        chunks.add(stat);
+    }
+
+    /**
+     * @return 总命令数
+     */
+    public synchronized long getTotalCommands() {
+        return chunks.stream().mapToLong(PipelineChunkStat::getCommands).sum();
+    }
+
+    /**
+     * @return 执行失败的批数
+     */
+    public synchronized long getFailedChunks() {
+        return chunks.stream().filter(stat -> stat.getError() != null).count();
+    }
+}
@@ -0,0 +1,41 @@
+package fun.gangwan.data.redis.template;
+
+import fun.gangwan.data.redis.codec.PrefixedKeySerializer;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ *
+ * RedisHelperTemplate
+ * <span>starter内部组件(RedisUtils、RedisLocks、RedisPipelineTemplate、RedisCounter等)共用的StringRedisTemplate</span>
+ * <span>开启key命名空间时为使用带前缀key序列化器的独立模板，不修改应用自己的StringRedisTemplate</span>
+ *
+ */
+public class RedisHelperTemplate {
+
+    private final StringRedisTemplate template;
+
+    private RedisHelperTemplate(StringRedisTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * @param redis 应用的StringRedisTemplate
+     * @param keySerializer key命名空间序列化器，为null时直接使用redis
+     * @return RedisHelperTemplate
+     */
+    public static RedisHelperTemplate of(StringRedisTemplate redis, PrefixedKeySerializer keySerializer) {
+        if (null == keySerializer) {
+            return new RedisHelperTemplate(redis);
+        }
+        StringRedisTemplate namespaced = new StringRedisTemplate();
+        namespaced.setConnectionFactory(redis.getConnectionFactory());
+        namespaced.setKeySerializer(keySerializer);
+        namespaced.afterPropertiesSet();
+        return new RedisHelperTemplate(namespaced);
+    }
+
+    public StringRedisTemplate getTemplate() {
+        return template;
+    }
+
+}
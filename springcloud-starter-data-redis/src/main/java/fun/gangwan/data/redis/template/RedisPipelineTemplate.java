@@ -1,17 +1,36 @@
 package fun.gangwan.data.redis.template;
 
 import fun.gangwan.data.redis.command.RedisCommand;
+import fun.gangwan.data.redis.command.RedisHashCmdBuilder;
 import fun.gangwan.data.redis.command.RedisListCmdBuilder;
+import fun.gangwan.data.redis.command.RedisSetCmdBuilder;
+import fun.gangwan.data.redis.command.RedisSortedSetCmdBuilder;
 import io.lettuce.core.RedisCommandExecutionException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.core.*;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  *
@@ -25,15 +44,207 @@ import java.util.Objects;
 @Component
 public class RedisPipelineTemplate {
 
-    @Resource
     StringRedisTemplate stringRedisTemplate;
 
+    /**
+     * 使用starter的模板，开启key命名空间时key带前缀
+     */
+    @Resource
+    void setRedisHelperTemplate(RedisHelperTemplate redisHelperTemplate) {
+        this.stringRedisTemplate = redisHelperTemplate.getTemplate();
+    }
+
+    /**
+     * 并行发送的线程数上限，多个调用共用
+     */
+    private static final int MAX_PARALLEL_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private volatile ExecutorService executor;
+
     /**
      * pipeline 执行批量操作
      * @param cmdList aa
      * @return  aa
      */
     public List<Object> executePipeline(List<RedisCommand> cmdList) {
+        return doExecutePipeline(cmdList);
+    }
+
+    /**
+     * pipeline 分批执行批量操作
+     * <li>每批命令数达到maxCommands或预估字节数达到maxBytes时发送一次pipeline</li>
+     * <li>每批的返回结果逐条回调resultConsumer后即丢弃，不会在内存中累积全部结果</li>
+     * <li>parallelism大于1时多批并行发送，每批使用连接池中独立的连接，resultConsumer需线程安全且批次间不保证顺序</li>
+     * <li>单批执行失败不影响其他批次，失败信息记录在返回的PipelineSummary中</li>
+     *
+     * @param commands 命令集，可以是延迟生成的Iterable
+     * @param options 分批参数
+     * @param resultConsumer 结果回调 (命令, 返回值)，可为null
+     * @return 执行汇总，包含每批的耗时
+     */
+    public PipelineSummary executePipeline(Iterable<RedisCommand> commands, PipelineChunkOptions options,
+                                           BiConsumer<RedisCommand, Object> resultConsumer) {
+        long maxCommands = Math.max(1, options.getMaxCommands());
+        long maxBytes = Math.max(1, options.getMaxBytes());
+        int parallelism = Math.max(1, options.getParallelism());
+
+        PipelineSummary summary = new PipelineSummary();
+        long start = System.currentTimeMillis();
+        ExecutorService executor = parallelism > 1 ? executor() : null;
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            int chunkIndex = 0;
+            List<RedisCommand> chunk = new ArrayList<>();
+            long chunkBytes = 0;
+            Iterator<RedisCommand> iterator = commands.iterator();
+            while (iterator.hasNext()) {
+                RedisCommand command = iterator.next();
+                chunk.add(command);
+                chunkBytes += estimateBytes(command);
+                if (chunk.size() >= maxCommands || chunkBytes >= maxBytes || !iterator.hasNext()) {
+                    List<RedisCommand> flushing = chunk;
+                    long flushingBytes = chunkBytes;
+                    int index = chunkIndex++;
+                    chunk = new ArrayList<>();
+                    chunkBytes = 0;
+                    if (executor == null) {
+                        summary.add(flushChunk(index, flushing, flushingBytes, resultConsumer));
+                    } else {
+                        inFlight.acquire();
+                        futures.add(executor.submit(() -> {
+                            try {
+                                summary.add(flushChunk(index, flushing, flushingBytes, resultConsumer));
+                            } finally {
+                                inFlight.release();
+                            }
+                        }));
+                    }
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new RedisCommandExecutionException("Redis Pipeline分批执行被中断", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new RedisCommandExecutionException("Redis Pipeline分批执行异常", e.getCause());
+        }
+        summary.setTotalMillis(System.currentTimeMillis() - start);
+        log.info("Redis Pipeline分批执行结束: commands={}, chunks={}, failedChunks={}, cost={}ms",
+                summary.getTotalCommands(), summary.getChunks().size(), summary.getFailedChunks(), summary.getTotalMillis());
+        return summary;
+    }
+
+    /**
+     * 停止并行发送线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService executor = this.executor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 并行发送共用的线程池，首次并行发送时创建，线程数上限为MAX_PARALLEL_THREADS，空闲后回收
+     * 每次调用的并发批数由parallelism控制
+     */
+    private ExecutorService executor() {
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.executor;
+                if (executor == null) {
+                    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-pipeline-");
+                    threadFactory.setDaemon(true);
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_PARALLEL_THREADS, MAX_PARALLEL_THREADS,
+                            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                    this.executor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private PipelineChunkStat flushChunk(int index, List<RedisCommand> chunk, long bytes,
+                                         BiConsumer<RedisCommand, Object> resultConsumer) {
+        long start = System.nanoTime();
+        PipelineChunkStat stat = new PipelineChunkStat();
+        stat.setIndex(index);
+        stat.setCommands(chunk.size());
+        stat.setBytes(bytes);
+        try {
+            List<Object> results = doExecutePipeline(chunk);
+            if (resultConsumer != null) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    resultConsumer.accept(chunk.get(i), i < results.size() ? results.get(i) : null);
+                }
+            }
+        } catch (Exception e) {
+            stat.setError(e);
+            log.error("Redis Pipeline第{}批执行失败: commands={}", index, chunk.size(), e);
+        }
+        stat.setMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.debug("Redis Pipeline第{}批执行结束: commands={}, bytes={}, cost={}ms", index, chunk.size(), bytes, stat.getMillis());
+        return stat;
+    }
+
+    /**
+     * 预估命令的字节数，仅用于分批，不要求精确
+     */
+    private static long estimateBytes(RedisCommand command) {
+        long bytes = sizeOf(command.getKey()) + sizeOf(command.getValue());
+        if (command.getRedisHashCmdBuilder() != null) {
+            bytes += sizeOf(command.getRedisHashCmdBuilder().getHashKey())
+                    + sizeOf(command.getRedisHashCmdBuilder().getHashKeys())
+                    + sizeOf(command.getRedisHashCmdBuilder().getHashValues());
+        }
+        if (command.getRedisSetCmdBuilder() != null) {
+            bytes += sizeOf(command.getRedisSetCmdBuilder().getMembers());
+        }
+        if (command.getRedisSortedSetCmdBuilder() != null) {
+            bytes += sizeOf(command.getRedisSortedSetCmdBuilder().getScoreMembers())
+                    + sizeOf(command.getRedisSortedSetCmdBuilder().getMembers());
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Collection) {
+            long bytes = 0;
+            for (Object element : (Collection<?>) value) {
+                bytes += sizeOf(element);
+            }
+            return bytes;
+        }
+        if (value instanceof Map) {
+            long bytes = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                bytes += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return bytes;
+        }
+        return 16;
+    }
+
+    private List<Object> doExecutePipeline(List<RedisCommand> cmdList) {
 
         return stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
 
@@ -42,6 +253,9 @@ public class RedisPipelineTemplate {
 
                 ValueOperations<String, Object> ops = (ValueOperations<String, Object>) operations.opsForValue();
                 ListOperations<String, Object> listOps = (ListOperations<String, Object>) operations.opsForList();
+                HashOperations<String, Object, Object> hashOps = operations.opsForHash();
+                SetOperations<String, Object> setOps = (SetOperations<String, Object>) operations.opsForSet();
+                ZSetOperations<String, Object> zSetOps = (ZSetOperations<String, Object>) operations.opsForZSet();
 
 
                 for (RedisCommand command : cmdList) {
@@ -52,6 +266,9 @@ public class RedisPipelineTemplate {
                     Object v = command.getValue();
                     String k = (String) command.getKey();
                     RedisListCmdBuilder listCmd = command.getRedisListCmdBuilder();
+                    RedisHashCmdBuilder hashCmd = command.getRedisHashCmdBuilder();
+                    RedisSetCmdBuilder setCmd = command.getRedisSetCmdBuilder();
+                    RedisSortedSetCmdBuilder zSetCmd = command.getRedisSortedSetCmdBuilder();
 
                     switch (command.getCommandType()) {
                         /**
@@ -151,6 +368,191 @@ public class RedisPipelineTemplate {
                             listOps.trim(k, listCmd.getStart(), listCmd.getEnd());
                             log.debug("Redis Pipeline LTRIM {} from {} to {}", k, listCmd.getStart(), listCmd.getEnd());
                             break;
+                        /**
+                         * Hash命令
+                         */
+                        case HSET:
+                            if(hashCmd == null || hashCmd.getHashKey() == null || Objects.isNull(v)){
+                                throw new RedisCommandExecutionException("非法HSET命令");
+                            }
+                            hashOps.put(k, hashCmd.getHashKey(), v);
+                            log.debug("Redis Pipeline HSET {} {} : {}", k, hashCmd.getHashKey(), v);
+                            break;
+                        case HGET:
+                            if(hashCmd == null || hashCmd.getHashKey() == null){
+                                throw new RedisCommandExecutionException("非法HGET命令");
+                            }
+                            hashOps.get(k, hashCmd.getHashKey());
+                            log.debug("Redis Pipeline HGET {} {}", k, hashCmd.getHashKey());
+                            break;
+                        case HMSET:
+                            if(hashCmd == null || hashCmd.getHashValues() == null || hashCmd.getHashValues().isEmpty()){
+                                throw new RedisCommandExecutionException("非法HMSET命令");
+                            }
+                            hashOps.putAll(k, hashCmd.getHashValues());
+                            log.debug("Redis Pipeline HMSET {} with {} fields", k, hashCmd.getHashValues().size());
+                            break;
+                        case HMGET:
+                            if(hashCmd == null || hashCmd.getHashKeys() == null || hashCmd.getHashKeys().isEmpty()){
+                                throw new RedisCommandExecutionException("非法HMGET命令");
+                            }
+                            hashOps.multiGet(k, new ArrayList<>(hashCmd.getHashKeys()));
+                            log.debug("Redis Pipeline HMGET {} {}", k, hashCmd.getHashKeys());
+                            break;
+                        case HDEL:
+                            Object[] hashKeys = hashFields(hashCmd);
+                            if(hashKeys.length == 0){
+                                throw new RedisCommandExecutionException("非法HDEL命令");
+                            }
+                            hashOps.delete(k, hashKeys);
+                            log.debug("Redis Pipeline HDEL {} {} fields", k, hashKeys.length);
+                            break;
+                        case HGETALL:
+                            hashOps.entries(k);
+                            log.debug("Redis Pipeline HGETALL {}", k);
+                            break;
+                        case HEXISTS:
+                            if(hashCmd == null || hashCmd.getHashKey() == null){
+                                throw new RedisCommandExecutionException("非法HEXISTS命令");
+                            }
+                            hashOps.hasKey(k, hashCmd.getHashKey());
+                            log.debug("Redis Pipeline HEXISTS {} {}", k, hashCmd.getHashKey());
+                            break;
+                        case HINCRBY:
+                            if(hashCmd == null || hashCmd.getHashKey() == null || command.getDelta() == null){
+                                throw new RedisCommandExecutionException("非法HINCRBY命令");
+                            }
+                            hashOps.increment(k, hashCmd.getHashKey(), command.getDelta());
+                            log.debug("Redis Pipeline HINCRBY {} {} by {}", k, hashCmd.getHashKey(), command.getDelta());
+                            break;
+                        case HLEN:
+                            hashOps.size(k);
+                            log.debug("Redis Pipeline HLEN {}", k);
+                            break;
+                        /**
+                         * Set命令
+                         */
+                        case SADD:
+                            Object[] addMembers = members(setCmd == null ? null : setCmd.getMembers(), v);
+                            if(addMembers.length == 0){
+                                throw new RedisCommandExecutionException("非法SADD命令");
+                            }
+                            setOps.add(k, addMembers);
+                            log.debug("Redis Pipeline SADD {} {} members", k, addMembers.length);
+                            break;
+                        case SREM:
+                            Object[] remMembers = members(setCmd == null ? null : setCmd.getMembers(), v);
+                            if(remMembers.length == 0){
+                                throw new RedisCommandExecutionException("非法SREM命令");
+                            }
+                            setOps.remove(k, remMembers);
+                            log.debug("Redis Pipeline SREM {} {} members", k, remMembers.length);
+                            break;
+                        case SMEMBERS:
+                            setOps.members(k);
+                            log.debug("Redis Pipeline SMEMBERS {}", k);
+                            break;
+                        case SISMEMBER:
+                            if(Objects.isNull(v)){
+                                throw new RedisCommandExecutionException("非法SISMEMBER命令");
+                            }
+                            setOps.isMember(k, v);
+                            log.debug("Redis Pipeline SISMEMBER {} {}", k, v);
+                            break;
+                        case SCARD:
+                            setOps.size(k);
+                            log.debug("Redis Pipeline SCARD {}", k);
+                            break;
+                        case SPOP:
+                            if(setCmd == null || setCmd.getCount() == null){
+                                setOps.pop(k);
+                            }else{
+                                setOps.pop(k, setCmd.getCount());
+                            }
+                            log.debug("Redis Pipeline SPOP {}", k);
+                            break;
+                        /**
+                         * SortedSet命令
+                         */
+                        case ZADD:
+                            if(zSetCmd != null && zSetCmd.getScoreMembers() != null && !zSetCmd.getScoreMembers().isEmpty()){
+                                Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>();
+                                zSetCmd.getScoreMembers().forEach((member, score) -> tuples.add(new DefaultTypedTuple<>(member, score)));
+                                zSetOps.add(k, tuples);
+                                log.debug("Redis Pipeline ZADD {} {} members", k, tuples.size());
+                            }else{
+                                if(zSetCmd == null || zSetCmd.getScore() == null || Objects.isNull(v)){
+                                    throw new RedisCommandExecutionException("非法ZADD命令");
+                                }
+                                zSetOps.add(k, v, zSetCmd.getScore());
+                                log.debug("Redis Pipeline ZADD {} {} : {}", k, zSetCmd.getScore(), v);
+                            }
+                            break;
+                        case ZREM:
+                            Object[] zRemMembers = members(zSetCmd == null ? null : zSetCmd.getMembers(), v);
+                            if(zRemMembers.length == 0){
+                                throw new RedisCommandExecutionException("非法ZREM命令");
+                            }
+                            zSetOps.remove(k, zRemMembers);
+                            log.debug("Redis Pipeline ZREM {} {} members", k, zRemMembers.length);
+                            break;
+                        case ZSCORE:
+                            if(Objects.isNull(v)){
+                                throw new RedisCommandExecutionException("非法ZSCORE命令");
+                            }
+                            zSetOps.score(k, v);
+                            log.debug("Redis Pipeline ZSCORE {} {}", k, v);
+                            break;
+                        case ZINCRBY:
+                            if(zSetCmd == null || zSetCmd.getScore() == null || Objects.isNull(v)){
+                                throw new RedisCommandExecutionException("非法ZINCRBY命令");
+                            }
+                            zSetOps.incrementScore(k, v, zSetCmd.getScore());
+                            log.debug("Redis Pipeline ZINCRBY {} {} by {}", k, v, zSetCmd.getScore());
+                            break;
+                        case ZRANGE:
+                            if(zSetCmd == null || zSetCmd.getStart() == null || zSetCmd.getEnd() == null){
+                                throw new RedisCommandExecutionException("非法ZRANGE命令");
+                            }
+                            zSetOps.range(k, zSetCmd.getStart(), zSetCmd.getEnd());
+                            log.debug("Redis Pipeline ZRANGE {} from {} to {}", k, zSetCmd.getStart(), zSetCmd.getEnd());
+                            break;
+                        case ZREVRANGE:
+                            if(zSetCmd == null || zSetCmd.getStart() == null || zSetCmd.getEnd() == null){
+                                throw new RedisCommandExecutionException("非法ZREVRANGE命令");
+                            }
+                            zSetOps.reverseRange(k, zSetCmd.getStart(), zSetCmd.getEnd());
+                            log.debug("Redis Pipeline ZREVRANGE {} from {} to {}", k, zSetCmd.getStart(), zSetCmd.getEnd());
+                            break;
+                        case ZRANGEBYSCORE:
+                            if(zSetCmd == null || zSetCmd.getMin() == null || zSetCmd.getMax() == null){
+                                throw new RedisCommandExecutionException("非法ZRANGEBYSCORE命令");
+                            }
+                            if(zSetCmd.getOffset() == null || zSetCmd.getCount() == null){
+                                zSetOps.rangeByScore(k, zSetCmd.getMin(), zSetCmd.getMax());
+                            }else{
+                                zSetOps.rangeByScore(k, zSetCmd.getMin(), zSetCmd.getMax(), zSetCmd.getOffset(), zSetCmd.getCount());
+                            }
+                            log.debug("Redis Pipeline ZRANGEBYSCORE {} from {} to {}", k, zSetCmd.getMin(), zSetCmd.getMax());
+                            break;
+                        case ZRANK:
+                            if(Objects.isNull(v)){
+                                throw new RedisCommandExecutionException("非法ZRANK命令");
+                            }
+                            zSetOps.rank(k, v);
+                            log.debug("Redis Pipeline ZRANK {} {}", k, v);
+                            break;
+                        case ZCARD:
+                            zSetOps.zCard(k);
+                            log.debug("Redis Pipeline ZCARD {}", k);
+                            break;
+                        case ZREMRANGEBYSCORE:
+                            if(zSetCmd == null || zSetCmd.getMin() == null || zSetCmd.getMax() == null){
+                                throw new RedisCommandExecutionException("非法ZREMRANGEBYSCORE命令");
+                            }
+                            zSetOps.removeRangeByScore(k, zSetCmd.getMin(), zSetCmd.getMax());
+                            log.debug("Redis Pipeline ZREMRANGEBYSCORE {} from {} to {}", k, zSetCmd.getMin(), zSetCmd.getMax());
+                            break;
                         //添加其他命令类型的处理...
                         default:
                             throw new RedisCommandExecutionException("该版本暂不支持该Redis流水线命令: " + command.getCommandType());
@@ -163,4 +565,27 @@ public class RedisPipelineTemplate {
         });
     }
 
+    /**
+     * HDEL的字段：优先取hashKeys，为空时取hashKey
+     */
+    private static Object[] hashFields(RedisHashCmdBuilder hashCmd) {
+        if (hashCmd == null) {
+            return new Object[0];
+        }
+        if (hashCmd.getHashKeys() != null && !hashCmd.getHashKeys().isEmpty()) {
+            return hashCmd.getHashKeys().toArray();
+        }
+        return hashCmd.getHashKey() == null ? new Object[0] : new Object[]{hashCmd.getHashKey()};
+    }
+
+    /**
+     * 多成员命令的成员：优先取members，为空时取value作为单个成员
+     */
+    private static Object[] members(Collection<?> members, Object value) {
+        if (members != null && !members.isEmpty()) {
+            return members.toArray();
+        }
+        return value == null ? new Object[0] : new Object[]{value};
+    }
+
 }
@@ -0,0 +1,123 @@
+package fun.gangwan.data.redis.template;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *
+ * RedisScanIterator
+ * <span>惰性SCAN迭代器：调用方取完当前批次后才发送下一次SCAN，不在内存中累积全部结果</span>
+ * <li>迭代期间占用一个连接，迭代结束、达到maxResults或close时释放，提前结束迭代时必须close</li>
+ *
+ * @param <T> 元素类型
+ */
+@Slf4j
+public class RedisScanIterator<T> implements Iterator<T>, Closeable {
+
+    private final Cursor<T> cursor;
+
+    private final int batchSize;
+
+    /**
+     * 批次过滤，为null时不过滤
+     */
+    private final UnaryOperator<List<T>> batchFilter;
+
+    private final long maxResults;
+
+    private final Deque<T> batch = new ArrayDeque<>();
+
+    private long returned;
+
+    private boolean truncated;
+
+    private boolean closed;
+
+    public RedisScanIterator(Cursor<T> cursor, int batchSize, UnaryOperator<List<T>> batchFilter, long maxResults) {
+        this.cursor = cursor;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchFilter = batchFilter;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (returned >= maxResults) {
+            truncated = !batch.isEmpty() || cursor.hasNext();
+            if (truncated) {
+                log.warn("SCAN结果数达到上限，停止迭代:maxResults={}", maxResults);
+            }
+            close();
+            return false;
+        }
+        while (batch.isEmpty()) {
+            if (!cursor.hasNext()) {
+                close();
+                return false;
+            }
+            List<T> next = new ArrayList<>(batchSize);
+            while (next.size() < batchSize && cursor.hasNext()) {
+                next.add(cursor.next());
+            }
+            batch.addAll(null == batchFilter ? next : batchFilter.apply(next));
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        returned++;
+        return batch.poll();
+    }
+
+    /**
+     * @return 是否因达到maxResults而提前停止
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return 顺序Stream，使用try-with-resources关闭
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    /**
+     * 关闭游标并释放连接
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            cursor.close();
+        } catch (Exception e) {
+            log.warn("关闭SCAN游标失败", e);
+        }
+    }
+
+}
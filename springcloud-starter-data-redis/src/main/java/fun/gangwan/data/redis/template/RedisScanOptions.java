@@ -0,0 +1,48 @@
+package fun.gangwan.data.redis.template;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.redis.connection.DataType;
+
+/**
+ *
+ * Redis SCAN/HSCAN/SSCAN/ZSCAN 迭代参数
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RedisScanOptions {
+
+    /**
+     * 匹配规则
+     */
+    @Builder.Default
+    private String match = "*";
+
+    /**
+     * 每次SCAN的COUNT，同时是按类型过滤时每批TYPE命令的数量
+     */
+    @Builder.Default
+    private int count = 1000;
+
+    /**
+     * 只返回该类型的key，为null时不过滤，仅对SCAN有效
+     */
+    private DataType type;
+
+    /**
+     * 最多返回的结果数，达到后停止迭代
+     */
+    @Builder.Default
+    private long maxResults = Long.MAX_VALUE;
+
+    /**
+     * 集群并行SCAN的线程数，小于1时每个主节点一个线程
+     */
+    @Builder.Default
+    private int parallelism = 0;
+}
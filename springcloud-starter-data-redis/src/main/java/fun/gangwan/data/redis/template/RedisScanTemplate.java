@@ -0,0 +1,475 @@
+package fun.gangwan.data.redis.template;
+
+import fun.gangwan.data.redis.cache.RedisNearCache;
+import fun.gangwan.data.redis.codec.PrefixedKeySerializer;
+import fun.gangwan.data.redis.support.RedisHotKeyDetector;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ConvertingCursor;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ *
+ * RedisScanTemplate
+ * <span>流式SCAN/HSCAN/SSCAN/ZSCAN：按需逐批拉取，返回的迭代器可转为Stream，替代一次性加载全部结果到Set</span>
+ * <li>迭代器持有连接，必须迭代完或close，推荐try-with-resources</li>
+ * <li>按类型过滤时每批key用一次pipeline TYPE查询类型，兼容不支持SCAN TYPE的Redis版本</li>
+ * <li>集群模式下SCAN只能按节点执行，使用{@link #scanCluster}并行扫描所有主节点</li>
+ * <li>按匹配规则批量删除/设置过期时间时，SCAN的每批key直接分批pipeline UNLINK/PEXPIRE，可限速；同时清除本地缓存并广播近端缓存失效</li>
+ * <li>开启key命名空间时SCAN匹配规则自动加前缀，返回的key不带前缀；HSCAN/SSCAN/ZSCAN的匹配规则不加前缀</li>
+ *
+ */
+@Slf4j
+@Component
+public class RedisScanTemplate {
+
+    StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 使用starter的模板，开启key命名空间时key带前缀
+     */
+    @Resource
+    void setRedisHelperTemplate(RedisHelperTemplate redisHelperTemplate) {
+        this.stringRedisTemplate = redisHelperTemplate.getTemplate();
+    }
+
+    /**
+     * 近端缓存，未开启时为null
+     */
+    @Autowired(required = false)
+    RedisNearCache nearCache;
+
+    /**
+     * 热key探测，未开启时为null
+     */
+    @Autowired(required = false)
+    RedisHotKeyDetector hotKeyDetector;
+
+    /**
+     * SCAN匹配的key
+     *
+     * @param options 迭代参数
+     * @return 惰性迭代器
+     */
+    public RedisScanIterator<String> scan(RedisScanOptions options) {
+        Cursor<byte[]> cursor = stringRedisTemplate.executeWithStickyConnection(
+                (RedisCallback<Cursor<byte[]>>) connection -> connection.scan(toScanOptions(options, true)));
+        DataType type = options.getType();
+        return new RedisScanIterator<>(new ConvertingCursor<>(cursor, this::keyOf),
+                options.getCount(), null == type ? null : keys -> filterType(keys, type), options.getMaxResults());
+    }
+
+    /**
+     * HSCAN匹配的field
+     *
+     * @param key hash key
+     * @param options 迭代参数
+     * @return 惰性迭代器，元素为 field -&gt; value
+     */
+    public RedisScanIterator<Map.Entry<String, String>> hscan(String key, RedisScanOptions options) {
+        Cursor<Map.Entry<byte[], byte[]>> cursor = stringRedisTemplate.executeWithStickyConnection(
+                (RedisCallback<Cursor<Map.Entry<byte[], byte[]>>>) connection ->
+                        connection.hScan(rawKey(key), toScanOptions(options, false)));
+        return new RedisScanIterator<>(new ConvertingCursor<>(cursor, entry ->
+                new AbstractMap.SimpleImmutableEntry<>(asString(entry.getKey()), asString(entry.getValue()))),
+                options.getCount(), null, options.getMaxResults());
+    }
+
+    /**
+     * SSCAN匹配的成员
+     *
+     * @param key set key
+     * @param options 迭代参数
+     * @return 惰性迭代器
+     */
+    public RedisScanIterator<String> sscan(String key, RedisScanOptions options) {
+        Cursor<byte[]> cursor = stringRedisTemplate.executeWithStickyConnection(
+                (RedisCallback<Cursor<byte[]>>) connection -> connection.sScan(rawKey(key), toScanOptions(options, false)));
+        return new RedisScanIterator<>(new ConvertingCursor<>(cursor, RedisScanTemplate::asString),
+                options.getCount(), null, options.getMaxResults());
+    }
+
+    /**
+     * ZSCAN匹配的成员
+     *
+     * @param key sorted set key
+     * @param options 迭代参数
+     * @return 惰性迭代器，元素为成员和分数
+     */
+    public RedisScanIterator<ZSetOperations.TypedTuple<String>> zscan(String key, RedisScanOptions options) {
+        Cursor<RedisZSetCommands.Tuple> cursor = stringRedisTemplate.executeWithStickyConnection(
+                (RedisCallback<Cursor<RedisZSetCommands.Tuple>>) connection ->
+                        connection.zScan(rawKey(key), toScanOptions(options, false)));
+        return new RedisScanIterator<>(new ConvertingCursor<>(cursor, tuple ->
+                new DefaultTypedTuple<>(asString(tuple.getValue()), tuple.getScore())),
+                options.getCount(), null, options.getMaxResults());
+    }
+
+    /**
+     * 并行SCAN集群所有主节点，非集群时在调用线程顺序SCAN
+     * <li>每批key在扫描该节点的线程中回调，回调返回后才发送该节点的下一次SCAN</li>
+     * <li>batchConsumer需线程安全，批次间不保证顺序</li>
+     *
+     * @param options 迭代参数
+     * @param batchConsumer 每批匹配的key
+     * @return 回调的key总数
+     */
+    public long scanCluster(RedisScanOptions options, Consumer<List<String>> batchConsumer) {
+        RedisConnectionFactory factory = stringRedisTemplate.getConnectionFactory();
+        if (!(factory instanceof LettuceConnectionFactory) || !((LettuceConnectionFactory) factory).isClusterAware()) {
+            return scanSequential(options, batchConsumer);
+        }
+        RedisClusterConnection clusterConnection = factory.getClusterConnection();
+        ExecutorService executor = null;
+        try {
+            List<RedisClusterNode> masters = new ArrayList<>();
+            for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                if (node.isMaster()) {
+                    masters.add(node);
+                }
+            }
+            Object nativeConnection = clusterConnection.getNativeConnection();
+            if (!(nativeConnection instanceof RedisAdvancedClusterAsyncCommands)) {
+                throw new IllegalStateException("不支持的集群连接:" + nativeConnection);
+            }
+            @SuppressWarnings("unchecked")
+            StatefulRedisClusterConnection<byte[], byte[]> stateful =
+                    ((RedisAdvancedClusterAsyncCommands<byte[], byte[]>) nativeConnection).getStatefulConnection();
+
+            int parallelism = options.getParallelism() < 1 ? masters.size()
+                    : Math.min(options.getParallelism(), masters.size());
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-cluster-scan-");
+            threadFactory.setDaemon(true);
+            executor = Executors.newFixedThreadPool(Math.max(1, parallelism), threadFactory);
+
+            AtomicLong total = new AtomicLong();
+            List<Future<?>> futures = new ArrayList<>();
+            for (RedisClusterNode node : masters) {
+                StatefulRedisConnection<byte[], byte[]> nodeConnection = stateful.getConnection(node.getId());
+                futures.add(executor.submit(() -> {
+                    scanNode(nodeConnection, options, batchConsumer, total);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return Math.min(total.get(), options.getMaxResults());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("集群SCAN被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("集群SCAN失败", e.getCause());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            clusterConnection.close();
+        }
+    }
+
+    /**
+     * 按匹配规则删除key：SCAN的每批key分批pipeline UNLINK，由Redis后台线程释放内存
+     *
+     * @param options 执行参数
+     * @return 执行汇总
+     */
+    public PatternOperationSummary deleteByPattern(PatternOperationOptions options) {
+        return forEachBatch(options, batch -> {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : batch) {
+                    connection.unlink(rawKey(key));
+                }
+                publishInvalidation(connection, batch);
+                return null;
+            });
+            evictLocal(batch);
+            return results.stream().filter(result -> result instanceof Long)
+                    .mapToLong(result -> (Long) result).sum();
+        });
+    }
+
+    /**
+     * 按匹配规则设置过期时间：SCAN的每批key分批pipeline PEXPIRE
+     *
+     * @param options 执行参数
+     * @param timeout 过期时间
+     * @return 执行汇总
+     */
+    public PatternOperationSummary expireByPattern(PatternOperationOptions options, Duration timeout) {
+        long millis = timeout.toMillis();
+        return forEachBatch(options, batch -> {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : batch) {
+                    connection.pExpire(rawKey(key), millis);
+                }
+                publishInvalidation(connection, batch);
+                return null;
+            });
+            evictLocal(batch);
+            return results.stream().filter(Boolean.TRUE::equals).count();
+        });
+    }
+
+    /**
+     * 与同一批UNLINK/PEXPIRE在同一次pipeline中广播近端缓存失效，与RedisUtils的失效通知格式一致
+     */
+    private void publishInvalidation(RedisConnection connection, List<String> batch) {
+        RedisNearCache nearCache = this.nearCache;
+        if (null == nearCache) {
+            return;
+        }
+        byte[] channel = nearCache.getInvalidateChannel().getBytes(StandardCharsets.UTF_8);
+        for (String key : batch) {
+            if (nearCache.isCacheable(key)) {
+                connection.publish(channel, key.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * 清除本节点的近端缓存、热key本地缓存
+     */
+    private void evictLocal(List<String> batch) {
+        RedisNearCache nearCache = this.nearCache;
+        RedisHotKeyDetector hotKeyDetector = this.hotKeyDetector;
+        for (String key : batch) {
+            if (null != hotKeyDetector) {
+                hotKeyDetector.invalidate(key);
+            }
+            if (null != nearCache && nearCache.isCacheable(key)) {
+                nearCache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * 扫描匹配的key，按batchSize切分后限速执行，单批失败不影响其他批次
+     */
+    private PatternOperationSummary forEachBatch(PatternOperationOptions options,
+                                                 ToLongFunction<List<String>> operation) {
+        if (null == options.getMatch() || options.getMatch().isEmpty()) {
+            throw new IllegalArgumentException("匹配规则不能为空");
+        }
+        long start = System.currentTimeMillis();
+        PatternOperationSummary summary = new PatternOperationSummary();
+        Pacer pacer = new Pacer(options.getMaxKeysPerSecond());
+        int batchSize = Math.max(1, options.getBatchSize());
+        RedisScanOptions scanOptions = RedisScanOptions.builder()
+                .match(options.getMatch())
+                .count(options.getScanCount())
+                .maxResults(options.getMaxKeys())
+                .parallelism(options.getParallelism())
+                .build();
+        scanCluster(scanOptions, keys -> {
+            for (int from = 0; from < keys.size(); from += batchSize) {
+                List<String> batch = keys.subList(from, Math.min(from + batchSize, keys.size()));
+                pacer.acquire(batch.size());
+                long affected = 0;
+                String error = null;
+                try {
+                    affected = operation.applyAsLong(batch);
+                } catch (Exception e) {
+                    log.error("按匹配规则批量操作失败:match={},keys={}", options.getMatch(), batch.size(), e);
+                    error = e.getMessage();
+                }
+                summary.addBatch(batch.size(), affected, error);
+                if (null != options.getProgressListener()) {
+                    options.getProgressListener().accept(summary);
+                }
+            }
+        });
+        summary.setTotalMillis(System.currentTimeMillis() - start);
+        return summary;
+    }
+
+    private long scanSequential(RedisScanOptions options, Consumer<List<String>> batchConsumer) {
+        long total = 0;
+        try (RedisScanIterator<String> iterator = scan(options)) {
+            List<String> batch = new ArrayList<>(options.getCount());
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() >= options.getCount()) {
+                    total += batch.size();
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(options.getCount());
+                }
+            }
+            if (!batch.isEmpty()) {
+                total += batch.size();
+                batchConsumer.accept(batch);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 扫描单个节点，所有节点回调的key总数达到maxResults后停止
+     */
+    private void scanNode(StatefulRedisConnection<byte[], byte[]> connection, RedisScanOptions options,
+                          Consumer<List<String>> batchConsumer, AtomicLong total) throws Exception {
+        ScanArgs args = ScanArgs.Builder.limit(options.getCount()).match(matchPattern(options.getMatch()));
+        ScanCursor cursor = ScanCursor.INITIAL;
+        while (total.get() < options.getMaxResults()) {
+            KeyScanCursor<byte[]> page = connection.sync().scan(cursor, args);
+            List<byte[]> rawKeys = page.getKeys();
+            if (null != options.getType() && !rawKeys.isEmpty()) {
+                rawKeys = filterType(connection.async(), rawKeys, options.getType());
+            }
+            if (!rawKeys.isEmpty()) {
+                long before = total.getAndAdd(rawKeys.size());
+                long allowed = options.getMaxResults() - before;
+                if (allowed <= 0) {
+                    break;
+                }
+                List<String> keys = new ArrayList<>(rawKeys.size());
+                for (byte[] rawKey : rawKeys) {
+                    if (keys.size() >= allowed) {
+                        break;
+                    }
+                    keys.add(keyOf(rawKey));
+                }
+                batchConsumer.accept(keys);
+            }
+            if (page.isFinished()) {
+                break;
+            }
+            cursor = page;
+        }
+    }
+
+    private static List<byte[]> filterType(RedisAsyncCommands<byte[], byte[]> async, List<byte[]> keys,
+                                           DataType type) throws Exception {
+        List<RedisFuture<String>> futures = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            futures.add(async.type(key));
+        }
+        List<byte[]> matched = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (type.code().equals(futures.get(i).get())) {
+                matched.add(keys.get(i));
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 一次pipeline查询一批key的类型，保留指定类型的key
+     */
+    private List<String> filterType(List<String> keys, DataType type) {
+        List<Object> types = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.type(rawKey(key));
+            }
+            return null;
+        });
+        List<String> matched = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (type == types.get(i)) {
+                matched.add(keys.get(i));
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 按固定速率发放许可，多个扫描线程共享
+     */
+    private static class Pacer {
+
+        private final long intervalNanos;
+
+        private final AtomicLong nextFreeNanos = new AtomicLong(System.nanoTime());
+
+        Pacer(int permitsPerSecond) {
+            this.intervalNanos = permitsPerSecond < 1 ? 0 : TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        }
+
+        void acquire(int permits) {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long cost = intervalNanos * permits;
+            long now = System.nanoTime();
+            long reserved = nextFreeNanos.getAndAccumulate(cost, (next, c) -> Math.max(next, now) + c);
+            long waitNanos = Math.max(reserved, now) - now;
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+        }
+    }
+
+    /**
+     * @param keys 是否匹配key，匹配hash field、set成员时不加命名空间前缀
+     */
+    private ScanOptions toScanOptions(RedisScanOptions options, boolean keys) {
+        String match = keys ? matchPattern(options.getMatch()) : options.getMatch();
+        return ScanOptions.scanOptions().match(match).count(options.getCount()).build();
+    }
+
+    /**
+     * 开启key命名空间时匹配规则加上前缀
+     */
+    private String matchPattern(String pattern) {
+        RedisSerializer<?> keySerializer = stringRedisTemplate.getKeySerializer();
+        return keySerializer instanceof PrefixedKeySerializer
+                ? ((PrefixedKeySerializer) keySerializer).toPattern(pattern) : pattern;
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String key) {
+        return ((RedisSerializer<String>) stringRedisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    /**
+     * SCAN返回的key去掉命名空间前缀
+     */
+    private String keyOf(byte[] rawKey) {
+        return (String) stringRedisTemplate.getKeySerializer().deserialize(rawKey);
+    }
+
+    private static String asString(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+}
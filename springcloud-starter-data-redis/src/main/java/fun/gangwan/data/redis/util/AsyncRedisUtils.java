@@ -0,0 +1,116 @@
+package fun.gangwan.data.redis.util;
+
+import fun.gangwan.data.redis.callback.LoadCallback;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ *
+ * AsyncRedisUtils
+ * <span>基于{@link ReactiveRedisUtils}的异步Redis工具类，返回CompletableFuture，便于并发发起多个Redis操作后组合结果</span>
+ * <span>数据不存在、获取锁失败时CompletableFuture的结果为null</span>
+ *
+ */
+public class AsyncRedisUtils {
+
+    private final ReactiveRedisUtils reactive;
+
+    public AsyncRedisUtils(ReactiveRedisUtils reactive) {
+        this.reactive = reactive;
+    }
+
+    public CompletableFuture<String> get(String key) {
+        return reactive.get(key).toFuture();
+    }
+
+    public <T> CompletableFuture<T> getWithInstance(String key, Class<? extends T> clazz) {
+        return reactive.<T>getWithInstance(key, clazz).toFuture();
+    }
+
+    public <T> CompletableFuture<Map<String, T>> multiGet(Collection<String> keys, Class<? extends T> clazz) {
+        return reactive.<T>multiGet(keys, clazz).toFuture();
+    }
+
+    public CompletableFuture<Boolean> set(String key, Object value) {
+        return reactive.set(key, value).toFuture();
+    }
+
+    public CompletableFuture<Boolean> set(String key, Object value, Duration timeout) {
+        return reactive.set(key, value, timeout).toFuture();
+    }
+
+    public CompletableFuture<Boolean> delete(String key) {
+        return reactive.delete(key).toFuture();
+    }
+
+    public CompletableFuture<Boolean> expire(String key, Duration timeout) {
+        return reactive.expire(key, timeout).toFuture();
+    }
+
+    public <T> CompletableFuture<T> hashGet(String key, String hashKey, Class<? extends T> clazz) {
+        return reactive.<T>hashGet(key, hashKey, clazz).toFuture();
+    }
+
+    public CompletableFuture<Boolean> hashSet(String key, String hashKey, Object value) {
+        return reactive.hashSet(key, hashKey, value).toFuture();
+    }
+
+    public <T> CompletableFuture<List<T>> hashMultiGet(String key, List<String> hashKeys, Class<? extends T> clazz) {
+        return reactive.<T>hashMultiGet(key, hashKeys, clazz).toFuture();
+    }
+
+    public <T> CompletableFuture<Map<String, T>> hashGetAll(String key, Class<? extends T> clazz) {
+        return reactive.<T>hashGetAll(key, clazz).toFuture();
+    }
+
+    public CompletableFuture<Long> hashDelete(String key, String... hashKeys) {
+        return reactive.hashDelete(key, hashKeys).toFuture();
+    }
+
+    public <T> CompletableFuture<T> getOrSet(String key, LoadCallback<T> callback, long expiredTime,
+                                             Class<? extends T> clazz) {
+        return reactive.getOrSet(key, callback, expiredTime, clazz).toFuture();
+    }
+
+    public <T> CompletableFuture<T> getOrSet(String key, LoadCallback<T> callback, long expiredTime,
+                                             long waitLockTime, Class<? extends T> clazz) {
+        return reactive.getOrSet(key, callback, expiredTime, waitLockTime, clazz).toFuture();
+    }
+
+    public CompletableFuture<String> tryLock(String key, Duration lease) {
+        return reactive.tryLock(key, lease).toFuture();
+    }
+
+    public CompletableFuture<String> lock(String key, Duration lease, Duration waitTime) {
+        return reactive.lock(key, lease, waitTime).toFuture();
+    }
+
+    public CompletableFuture<Boolean> releaseLock(String key, String value) {
+        return reactive.releaseLock(key, value).toFuture();
+    }
+
+    public CompletableFuture<Long> increment(String key) {
+        return reactive.increment(key).toFuture();
+    }
+
+    public CompletableFuture<Long> increment(String key, long delta) {
+        return reactive.increment(key, delta).toFuture();
+    }
+
+    public CompletableFuture<Long> increment(String key, long delta, Duration timeout) {
+        return reactive.increment(key, delta, timeout).toFuture();
+    }
+
+    public CompletableFuture<Long> decrement(String key) {
+        return reactive.decrement(key).toFuture();
+    }
+
+    public CompletableFuture<Long> publisher(String channel, String message) {
+        return reactive.publisher(channel, message).toFuture();
+    }
+
+}
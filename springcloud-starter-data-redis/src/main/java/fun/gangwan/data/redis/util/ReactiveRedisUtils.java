@@ -0,0 +1,551 @@
+package fun.gangwan.data.redis.util;
+
+import fun.gangwan.data.redis.cache.RedisNearCache;
+import com.fasterxml.jackson.databind.JavaType;
+import fun.gangwan.data.redis.callback.LoadCallback;
+import fun.gangwan.data.redis.codec.RedisValueCodecs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ *
+ * ReactiveRedisUtils
+ * <span>基于Lettuce响应式API的非阻塞Redis工具类，方法与{@link RedisUtils}对应，返回Mono</span>
+ * <span>LoadCallback等阻塞的加载逻辑在boundedElastic线程池中执行，不会阻塞IO线程</span>
+ *
+ */
+@Slf4j
+public class ReactiveRedisUtils {
+
+    /**
+     * get or set 方法分布式锁的过期时间ms
+     */
+    private static final long GET_OR_SET_EXPIRED_TIME = 10000;
+
+    /**
+     * get or set 方法未抢到分布式锁时的轮询间隔ms
+     */
+    private static final long GET_OR_SET_SLEEP_TIME = 50;
+
+    /**
+     * 获取锁的随机休眠时间ms
+     */
+    private static final int GET_LOCK_RANDOM_SLEEP_TIME = 100;
+
+    /**
+     * 释放锁，ARGV[2]不为空时同RedisLocks发布锁释放消息，唤醒阻塞等待的getAtomLock
+     */
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "local n = redis.call('del', KEYS[1]); "
+            + "if ARGV[2] and ARGV[2] ~= '' then redis.call('publish', ARGV[2], KEYS[1]) end; "
+            + "return n else return 0 end",
+            Long.class);
+
+    private static final RedisScript<Long> INCR_EXPIRE_SCRIPT = RedisScript.of(
+            "local v = redis.call('incrby', KEYS[1], ARGV[1]); redis.call('pexpire', KEYS[1], ARGV[2]); return v",
+            Long.class);
+
+    private final ReactiveStringRedisTemplate redis;
+
+    /**
+     * get or set 方法JVM内请求合并
+     */
+    private final ConcurrentMap<String, Mono<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 本地近端缓存，未开启时为null，写操作需要通知失效
+     */
+    private RedisNearCache nearCache;
+
+    /**
+     * value编解码器，与RedisUtils共用
+     */
+    private RedisValueCodecs codecs = RedisValueCodecs.jsonOnly();
+
+    /**
+     * RedisLocks锁释放消息的channel前缀，为null时释放锁不发布消息
+     */
+    private String lockChannelPrefix;
+
+    public ReactiveRedisUtils(ReactiveStringRedisTemplate redis) {
+        this.redis = redis;
+    }
+
+    /**
+     * @param nearCache 本地近端缓存，传null关闭
+     */
+    public void setNearCache(RedisNearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    /**
+     * @param codecs value编解码器
+     */
+    public void setCodecs(RedisValueCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    /**
+     * @param lockChannelPrefix RedisLocks锁释放消息的channel前缀
+     */
+    public void setLockChannelPrefix(String lockChannelPrefix) {
+        this.lockChannelPrefix = lockChannelPrefix;
+    }
+
+    /**
+     * 获取存储的信息
+     *
+     * @param key key
+     * @return 不存在时为空
+     */
+    public Mono<String> get(String key) {
+        return redis.opsForValue().get(key)
+                .doOnError(e -> log.info("从redis取得数据失败:key={}", key, e));
+    }
+
+    /**
+     * 获取存储的信息并反序列化
+     *
+     * @param key key
+     * @param clazz clazz
+     * @param <T> T
+     * @return 不存在或反序列化失败时为空
+     */
+    public <T> Mono<T> getWithInstance(String key, Class<? extends T> clazz) {
+        JavaType type = RedisValueCodecs.type(clazz);
+        return redis.execute(connection -> connection.stringCommands().get(rawKey(key))).next()
+                .flatMap(raw -> Mono.justOrEmpty(this.<T>decodeQuietly(key, raw, type)))
+                .doOnError(e -> log.info("从redis取得数据失败:key={}", key, e));
+    }
+
+    /**
+     * 批量获取存储的信息并反序列化，一次MGET
+     *
+     * @param keys keys
+     * @param clazz clazz
+     * @param <T> T
+     * @return key -&gt; T，不存在的key不包含在内
+     */
+    public <T> Mono<Map<String, T>> multiGet(Collection<String> keys, Class<? extends T> clazz) {
+        List<String> keyList = keys.stream().distinct().collect(Collectors.toList());
+        if (keyList.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        JavaType type = RedisValueCodecs.type(clazz);
+        List<ByteBuffer> rawKeys = keyList.stream().map(this::rawKey).collect(Collectors.toList());
+        return redis.execute(connection -> connection.stringCommands().mGet(rawKeys)).next().map(values -> {
+            Map<String, T> result = new HashMap<>(keyList.size());
+            for (int i = 0; i < keyList.size(); i++) {
+                T value = decodeQuietly(keyList.get(i), values.get(i), type);
+                if (value != null) {
+                    result.put(keyList.get(i), value);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 存储信息，非String对象按key前缀选择的编解码器序列化
+     *
+     * @param key key
+     * @param value value
+     * @return 是否成功
+     */
+    public Mono<Boolean> set(String key, Object value) {
+        return Mono.fromCallable(() -> encode(key, value))
+                .flatMap(raw -> redis.execute(connection -> connection.stringCommands().set(rawKey(key), raw)).next())
+                .doOnSuccess(ok -> evictNearCache(key));
+    }
+
+    /**
+     * 存储信息，非String对象按key前缀选择的编解码器序列化
+     *
+     * @param key key
+     * @param value value
+     * @param timeout 过期时间，不大于0时不设置过期时间
+     * @return 是否成功
+     */
+    public Mono<Boolean> set(String key, Object value, Duration timeout) {
+        long ttl = timeout.toMillis();
+        return Mono.fromCallable(() -> encode(key, value))
+                .flatMap(raw -> redis.execute(connection -> ttl <= 0
+                        ? connection.stringCommands().set(rawKey(key), raw)
+                        : connection.stringCommands().set(rawKey(key), raw,
+                        Expiration.milliseconds(ttl), RedisStringCommands.SetOption.upsert())).next())
+                .doOnSuccess(ok -> evictNearCache(key));
+    }
+
+    /**
+     * 删除信息
+     *
+     * @param key key
+     * @return 是否删除了key
+     */
+    public Mono<Boolean> delete(String key) {
+        return redis.delete(key)
+                .map(count -> count > 0)
+                .doOnSuccess(ok -> evictNearCache(key));
+    }
+
+    /**
+     * 设置过期时间
+     *
+     * @param key key
+     * @param timeout 过期时间
+     * @return 是否成功
+     */
+    public Mono<Boolean> expire(String key, Duration timeout) {
+        return redis.expire(key, timeout);
+    }
+
+    /**
+     * hashGet 并反序列化
+     *
+     * @param key key
+     * @param hashKey hashKey
+     * @param clazz clazz
+     * @param <T> T
+     * @return 不存在或反序列化失败时为空
+     */
+    public <T> Mono<T> hashGet(String key, String hashKey, Class<? extends T> clazz) {
+        JavaType type = RedisValueCodecs.type(clazz);
+        return redis.execute(connection -> connection.hashCommands().hGet(rawKey(key), rawHashKey(hashKey))).next()
+                .flatMap(raw -> Mono.justOrEmpty(this.<T>decodeQuietly(key, raw, type)));
+    }
+
+    /**
+     * hashSet，非String对象按key前缀选择的编解码器序列化
+     *
+     * @param key key
+     * @param hashKey hashKey
+     * @param value value
+     * @return 是否新增了字段
+     */
+    public Mono<Boolean> hashSet(String key, String hashKey, Object value) {
+        return Mono.fromCallable(() -> encode(key, value))
+                .flatMap(raw -> redis.execute(connection -> connection.hashCommands()
+                        .hSet(rawKey(key), rawHashKey(hashKey), raw)).next())
+                .doOnSuccess(ok -> evictNearCache(key));
+    }
+
+    /**
+     * 批量获取hash并反序列化
+     *
+     * @param key key
+     * @param hashKeys hashKeys
+     * @param clazz clazz
+     * @param <T> T
+     * @return 与hashKeys一一对应，不存在的字段为null
+     */
+    public <T> Mono<List<T>> hashMultiGet(String key, List<String> hashKeys, Class<? extends T> clazz) {
+        JavaType type = RedisValueCodecs.type(clazz);
+        List<ByteBuffer> rawHashKeys = hashKeys.stream().map(this::rawHashKey).collect(Collectors.toList());
+        return redis.execute(connection -> connection.hashCommands().hMGet(rawKey(key), rawHashKeys)).next()
+                .map(values -> {
+                    List<T> result = new ArrayList<>(values.size());
+                    for (ByteBuffer raw : values) {
+                        result.add(decodeQuietly(key, raw, type));
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * 获取key下所有hash并反序列化
+     *
+     * @param key key
+     * @param clazz clazz
+     * @param <T> T
+     * @return hashKey -&gt; T
+     */
+    public <T> Mono<Map<String, T>> hashGetAll(String key, Class<? extends T> clazz) {
+        JavaType type = RedisValueCodecs.type(clazz);
+        return redis.execute(connection -> connection.hashCommands().hGetAll(rawKey(key)))
+                .filter(entry -> entry.getValue() != null)
+                .collectMap(entry -> redis.getSerializationContext().<String>getHashKeySerializationPair()
+                                .read(entry.getKey()),
+                        entry -> this.<T>decodeQuietly(key, entry.getValue(), type));
+    }
+
+    /**
+     * 删除hash字段
+     *
+     * @param key key
+     * @param hashKeys hashKeys
+     * @return 删除的字段数
+     */
+    public Mono<Long> hashDelete(String key, String... hashKeys) {
+        return redis.<String, String>opsForHash().remove(key, (Object[]) hashKeys)
+                .doOnSuccess(count -> evictNearCache(key));
+    }
+
+    /**
+     * get or set 防缓存击穿，同redisGetOrSet：同一JVM内的并发请求合并，仅一个请求竞争分布式锁
+     *
+     * @param key redis key
+     * @param callback 加载数据，在boundedElastic线程池中执行
+     * @param expiredTime key过期时间ms
+     * @param clazz T
+     * @param <T> T
+     * @return T
+     */
+    public <T> Mono<T> getOrSet(String key, LoadCallback<T> callback, long expiredTime, Class<? extends T> clazz) {
+        return getOrSet(key, callback, expiredTime, GET_OR_SET_EXPIRED_TIME, clazz);
+    }
+
+    /**
+     * get or set 防缓存击穿，同redisGetOrSet：同一JVM内的并发请求合并，仅一个请求竞争分布式锁
+     *
+     * @param key redis key
+     * @param callback 加载数据，在boundedElastic线程池中执行
+     * @param expiredTime key过期时间ms
+     * @param waitLockTime 分布式锁的超时时间ms，同时作为最长等待时间
+     * @param clazz T
+     * @param <T> T
+     * @return T
+     */
+    public <T> Mono<T> getOrSet(String key, LoadCallback<T> callback, long expiredTime, long waitLockTime,
+                                Class<? extends T> clazz) {
+        String keyMutex = key + "_mutex";
+        return this.<T>getWithInstance(key, clazz)
+                .switchIfEmpty(coalesce(keyMutex, waitLockTime, () -> loadWithMutex(key, keyMutex, callback,
+                        expiredTime, waitLockTime, clazz, System.currentTimeMillis() + waitLockTime),
+                        () -> this.<T>getWithInstance(key, clazz), () -> load(callback, clazz)));
+    }
+
+    private <T> Mono<T> loadWithMutex(String key, String keyMutex, LoadCallback<T> callback, long expiredTime,
+                                      long waitLockTime, Class<? extends T> clazz, long deadline) {
+        Duration lease = Duration.ofMillis(Math.max(1000, waitLockTime));
+        return tryLock(keyMutex, lease)
+                .flatMap(lockValue -> this.<T>getWithInstance(key, clazz)
+                        .switchIfEmpty(Mono.defer(() -> load(callback, clazz)
+                                .flatMap(value -> set(key, value, Duration.ofMillis(expiredTime)).thenReturn(value)
+                                        .onErrorResume(e -> {
+                                            log.info("getOrSet回写缓存失败:key={}", key, e);
+                                            return Mono.just(value);
+                                        }))))
+                        .doFinally(signal -> releaseLock(keyMutex, lockValue).subscribe()))
+                .switchIfEmpty(Mono.defer(() -> {
+                    if (System.currentTimeMillis() >= deadline) {
+                        log.warn("getOrSet等待分布式锁超时,直接加载数据:key={}", keyMutex);
+                        return load(callback, clazz);
+                    }
+                    //其他进程持有锁，休息后检查缓存
+                    return Mono.delay(Duration.ofMillis(GET_OR_SET_SLEEP_TIME))
+                            .then(this.<T>getWithInstance(key, clazz))
+                            .switchIfEmpty(Mono.defer(() -> loadWithMutex(key, keyMutex, callback, expiredTime,
+                                    waitLockTime, clazz, deadline)));
+                }));
+    }
+
+    private <T> Mono<T> load(LoadCallback<T> callback, Class<? extends T> clazz) {
+        return Mono.fromCallable(callback::load)
+                .switchIfEmpty(Mono.fromCallable(clazz::newInstance))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 同一key同一时刻只订阅一次supplier返回的Mono，其他订阅者共享结果
+     * <li>其他订阅者最长等待2倍waitLockTime(leader获取分布式锁、加载各waitLockTime)，与RedisUtils一致</li>
+     * <li>等待超时时重新读取缓存，仍未命中时调用fallback直接加载，不回写缓存</li>
+     * <li>leader失败时重新读取缓存，缓存未命中时返回leader的异常</li>
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> coalesce(String key, long waitLockTime, Supplier<Mono<T>> supplier,
+                                 Supplier<Mono<T>> cacheReader, Supplier<Mono<T>> fallback) {
+        return Mono.defer(() -> {
+            AtomicReference<Mono<Object>> created = new AtomicReference<>();
+            Mono<Object> shared = inFlight.computeIfAbsent(key, k -> {
+                Mono<Object> mono = ((Mono<Object>) supplier.get())
+                        .doFinally(signal -> inFlight.remove(k, created.get()))
+                        .cache();
+                created.set(mono);
+                return mono;
+            });
+            if (shared == created.get()) {
+                return (Mono<T>) shared;
+            }
+            return ((Mono<T>) shared)
+                    .timeout(Duration.ofMillis(Math.max(1, waitLockTime) * 2))
+                    .onErrorResume(e -> {
+                        if (e instanceof TimeoutException) {
+                            log.warn("等待合并请求结果超时,重新读取缓存:key={},waitLockTime={}", key, waitLockTime);
+                            return cacheReader.get().switchIfEmpty(Mono.defer(fallback));
+                        }
+                        log.info("合并请求leader执行失败,重新读取缓存:key={}", key, e);
+                        return cacheReader.get().switchIfEmpty(Mono.error(e));
+                    });
+        });
+    }
+
+    /**
+     * 分布式锁，不等待
+     *
+     * @param key 锁key
+     * @param lease 锁过期时间
+     * @return 获取成功返回锁的值(用于释放锁)，失败为空
+     */
+    public Mono<String> tryLock(String key, Duration lease) {
+        String value = UUID.randomUUID().toString();
+        return redis.opsForValue().setIfAbsent(key, value, lease)
+                .filter(Boolean::booleanValue)
+                .map(locked -> value);
+    }
+
+    /**
+     * 分布式锁，在等待时间内随机间隔重试，等待期间不占用线程
+     *
+     * @param key 锁key
+     * @param lease 锁过期时间
+     * @param waitTime 等待获取锁时间
+     * @return 获取成功返回锁的值(用于释放锁)，超时为空
+     */
+    public Mono<String> lock(String key, Duration lease, Duration waitTime) {
+        return Mono.defer(() -> lockUntil(key, lease, System.currentTimeMillis() + waitTime.toMillis()));
+    }
+
+    private Mono<String> lockUntil(String key, Duration lease, long deadline) {
+        return tryLock(key, lease).switchIfEmpty(Mono.defer(() -> {
+            if (System.currentTimeMillis() >= deadline) {
+                return Mono.empty();
+            }
+            return Mono.delay(Duration.ofMillis(ThreadLocalRandom.current().nextInt(GET_LOCK_RANDOM_SLEEP_TIME)))
+                    .then(lockUntil(key, lease, deadline));
+        }));
+    }
+
+    /**
+     * 释放锁
+     *
+     * @param key 锁key
+     * @param value 锁value 来自tryLock()/lock()
+     * @return 是否释放成功
+     */
+    public Mono<Boolean> releaseLock(String key, String value) {
+        String channel = null == lockChannelPrefix ? "" : lockChannelPrefix + key;
+        return redis.execute(RELEASE_LOCK_SCRIPT, Collections.singletonList(key), Arrays.asList(value, channel))
+                .next()
+                .map(result -> result == 1L)
+                .doOnNext(released -> {
+                    if (!released) {
+                        log.error("释放锁失败,msg={}", key + "已自动超时,可能已被其他线程重新获取锁");
+                    }
+                });
+    }
+
+    /**
+     * 自增长
+     *
+     * @param key key
+     * @return 自增后的值
+     */
+    public Mono<Long> increment(String key) {
+        return redis.opsForValue().increment(key);
+    }
+
+    /**
+     * 自增长指定步长
+     *
+     * @param key key
+     * @param delta 步长
+     * @return 自增后的值
+     */
+    public Mono<Long> increment(String key, long delta) {
+        return redis.opsForValue().increment(key, delta);
+    }
+
+    /**
+     * 自增长并设置过期时间，INCRBY和PEXPIRE在一次Lua脚本中原子执行
+     *
+     * @param key key
+     * @param delta 步长
+     * @param timeout 过期时间
+     * @return 自增后的值
+     */
+    public Mono<Long> increment(String key, long delta, Duration timeout) {
+        return redis.execute(INCR_EXPIRE_SCRIPT, Collections.singletonList(key),
+                Arrays.asList(String.valueOf(delta), String.valueOf(timeout.toMillis()))).next();
+    }
+
+    /**
+     * 自减
+     *
+     * @param key key
+     * @return 自减后的值
+     */
+    public Mono<Long> decrement(String key) {
+        return redis.opsForValue().decrement(key);
+    }
+
+    /**
+     * 发布消息
+     *
+     * @param channel channel
+     * @param message message
+     * @return 收到消息的订阅者数量
+     */
+    public Mono<Long> publisher(String channel, String message) {
+        return redis.convertAndSend(channel, message);
+    }
+
+    private ByteBuffer encode(String key, Object value) {
+        if (value instanceof String) {
+            return ByteBuffer.wrap(((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+        return ByteBuffer.wrap(codecs.encode(key, value));
+    }
+
+    private <T> T decodeQuietly(String key, ByteBuffer raw, JavaType type) {
+        try {
+            return codecs.decode(raw, type);
+        } catch (Exception e) {
+            log.info("redis数据反序列化失败:key={}", key, e);
+            return null;
+        }
+    }
+
+    private ByteBuffer rawKey(String key) {
+        return redis.getSerializationContext().getKeySerializationPair().write(key);
+    }
+
+    private ByteBuffer rawHashKey(String hashKey) {
+        return redis.getSerializationContext().<String>getHashKeySerializationPair().write(hashKey);
+    }
+
+    private void evictNearCache(String key) {
+        RedisNearCache nearCache = this.nearCache;
+        if (nearCache == null || !nearCache.isCacheable(key)) {
+            return;
+        }
+        nearCache.invalidate(key);
+        publisher(nearCache.getInvalidateChannel(), key)
+                .subscribe(null, e -> log.info("消息发布失败,channel={},message={}", nearCache.getInvalidateChannel(), key, e));
+    }
+
+}
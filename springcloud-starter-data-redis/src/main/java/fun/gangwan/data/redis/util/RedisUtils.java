@@ -1,11 +1,18 @@
 package fun.gangwan.data.redis.util;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import fun.gangwan.data.redis.cache.RedisNearCache;
+import fun.gangwan.data.redis.callback.BulkLoadCallback;
 import fun.gangwan.data.redis.callback.LoadCallback;
+import fun.gangwan.data.redis.codec.PrefixedKeySerializer;
+import fun.gangwan.data.redis.codec.RedisValueCodecs;
+import fun.gangwan.data.redis.lock.RedisLocks;
+import fun.gangwan.data.redis.support.RedisExpiryPolicies;
+import fun.gangwan.data.redis.support.RedisHotKeyDetector;
+import fun.gangwan.data.redis.support.RedisRefreshAhead;
+import fun.gangwan.data.redis.support.RedisSingleFlight;
+import fun.gangwan.data.redis.support.RefreshAheadValue;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisConnection;
@@ -13,6 +20,7 @@ import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.*;
 import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.support.atomic.RedisAtomicLong;
 
@@ -21,12 +29,16 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  *
  * Redis工具类
  * 为避免业务方代码太大改动，从老框架迁移
+ * <span>开启本地近端缓存或热key本地缓存时，*WithInstance方法命中本地缓存返回的是共享对象实例，调用方不要修改其内容</span>
  *
  */
 @Slf4j
@@ -37,15 +49,63 @@ public class RedisUtils {
      */
     private StringRedisTemplate        redis;
 
+    /**
+     * key命名空间前缀，spring.redis.helper.namespace.enabled=true时由StringRedisTemplate的key序列化器统一加在key前
+     */
     private String                     redisPrefix;
 
+    /**
+     * 本地近端缓存，未开启时为null
+     */
+    private RedisNearCache             nearCache;
+
+    /**
+     * get or set 方法JVM内请求合并
+     */
+    private final RedisSingleFlight    singleFlight = new RedisSingleFlight();
+
+    /**
+     * get or set 提前刷新
+     */
+    private RedisRefreshAhead          refreshAhead = new RedisRefreshAhead(new RedisHelperProperties.RefreshAhead());
+
+    /**
+     * value编解码器，默认仅json
+     */
+    private RedisValueCodecs           codecs = RedisValueCodecs.jsonOnly();
+
+    /**
+     * 基于发布订阅的分布式锁，为null时等待锁退化为轮询
+     */
+    private RedisLocks                 locks;
+
+    /**
+     * hash批量读取的结果数不小于该值时并行反序列化，0不并行
+     */
+    private int                        parallelDecodeThreshold;
+
+    /**
+     * 按key前缀的过期策略，默认无策略
+     */
+    private RedisExpiryPolicies        expiryPolicies = RedisExpiryPolicies.none();
+
+    /**
+     * 热key、大key探测，未开启时为null
+     */
+    private RedisHotKeyDetector        hotKeyDetector;
+
+    /**
+     * RedisAtomicLong使用的模板，首次使用时创建
+     */
+    private volatile RedisTemplate<String, Long> atomicLongTemplate;
+
     /**
      * get or set 方法分布式锁的过期时间ms
      */
     private static final long          GET_OR_SET_EXPIRED_TIME    = 10000;
 
     /**
-     * get or set 方法休眠时间ms
+     * get or set 方法leader线程未抢到分布式锁时的轮询间隔ms
      */
     private static final long          GET_OR_SET_SLEEP_TIME      = 50;
 
@@ -64,6 +124,12 @@ public class RedisUtils {
      */
     private static final int           SCAN_LIMIT_SIZE = 10000;
 
+    /**
+     * 释放锁脚本，结果为1释放成功
+     */
+    private static final String        RELEASE_LOCK_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
     /**
      * 工具类实体
      */
@@ -92,6 +158,14 @@ public class RedisUtils {
         return instance;
     }
 
+    /**
+     * 替换initInstance()返回的实例，开启指标时替换为记录指标的代理
+     * @param redisUtils redisUtils
+     */
+    public static void initInstance(RedisUtils redisUtils) {
+        instance = redisUtils;
+    }
+
     /**
      * 获取存储的信息
      *
@@ -110,14 +184,25 @@ public class RedisUtils {
             return null;
         }
 
+        RedisNearCache nearCache = localCacheFor(key);
+        boolean nearCacheable = nearCache != null;
+        long generation = 0;
+        if (nearCacheable) {
+            generation = nearCache.generation(key);
+            T cached = nearCache.get(key, null, clazz);
+            if (cached != null) {
+                recordAccess(key, 0);
+                return cached;
+            }
+        }
+
         T result = null;
 
         try {
-            String resultStr = redis.opsForValue().get(key);
-            if (StringUtils.isBlank(resultStr)) {
+            result = codecs.decode(rawGet(key), RedisValueCodecs.type(clazz));
+            if (null == result) {
                 return null;
             }
-            result = JsonConvertUtils.json2Object(resultStr, clazz);
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据失败:key={}", key, e);
@@ -125,6 +210,10 @@ public class RedisUtils {
             return null;
         }
 
+        if (nearCacheable) {
+            nearCache.put(key, null, clazz, result, generation);
+        }
+
         if (log.isDebugEnabled()) {
             log.debug("从redis取得数据并封成对象返回结束:key={},result={}", key, result);
         }
@@ -148,6 +237,8 @@ public class RedisUtils {
 
         try {
             result = redis.opsForValue().get(key);
+            expiryPolicies.touch(key);
+            recordAccess(key, null == result ? 0 : result.length());
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据失败:key={}", key, e);
@@ -165,7 +256,7 @@ public class RedisUtils {
 
     /**
      * <p>
-     * get or set 防缓存击穿,如果释放锁时恰好redis异常 导致锁释放失败,可能引起StackOverFlow
+     * get or set 防缓存击穿,同一JVM内的并发请求合并为一次加载,仅由leader线程竞争分布式锁
      * </p>
      *
      * @param key redis key
@@ -181,7 +272,7 @@ public class RedisUtils {
 
     /**
      * <p>
-     * get or set 防缓存击穿,如果释放锁时恰好redis异常 导致锁释放失败,可能引起StackOverFlow
+     * get or set 防缓存击穿,同一JVM内的并发请求合并为一次加载,仅由leader线程竞争分布式锁
      * </p>
      *
      * @param key redis key
@@ -198,37 +289,397 @@ public class RedisUtils {
         if (null != value) {
             return value;
         }
-        String keyMutex = key + "_mutex";
-        Object lockValue = getAtomLock(keyMutex, waitLockTime / 1000);
-        if (!StringUtils.isBlank(lockValue)) {
-            //获取锁成功
-            T loadValue = null;
-            try {
-                T checkValue = redisGetWithInstance(key, clazz);
-                if (null != checkValue) {
-                    return checkValue;
-                }
-                loadValue = callback.load();
-                if (null == loadValue) {
-                    loadValue = clazz.newInstance();
+        return getOrSetCoalesced(key + "_mutex", waitLockTime,
+                () -> redisGetWithInstance(key, clazz),
+                () -> loadOrNewInstance(callback, clazz),
+                loadValue -> redisSet(key, loadValue, expiredTime, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * <p>
+     * get or load 防缓存击穿,与redisGetOrSet共用分布式锁和JVM内请求合并,按JavaType反序列化,支持泛型类型
+     * </p>
+     * <span>与redisGetOrSet不同：加载结果为null时不写入缓存，直接返回null；不走本地近端缓存</span>
+     *
+     * @param key redis key
+     * @param callback 加载数据
+     * @param expiredTime key过期时间ms
+     * @param waitLockTime 分布式锁的超时时间ms
+     * @param type 反序列化类型
+     * @param <T> T
+     * @return T
+     */
+    public <T> T redisGetOrLoad(String key, LoadCallback<T> callback, long expiredTime, long waitLockTime,
+                                JavaType type) {
+        if (StringUtils.isBlank(key)) {
+            return callback.load();
+        }
+        T value = redisGetQuietly(key, type);
+        if (null != value) {
+            return value;
+        }
+        return getOrSetCoalesced(key + "_mutex", waitLockTime,
+                () -> redisGetQuietly(key, type),
+                callback::load,
+                loadValue -> redisSet(key, loadValue, expiredTime, TimeUnit.MILLISECONDS));
+    }
+
+    private <T> T redisGetQuietly(String key, JavaType type) {
+        try {
+            return decodeQuietly(key, rawGet(key), type);
+        } catch (Exception e) {
+            if (log.isInfoEnabled()) {
+                log.info("从redis取得数据失败:key={}", key, e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * get or set 提前刷新模式,存储的值携带加载耗时和逻辑过期时间
+     * 读取时按XFetch概率在逻辑过期前触发异步刷新,逻辑过期后的宽限时间内继续返回旧值并异步刷新,
+     * 缓存不存在时同redisGetOrSet同步加载
+     * </p>
+     * <span>注意：存储格式与redisGetOrSet不同，同一个key不能混用</span>
+     *
+     * @param key redis key
+     * @param callback 加载数据
+     * @param expiredTime key逻辑过期时间ms
+     * @param clazz T
+     * @param <T> T
+     * @return T
+     */
+    public <T> T redisGetOrRefresh(String key, LoadCallback<T> callback, long expiredTime, Class<? extends T> clazz) {
+        return redisGetOrRefresh(key, callback, expiredTime, GET_OR_SET_EXPIRED_TIME, clazz);
+    }
+
+    /**
+     * <p>
+     * get or set 提前刷新模式,存储的值携带加载耗时和逻辑过期时间
+     * 读取时按XFetch概率在逻辑过期前触发异步刷新,逻辑过期后的宽限时间内继续返回旧值并异步刷新,
+     * 缓存不存在时同redisGetOrSet同步加载
+     * </p>
+     * <span>注意：存储格式与redisGetOrSet不同，同一个key不能混用</span>
+     *
+     * @param key redis key
+     * @param callback 加载数据
+     * @param expiredTime key逻辑过期时间ms
+     * @param waitLockTime 分布式锁的超时时间ms
+     * @param clazz T
+     * @param <T> T
+     * @return T
+     */
+    public <T> T redisGetOrRefresh(String key, LoadCallback<T> callback, long expiredTime, long waitLockTime,
+                                   Class<? extends T> clazz) {
+        String keyMutex = key + "_refresh_mutex";
+        RefreshAheadValue<T> holder = redisGetRefreshAheadValue(key, clazz);
+        if (null != holder) {
+            if (refreshAhead.shouldRefresh(holder, System.currentTimeMillis())) {
+                refreshAhead.submit(key, () -> {
+                    Object lockValue = getAtomLock(keyMutex, Math.max(1, waitLockTime / 1000));
+                    if (StringUtils.isBlank(lockValue)) {
+                        //其他进程正在刷新
+                        return;
+                    }
+                    try {
+                        RefreshAheadValue<T> current = redisGetRefreshAheadValue(key, clazz);
+                        if (null != current && current.getExpireAt() > holder.getExpireAt()) {
+                            //已被其他进程刷新
+                            return;
+                        }
+                        writeRefreshAheadValue(key, loadRefreshAheadValue(callback, expiredTime, clazz), expiredTime);
+                    } finally {
+                        releaseLock(keyMutex, String.valueOf(lockValue));
+                    }
+                });
+            }
+            return holder.getValue();
+        }
+        RefreshAheadValue<T> loadValue = getOrSetCoalesced(keyMutex, waitLockTime,
+                () -> redisGetRefreshAheadValue(key, clazz),
+                () -> loadRefreshAheadValue(callback, expiredTime, clazz),
+                value -> writeRefreshAheadValue(key, value, expiredTime));
+        return null == loadValue ? null : loadValue.getValue();
+    }
+
+    private <T> RefreshAheadValue<T> redisGetRefreshAheadValue(String key, Class<? extends T> clazz) {
+        if (StringUtils.isBlank(key)) {
+            return null;
+        }
+        try {
+            return codecs.decode(rawGet(key), RedisValueCodecs.parametricType(RefreshAheadValue.class, clazz));
+        } catch (Exception e) {
+            if (log.isInfoEnabled()) {
+                log.info("从redis取得数据失败:key={}", key, e);
+            }
+            return null;
+        }
+    }
+
+    private <T> RefreshAheadValue<T> loadRefreshAheadValue(LoadCallback<T> callback, long expiredTime,
+                                                           Class<? extends T> clazz) {
+        long start = System.currentTimeMillis();
+        T value = loadOrNewInstance(callback, clazz);
+        long now = System.currentTimeMillis();
+        return new RefreshAheadValue<>(value, now - start, now + expiredTime);
+    }
+
+    private void writeRefreshAheadValue(String key, RefreshAheadValue<?> value, long expiredTime) {
+        redisSet(key, value, expiredTime + refreshAhead.getStaleGraceMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>
+     * 批量 get or set 防缓存击穿：一次MGET获取命中数据，未命中的key调用一次批量加载，并通过一次pipeline回写
+     * 同一JVM内的并发请求按key合并，leader线程通过一次pipeline批量竞争分布式锁，与redisGetOrSet共用锁key
+     * </p>
+     * <span>批量加载结果中不存在的key不会写入缓存，也不会出现在返回结果中</span>
+     *
+     * @param keys redis key集合
+     * @param callback 批量加载未命中的数据
+     * @param expiredTime key过期时间ms
+     * @param clazz T
+     * @param <T> T
+     * @return redis key -&gt; T，按keys的顺序排列
+     */
+    public <T> Map<String, T> redisMultiGetOrSet(Collection<String> keys, BulkLoadCallback<T> callback,
+                                                 long expiredTime, Class<? extends T> clazz) {
+        return redisMultiGetOrSet(keys, callback, expiredTime, GET_OR_SET_EXPIRED_TIME, clazz);
+    }
+
+    /**
+     * <p>
+     * 批量 get or set 防缓存击穿：一次MGET获取命中数据，未命中的key调用一次批量加载，并通过一次pipeline回写
+     * 同一JVM内的并发请求按key合并，leader线程通过一次pipeline批量竞争分布式锁，与redisGetOrSet共用锁key
+     * </p>
+     * <span>批量加载结果中不存在的key不会写入缓存，也不会出现在返回结果中</span>
+     *
+     * @param keys redis key集合
+     * @param callback 批量加载未命中的数据
+     * @param expiredTime key过期时间ms
+     * @param waitLockTime 分布式锁的超时时间ms
+     * @param clazz T
+     * @param <T> T
+     * @return redis key -&gt; T，按keys的顺序排列
+     */
+    public <T> Map<String, T> redisMultiGetOrSet(Collection<String> keys, BulkLoadCallback<T> callback,
+                                                 long expiredTime, long waitLockTime, Class<? extends T> clazz) {
+        return redisMultiGetOrSet(keys, callback, expiredTime, waitLockTime, RedisValueCodecs.type(clazz));
+    }
+
+    /**
+     * <p>
+     * 批量 get or set 防缓存击穿，同redisMultiGetOrSet，按JavaType反序列化，支持泛型类型
+     * </p>
+     *
+     * @param keys redis key集合
+     * @param callback 批量加载未命中的数据
+     * @param expiredTime key过期时间ms
+     * @param waitLockTime 分布式锁的超时时间ms
+     * @param type 反序列化类型
+     * @param <T> T
+     * @return redis key -&gt; T，按keys的顺序排列
+     */
+    public <T> Map<String, T> redisMultiGetOrSet(Collection<String> keys, BulkLoadCallback<T> callback,
+                                                 long expiredTime, long waitLockTime, JavaType type) {
+        if (CollectionUtil.isNullOrEmpty(keys)) {
+            return Collections.emptyMap();
+        }
+        List<String> keyList = keys.stream().filter(StringUtils::isNotBlank).distinct().collect(Collectors.toList());
+        Map<String, T> found = new HashMap<>(keyList.size());
+        List<String> misses = redisMultiGetInto(keyList, type, found);
+        if (!misses.isEmpty()) {
+            found.putAll(singleFlight.executeAll(misses, waitLockTime,
+                    ledKeys -> loadManyWithMutex(ledKeys, callback, expiredTime, waitLockTime, type),
+                    rereadKeys -> {
+                        Map<String, T> cached = new HashMap<>(rereadKeys.size());
+                        redisMultiGetInto(new ArrayList<>(rereadKeys), type, cached);
+                        return cached;
+                    },
+                    fallbackKeys -> loadMany(callback, fallbackKeys)));
+        }
+        Map<String, T> result = new LinkedHashMap<>(keyList.size());
+        for (String key : keyList) {
+            T value = found.get(key);
+            if (null != value) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 一次MGET读取并反序列化，命中的数据放入found
+     *
+     * @return 未命中的key
+     */
+    private <T> List<String> redisMultiGetInto(List<String> keys, JavaType type, Map<String, T> found) {
+        List<byte[]> values = null;
+        try {
+            values = rawMultiGet(keys);
+        } catch (Exception e) {
+            if (log.isInfoEnabled()) {
+                log.info("从redis批量取得数据失败:keys={}", keys, e);
+            }
+        }
+        List<String> misses = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            T value = values == null ? null : decodeQuietly(keys.get(i), values.get(i), type);
+            if (null == value) {
+                misses.add(keys.get(i));
+            } else {
+                found.put(keys.get(i), value);
+            }
+        }
+        return misses;
+    }
+
+    private <T> Map<String, T> loadManyWithMutex(Collection<String> keys, BulkLoadCallback<T> callback,
+                                                 long expiredTime, long waitLockTime, JavaType type) {
+        long lockSeconds = Math.max(1, waitLockTime / 1000);
+        long deadline = System.currentTimeMillis() + waitLockTime;
+        Map<String, T> result = new HashMap<>(keys.size());
+        List<String> pending = new ArrayList<>(keys);
+        while (true) {
+            String lockValue = UUID.randomUUID().toString();
+            List<String> locked = tryLockAll(pending, lockValue, lockSeconds);
+            if (!locked.isEmpty()) {
+                try {
+                    List<String> stillMissing = redisMultiGetInto(locked, type, result);
+                    if (!stillMissing.isEmpty()) {
+                        stillMissing.forEach(singleFlight::loading);
+                        Map<String, T> loaded = loadMany(callback, stillMissing);
+                        redisMultiSet(loaded, expiredTime);
+                        result.putAll(loaded);
+                    }
+                } finally {
+                    releaseLockAll(locked, lockValue);
                 }
-                redisSet(key, loadValue, expiredTime, TimeUnit.MILLISECONDS);
-            } catch (InstantiationException | IllegalAccessException e) {
-                log.error("redisGetOrSet异常: ", e);
-            } finally {
-                //可能失败
-                releaseLock(keyMutex, String.valueOf(lockValue));
+                pending.removeAll(locked);
             }
-            return loadValue;
-        } else {
-            //其他线程休息50毫秒后重试
+            if (pending.isEmpty()) {
+                return result;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                log.warn("redisMultiGetOrSet等待分布式锁超时,直接加载数据:keys={}", pending);
+                pending.forEach(singleFlight::loading);
+                result.putAll(loadMany(callback, pending));
+                return result;
+            }
+            //其他进程持有锁，休息后检查缓存
             try {
                 Thread.sleep(GET_OR_SET_SLEEP_TIME);
             } catch (InterruptedException e) {
-                log.info("redisGetOrSet等待中断", e);
+                log.info("redisMultiGetOrSet等待中断,直接加载数据:keys={}", pending, e);
+                pending.forEach(singleFlight::loading);
+                try {
+                    result.putAll(loadMany(callback, pending));
+                } finally {
+                    Thread.currentThread().interrupt();
+                }
+                return result;
+            }
+            pending = redisMultiGetInto(pending, type, result);
+            if (pending.isEmpty()) {
+                return result;
+            }
+        }
+    }
+
+    private static <T> Map<String, T> loadMany(BulkLoadCallback<T> callback, Collection<String> keys) {
+        Map<String, T> loaded = callback.load(keys);
+        if (null == loaded) {
+            return Collections.emptyMap();
+        }
+        Map<String, T> result = new HashMap<>(loaded.size());
+        loaded.forEach((key, value) -> {
+            if (null != key && null != value) {
+                result.put(key, value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 通过一次pipeline批量竞争key对应的get or set分布式锁
+     *
+     * @return 获取锁成功的key
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> tryLockAll(List<String> keys, String lockValue, long lockSeconds) {
+        List<String> locked = new ArrayList<>(keys.size());
+        try {
+            RedisSerializer serializer = redis.getKeySerializer();
+            byte[] value = lockValue.getBytes(StandardCharsets.UTF_8);
+            List<Object> results = redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    connection.set(serializer.serialize(key + "_mutex"), value,
+                            Expiration.seconds(lockSeconds), RedisStringCommands.SetOption.SET_IF_ABSENT);
+                }
+                return null;
+            });
+            for (int i = 0; i < keys.size(); i++) {
+                if (Boolean.TRUE.equals(results.get(i))) {
+                    locked.add(keys.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.error("批量获取锁失败:keys={}", keys, e);
+        }
+        return locked;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void releaseLockAll(List<String> keys, String lockValue) {
+        try {
+            RedisSerializer serializer = redis.getKeySerializer();
+            byte[] script = RELEASE_LOCK_SCRIPT.getBytes(StandardCharsets.UTF_8);
+            byte[] value = lockValue.getBytes(StandardCharsets.UTF_8);
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    connection.eval(script, ReturnType.BOOLEAN, 1, serializer.serialize(key + "_mutex"), value);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("批量释放锁失败:keys={}", keys, e);
+        }
+    }
+
+    /**
+     * 通过一次pipeline批量写入 SET key value PX expiredTime
+     *
+     * @param values key -&gt; value
+     * @param expiredTime key过期时间ms，小于等于0且未配置过期策略时不设置过期时间
+     */
+    @SuppressWarnings("unchecked")
+    public void redisMultiSet(Map<String, ?> values, long expiredTime) {
+        if (CollectionUtil.isNullOrEmpty(values)) {
+            return;
+        }
+        try {
+            RedisSerializer serializer = redis.getKeySerializer();
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                values.forEach((key, value) -> {
+                    byte[] raw = codecs.encode(key, value);
+                    byte[] rawKey = serializer.serialize(key);
+                    long ttl = expiryPolicies.ttlMillis(key, expiredTime);
+                    if (ttl <= 0) {
+                        connection.set(rawKey, raw);
+                    } else {
+                        connection.set(rawKey, raw, Expiration.milliseconds(ttl), RedisStringCommands.SetOption.UPSERT);
+                    }
+                });
+                return null;
+            });
+        } catch (Exception e) {
+            if (log.isInfoEnabled()) {
+                log.info("向redis批量存储数据失败:keys={}", values.keySet(), e);
             }
-            return redisGetOrSet(key, callback, expiredTime, waitLockTime, clazz);
+            return;
         }
+        values.keySet().forEach(this::evictNearCache);
     }
 
     /**
@@ -243,7 +694,13 @@ public class RedisUtils {
                 log.debug("开始向redis存储数据:key={},value={}", key, json);
             }
 
-            redis.opsForValue().set(key, json);
+            long ttl = expiryPolicies.ttlMillis(key, 0);
+            if (ttl > 0) {
+                redis.opsForValue().set(key, json, ttl, TimeUnit.MILLISECONDS);
+            } else {
+                redis.opsForValue().set(key, json);
+            }
+            evictNearCache(key);
 
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -272,7 +729,8 @@ public class RedisUtils {
                 log.debug("开始向redis存储数据:key={},value={},timeout={},unit={}", key, json, timeout, unit);
             }
 
-            redis.opsForValue().set(key, json, timeout, unit);
+            rawSet(key, json.getBytes(StandardCharsets.UTF_8), timeout, unit);
+            evictNearCache(key);
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("向redis存储数据失败:key={},value={},timeout={},unit={}", key, json, timeout, unit, e);
@@ -299,7 +757,8 @@ public class RedisUtils {
                 log.debug("开始向redis存储数据:key={},value={}", key, json);
             }
 
-            redis.opsForValue().set(key, JsonConvertUtils.objectToJson(json));
+            rawSet(key, encode(key, json, null), 0, null);
+            evictNearCache(key);
 
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -322,13 +781,27 @@ public class RedisUtils {
      * @param unit unit
      */
     public void redisSet(String key, Object json, long timeout, TimeUnit unit) {
+        redisSet(key, json, timeout, unit, null);
+    }
+
+    /**
+     * 存储信息，使用指定编解码器序列化
+     *
+     * @param key key
+     * @param json json
+     * @param timeout timeout
+     * @param unit unit
+     * @param codec 编解码器名称，为null时按key前缀选择
+     */
+    public void redisSet(String key, Object json, long timeout, TimeUnit unit, String codec) {
 
         try {
             if (log.isDebugEnabled()) {
                 log.debug("开始向redis存储数据:key={},value={},timeout={},unit={}", key, json, timeout, unit);
             }
 
-            redis.opsForValue().set(key, JsonConvertUtils.objectToJson(json), timeout, unit);
+            rawSet(key, encode(key, json, codec), timeout, unit);
+            evictNearCache(key);
 
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -357,7 +830,8 @@ public class RedisUtils {
                 log.debug("开始向redis存储数据:key={},hashKey={},value={}", key, hashKey, json);
             }
 
-            redis.opsForHash().put(key, hashKey, json);
+            rawHashSet(key, hashKey, json.getBytes(StandardCharsets.UTF_8), expiryPolicies.ttlMillis(key, 0));
+            evictNearCache(key);
 
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -380,13 +854,35 @@ public class RedisUtils {
      * @param json json
      */
     public void redisHashSet(String key, String hashKey, Object json) {
+        redisHashSet(key, hashKey, json, null);
+    }
+
+    /**
+     * hashSet，使用指定编解码器序列化
+     *
+     * @param key key
+     * @param hashKey hashKey
+     * @param json json
+     * @param codec 编解码器名称，为null时按key前缀选择
+     */
+    public void redisHashSet(String key, String hashKey, Object json, String codec) {
+        redisHashSet(key, hashKey, json, codec, 0);
+    }
+
+    /**
+     * hashSet，写入与过期时间在同一次pipeline中发送
+     *
+     * @param expiredTime key过期时间ms，小于等于0时按key前缀的过期策略
+     */
+    private void redisHashSet(String key, String hashKey, Object json, String codec, long expiredTime) {
 
         try {
             if (log.isDebugEnabled()) {
                 log.debug("开始向redis存储数据:key={},hashKey={},value={}", key, hashKey, json);
             }
 
-            redis.opsForHash().put(key, hashKey, JsonConvertUtils.objectToJson(json));
+            rawHashSet(key, hashKey, encode(key, json, codec), expiryPolicies.ttlMillis(key, expiredTime));
+            evictNearCache(key);
 
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -420,8 +916,10 @@ public class RedisUtils {
         }
 
         try {
-            BoundHashOperations<String, String, String> operations = redis.boundHashOps(key);
-            operations.putAll(map);
+            Map<byte[], byte[]> rawMap = new HashMap<>(map.size());
+            map.forEach((s, v) -> rawMap.put(rawHashKey(s), v.getBytes(StandardCharsets.UTF_8)));
+            rawHashPutAll(key, rawMap, expiryPolicies.ttlMillis(key, 0));
+            evictNearCache(key);
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据异常:key={},map={}", key, map, e);
@@ -454,16 +952,16 @@ public class RedisUtils {
         }
 
         try {
-            BoundHashOperations<String, String, String> operations = redis.boundHashOps(key);
-            Map<String, String> strMap = new HashMap<>(map.size());
+            Map<byte[], byte[]> rawMap = new HashMap<>(map.size());
             map.forEach((s, o) -> {
                 if (String.class.isAssignableFrom(o.getClass())) {
-                    strMap.put(s, String.valueOf(o));
+                    rawMap.put(rawHashKey(s), ((String) o).getBytes(StandardCharsets.UTF_8));
                 } else {
-                    strMap.put(s, JsonConvertUtils.objectToJson(o));
+                    rawMap.put(rawHashKey(s), codecs.encode(key, o));
                 }
             });
-            operations.putAll(strMap);
+            rawHashPutAll(key, rawMap, expiryPolicies.ttlMillis(key, 0));
+            evictNearCache(key);
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据异常:key={},map={}", key, map, e);
@@ -494,6 +992,7 @@ public class RedisUtils {
 
         try {
             result = redis.opsForHash().get(key, hashKey);
+            expiryPolicies.touch(key);
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据异常:key={},hashKey={}", key, hashKey, e);
@@ -523,7 +1022,7 @@ public class RedisUtils {
 
     /**
      * <p>
-     * get or set 防缓存击穿 hash,如果释放锁时恰好redis异常 导致锁释放失败,可能引起StackOverFlow
+     * get or set 防缓存击穿 hash,同一JVM内的并发请求合并为一次加载,仅由leader线程竞争分布式锁
      * </p>
      *
      * @param key redis key
@@ -540,7 +1039,7 @@ public class RedisUtils {
 
     /**
      * <p>
-     * get or set 防缓存击穿 hash,如果释放锁时恰好redis异常 导致锁释放失败,可能引起StackOverFlow
+     * get or set 防缓存击穿 hash,同一JVM内的并发请求合并为一次加载,仅由leader线程竞争分布式锁
      * </p>
      *
      * @param key redis key
@@ -554,43 +1053,14 @@ public class RedisUtils {
      */
     public <T> T redisHashGetOrSet(String key, String hashKey, LoadCallback<T> callback, long expiredTime,
                                    long waitLockTime, Class<? extends T> clazz) {
-        T value = redisHashGetWithInstance(key, hashKey, clazz);
-        if (null != value) {
-            return value;
-        }
-        String keyMutex = key + hashKey + "_hash_mutex";
-        Object lockValue = getAtomLock(keyMutex, waitLockTime / 1000);
-        if (!StringUtils.isBlank(lockValue)) {
-            //获取锁成功
-            T loadValue = null;
-            try {
-                T checkValue = redisHashGetWithInstance(key, hashKey, clazz);
-                if (null != checkValue) {
-                    return checkValue;
-                }
-                loadValue = callback.load();
-                if (null == loadValue) {
-                    loadValue = clazz.newInstance();
-                }
-                redisHashSet(key, hashKey, loadValue);
-                setExpire(key, expiredTime, TimeUnit.MILLISECONDS);
-            } catch (InstantiationException | IllegalAccessException e) {
-                log.error("redisHashGetOrSet异常: ", e);
-            } finally {
-                //可能失败
-                releaseLock(keyMutex, String.valueOf(lockValue));
-            }
-
-            return loadValue;
-        } else {
-            //其他线程休息50毫秒后重试
-            try {
-                Thread.sleep(GET_OR_SET_SLEEP_TIME);
-            } catch (InterruptedException e) {
-                log.info("redisGetOrSet等待中断", e);
-            }
-            return redisHashGetOrSet(key, hashKey, callback, expiredTime, waitLockTime, clazz);
+        T value = redisHashGetWithInstance(key, hashKey, clazz);
+        if (null != value) {
+            return value;
         }
+        return getOrSetCoalesced(key + hashKey + "_hash_mutex", waitLockTime,
+                () -> redisHashGetWithInstance(key, hashKey, clazz),
+                () -> loadOrNewInstance(callback, clazz),
+                loadValue -> redisHashSet(key, hashKey, loadValue, null, expiredTime));
     }
 
     /**
@@ -612,15 +1082,26 @@ public class RedisUtils {
             return null;
         }
 
+        RedisNearCache nearCache = localCacheFor(key);
+        boolean nearCacheable = nearCache != null;
+        long generation = 0;
+        if (nearCacheable) {
+            generation = nearCache.generation(key);
+            T cached = nearCache.get(key, hashKey, clazz);
+            if (cached != null) {
+                recordAccess(key, 0);
+                return cached;
+            }
+        }
+
         T result = null;
 
         try {
-            Object resultStr = redis.opsForHash().get(key, hashKey);
+            result = codecs.decode(rawHashGet(key, hashKey), RedisValueCodecs.type(clazz));
             //如果为空,直接返回null
-            if (resultStr == null || StringUtils.isBlank(resultStr + "")) {
+            if (null == result) {
                 return null;
             }
-            result = JsonConvertUtils.json2Object(resultStr, clazz);
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据失败:key={},hashKey={}", key, hashKey, e);
@@ -628,6 +1109,10 @@ public class RedisUtils {
             return null;
         }
 
+        if (nearCacheable) {
+            nearCache.put(key, hashKey, clazz, result, generation);
+        }
+
         if (log.isDebugEnabled()) {
             log.debug("从redis取得数据并封成对象结束:key={},hashKey={},result={}", key, hashKey, result);
         }
@@ -644,7 +1129,7 @@ public class RedisUtils {
      * @param hashKeys hashKey集合,不能为空
      * @param clazz T
      * @param <T> t
-     * @return T集合，数据不存在时返回<code>null</code>
+     * @return T集合，过滤不存在的field，需要与hashKeys一一对应时使用redisHashMultiGetAligned，数据不存在时返回<code>null</code>
      */
     @SuppressWarnings("unchecked")
     public <T> List<T> redisHashMultiGetWithInstance(String key, List<String> hashKeys, Class<? extends T> clazz) {
@@ -660,18 +1145,22 @@ public class RedisUtils {
         List<T> result;
 
         try {
-            BoundHashOperations<String, String, String> operations = redis.boundHashOps(key);
-            List<String> ts = operations.multiGet(hashKeys);
+            List<byte[]> ts = rawHashMultiGet(key, hashKeys);
             //如果为空,直接返回null
             if (CollectionUtil.isNullOrEmpty(ts)) {
                 return null;
             }
             //只过滤null
-            List<String> nonNullResult = ts.stream().filter(Objects::nonNull).collect(Collectors.toList());
-            if (CollectionUtil.isNullOrEmpty(nonNullResult)) {
+            JavaType type = RedisValueCodecs.type(clazz);
+            result = new ArrayList<>(ts.size());
+            for (byte[] raw : ts) {
+                if (null != raw) {
+                    result.add((T) codecs.decode(raw, type));
+                }
+            }
+            if (CollectionUtil.isNullOrEmpty(result)) {
                 return null;
             }
-            result = (List<T>) JsonConvertUtils.jsonToList(nonNullResult.toString(), clazz);
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据异常:key={},hashKeys={}", key, hashKeys, e);
@@ -686,9 +1175,41 @@ public class RedisUtils {
         return result;
     }
 
+    /**
+     * <p>
+     * 批量获取hash，结果与hashKeys一一对应
+     * </p>
+     * <li>每个field直接从byte[]反序列化，不存在或反序列化失败的位置为null</li>
+     * <li>结果数不小于spring.redis.helper.codec.parallel-decode-threshold时并行反序列化</li>
+     *
+     * @param key key
+     * @param hashKeys hashKey集合,不能为空
+     * @param clazz T
+     * @param <T> t
+     * @return 与hashKeys等长的集合，读取异常时返回<code>null</code>
+     */
+    public <T> List<T> redisHashMultiGetAligned(String key, List<String> hashKeys, Class<? extends T> clazz) {
+        if (CollectionUtil.isNullOrEmpty(hashKeys)) {
+            return null;
+        }
+        List<byte[]> raws;
+        try {
+            raws = rawHashMultiGet(key, hashKeys);
+        } catch (Exception e) {
+            if (log.isInfoEnabled()) {
+                log.info("从redis取得数据异常:key={},hashKeys={}", key, hashKeys, e);
+            }
+            return null;
+        }
+        if (null == raws) {
+            return null;
+        }
+        return decodeAll(key, hashKeys, raws, RedisValueCodecs.type(clazz));
+    }
+
     /**
      * http://doc.redisfans.com/key/scan.html
-     * 通过scan命令获取匹配的key集合
+     * 通过scan命令获取匹配的key集合，结果全部加载到内存，key数量较多时使用RedisScanTemplate流式迭代
      * @param pattern 匹配规则
      * @return asd
      */
@@ -701,12 +1222,13 @@ public class RedisUtils {
 
                 Cursor<byte[]> cursor = connection.scan(
                         new ScanOptions.ScanOptionsBuilder()
-                                .match(pattern)
+                                .match(scanPattern(pattern))
                                 .count(SCAN_LIMIT_SIZE)
                                 .build()
                 );
+                RedisSerializer<?> keySerializer = redis.getKeySerializer();
                 while (cursor.hasNext()) {
-                    keys.add(new String(cursor.next()));
+                    keys.add((String) keySerializer.deserialize(cursor.next()));
                 }
                 //无需cursor.close(); execute finally会执行RedisConnectionUtils.releaseConnection
                 return keys;
@@ -716,7 +1238,7 @@ public class RedisUtils {
 
     /**
      * http://doc.redisfans.com/key/scan.html
-     * 通过HSCAN命令迭代哈希键中的keys
+     * 通过HSCAN命令迭代哈希键中的keys，field数量较多时使用RedisScanTemplate.hscan流式迭代
      * @param hashKey hashKey
      * @param matchPattern matchPattern
      * @return ad
@@ -758,28 +1280,35 @@ public class RedisUtils {
         if (StringUtils.isNullOrEmpty(key)) {
             return null;
         }
-        Map<String, T> all;
+        Map<byte[], byte[]> result;
         try {
-            RedisSerializer keySerializer = redis.getKeySerializer();
-            all = redis.execute((RedisCallback<Map<String, T>>) con -> {
-                Map<byte[], byte[]> result = con.hGetAll(keySerializer.serialize(key));
-                if (CollectionUtil.isNullOrEmpty(result)) {
-                    return null;
-                }
-
-                Map<String, T> ans = new HashMap<>(result.size());
-                for (Map.Entry<byte[], byte[]> entry : result.entrySet()) {
-                    T t = JsonConvertUtils.jsonToObject(new String(entry.getValue()), clazz);
-                    ans.put(new String(entry.getKey()), t);
-                }
-                return ans;
-            });
+            byte[] rawKey = rawKey(key);
+            result = redis.execute((RedisCallback<Map<byte[], byte[]>>) con -> con.hGetAll(rawKey));
+            expiryPolicies.touch(key);
+            if (hotKeyDetector != null) {
+                recordAccess(key, null == result ? 0 : totalBytes(result.values()));
+            }
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据异常:key={}", key, e);
             }
             return null;
         }
+        if (CollectionUtil.isNullOrEmpty(result)) {
+            return null;
+        }
+        //连接释放后再反序列化
+        List<String> hashKeys = new ArrayList<>(result.size());
+        List<byte[]> raws = new ArrayList<>(result.size());
+        for (Map.Entry<byte[], byte[]> entry : result.entrySet()) {
+            hashKeys.add(new String(entry.getKey(), StandardCharsets.UTF_8));
+            raws.add(entry.getValue());
+        }
+        List<T> values = decodeAll(key, hashKeys, raws, RedisValueCodecs.type(clazz));
+        Map<String, T> all = new HashMap<>(result.size());
+        for (int i = 0; i < hashKeys.size(); i++) {
+            all.put(hashKeys.get(i), values.get(i));
+        }
         if (log.isDebugEnabled()) {
             log.debug("从redis取得数据并封成对象结束:key={},result={}", key, all);
         }
@@ -803,6 +1332,7 @@ public class RedisUtils {
             flag = redis.opsForHash().get(key, hashKey) != null ? true : false;
             if (flag) {
                 redis.opsForHash().delete(key, hashKey);
+                evictNearCache(key);
             }
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -832,6 +1362,7 @@ public class RedisUtils {
 
         try {
             redis.opsForValue().append(key, json);
+            evictNearCache(key);
 
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -860,6 +1391,7 @@ public class RedisUtils {
             flag = redis.opsForValue().get(key) != null ? true : false;
             if (flag) {
                 redis.delete(key);
+                evictNearCache(key);
             }
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -887,6 +1419,7 @@ public class RedisUtils {
 
         try {
             redis.delete(key);
+            evictNearCache(key);
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis删除数据异常:key={}", key, e);
@@ -917,11 +1450,7 @@ public class RedisUtils {
         List<T> result = null;
 
         try {
-            String resultstr = redis.opsForValue().get(key);
-            if (StringUtils.isBlank(resultstr)) {
-                return null;
-            }
-            result = JsonConvertUtils.jsonToList(resultstr, clazz);
+            result = codecs.decode(rawGet(key), RedisValueCodecs.listType(clazz));
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据失败:key={}", key, e);
@@ -939,7 +1468,7 @@ public class RedisUtils {
 
     /**
      * <p>
-     * get or set 防缓存击穿,如果释放锁时恰好redis异常 导致锁释放失败,可能引起StackOverFlow
+     * get or set 防缓存击穿,同一JVM内的并发请求合并为一次加载,仅由leader线程竞争分布式锁
      * </p>
      *
      * @param key redis key
@@ -956,7 +1485,7 @@ public class RedisUtils {
 
     /**
      * <p>
-     * get or set 防缓存击穿,如果释放锁时恰好redis异常 导致锁释放失败,可能引起StackOverFlow
+     * get or set 防缓存击穿,同一JVM内的并发请求合并为一次加载,仅由leader线程竞争分布式锁
      * </p>
      *
      * @param key redis key
@@ -974,35 +1503,10 @@ public class RedisUtils {
         if (null != values) {
             return values;
         }
-        String keyMutex = key + "_mutex_list";
-        Object lockValue = getAtomLock(keyMutex, waitLockTime / 1000);
-        if (!StringUtils.isBlank(lockValue)) {
-            //获取锁成功
-            List<T> loadValue;
-            try {
-                List<T> checkValue = (List<T>) redisGetToList(key, clazz);
-                if (null != checkValue) {
-                    return checkValue;
-                }
-                loadValue = callback.load();
-                if (null == loadValue) {
-                    loadValue = Collections.emptyList();
-                }
-                redisSet(key, loadValue, expiredTime, TimeUnit.MILLISECONDS);
-            } finally {
-                //可能失败
-                releaseLock(keyMutex, String.valueOf(lockValue));
-            }
-            return loadValue;
-        } else {
-            //其他线程休息50毫秒后重试
-            try {
-                Thread.sleep(GET_OR_SET_SLEEP_TIME);
-            } catch (InterruptedException e) {
-                log.info("redisGetOrSet等待中断", e);
-            }
-            return redisGetOrSetList(key, callback, expiredTime, waitLockTime, clazz);
-        }
+        return getOrSetCoalesced(key + "_mutex_list", waitLockTime,
+                () -> (List<T>) redisGetToList(key, clazz),
+                () -> loadOrEmptyList(callback),
+                loadValue -> redisSet(key, loadValue, expiredTime, TimeUnit.MILLISECONDS));
     }
 
     /**
@@ -1027,12 +1531,7 @@ public class RedisUtils {
         List<T> result = null;
 
         try {
-            Object resultobj = redis.opsForHash().get(key, hashKey);
-            //如果为空,直接返回null
-            if (StringUtils.isBlank(resultobj)) {
-                return null;
-            }
-            result = JsonConvertUtils.jsonToList(resultobj + "", clazz);
+            result = codecs.decode(rawHashGet(key, hashKey), RedisValueCodecs.listType(clazz));
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
                 log.info("从redis取得数据失败:key={},hashKey={}", key, hashKey, e);
@@ -1049,7 +1548,7 @@ public class RedisUtils {
 
     /**
      * <p>
-     * get or set 防缓存击穿 hash,如果释放锁时恰好redis异常 导致锁释放失败,可能引起StackOverFlow
+     * get or set 防缓存击穿 hash,同一JVM内的并发请求合并为一次加载,仅由leader线程竞争分布式锁
      * </p>
      *
      * @param key redis key
@@ -1067,7 +1566,7 @@ public class RedisUtils {
 
     /**
      * <p>
-     * get or set 防缓存击穿 hash,如果释放锁时恰好redis异常 导致锁释放失败,可能引起StackOverFlow
+     * get or set 防缓存击穿 hash,同一JVM内的并发请求合并为一次加载,仅由leader线程竞争分布式锁
      * </p>
      *
      * @param key redis key
@@ -1086,39 +1585,106 @@ public class RedisUtils {
         if (null != values) {
             return values;
         }
-        String keyMutex = key + hashKey + "_hash_mutex_list";
-        Object lockValue = getAtomLock(keyMutex, waitLockTime / 1000);
-        if (!StringUtils.isBlank(lockValue)) {
-            //获取锁成功
-            List<T> loadValue;
-            try {
-                List<T> checkValue = (List<T>) redisHashGetToList(key, hashKey, clazz);
-                if (null != checkValue) {
-                    return checkValue;
-                }
-                loadValue = callback.load();
-                if (null == loadValue) {
-                    loadValue = Collections.emptyList();
+        return getOrSetCoalesced(key + hashKey + "_hash_mutex_list", waitLockTime,
+                () -> (List<T>) redisHashGetToList(key, hashKey, clazz),
+                () -> loadOrEmptyList(callback),
+                loadValue -> redisHashSet(key, hashKey, loadValue, null, expiredTime));
+    }
+
+    /**
+     * get or set 未命中时的加载流程
+     * <li>同一JVM内同一个keyMutex只有一个leader线程执行加载，其余线程等待leader获取锁最长waitLockTime，leader开始加载后再等待最长waitLockTime</li>
+     * <li>leader线程竞争分布式锁，抢到锁后二次检查缓存、加载并回写；未抢到锁则轮询缓存直到waitLockTime</li>
+     * <li>leader等待分布式锁超时后直接调用加载逻辑兜底，不回写缓存；其余线程等待超时时重新读取缓存，仍未命中时同样直接加载兜底</li>
+     * <li>leader失败时其余线程重新读取缓存，仍未命中时抛出leader的异常</li>
+     *
+     * @param keyMutex 分布式锁key，同时作为JVM内请求合并的key
+     * @param waitLockTime 分布式锁的超时时间ms，同时作为最长等待时间
+     * @param cacheReader 读取缓存
+     * @param loader 加载数据
+     * @param writer 回写缓存
+     * @param <T> T
+     * @return T
+     */
+    private <T> T getOrSetCoalesced(String keyMutex, long waitLockTime, Supplier<T> cacheReader,
+                                    Supplier<T> loader, Consumer<T> writer) {
+        return singleFlight.execute(keyMutex, waitLockTime,
+                () -> loadWithMutex(keyMutex, waitLockTime, cacheReader, loader, writer), cacheReader, loader);
+    }
+
+    private <T> T loadWithMutex(String keyMutex, long waitLockTime, Supplier<T> cacheReader,
+                                Supplier<T> loader, Consumer<T> writer) {
+        long lockSeconds = Math.max(1, waitLockTime / 1000);
+        long deadline = System.currentTimeMillis() + waitLockTime;
+        while (true) {
+            Object lockValue = getAtomLock(keyMutex, lockSeconds);
+            if (!StringUtils.isBlank(lockValue)) {
+                //获取锁成功
+                try {
+                    T checkValue = cacheReader.get();
+                    if (null != checkValue) {
+                        return checkValue;
+                    }
+                    singleFlight.loading(keyMutex);
+                    T loadValue = loader.get();
+                    if (null != loadValue) {
+                        writer.accept(loadValue);
+                    }
+                    return loadValue;
+                } finally {
+                    //可能失败
+                    releaseLock(keyMutex, String.valueOf(lockValue));
                 }
-                redisHashSet(key, hashKey, loadValue);
-                setExpire(key, expiredTime, TimeUnit.MILLISECONDS);
-            } finally {
-                //可能失败
-                releaseLock(keyMutex, String.valueOf(lockValue));
             }
-            return loadValue;
-        } else {
-            //其他线程休息50毫秒后重试
+            if (System.currentTimeMillis() >= deadline) {
+                log.warn("redisGetOrSet等待分布式锁超时,直接加载数据:key={}", keyMutex);
+                singleFlight.loading(keyMutex);
+                return loader.get();
+            }
+            //其他进程持有锁，休息后检查缓存
             try {
-                //可能失败
                 Thread.sleep(GET_OR_SET_SLEEP_TIME);
             } catch (InterruptedException e) {
-                log.info("redisGetOrSet等待中断", e);
+                log.info("redisGetOrSet等待中断,直接加载数据:key={}", keyMutex, e);
+                singleFlight.loading(keyMutex);
+                try {
+                    return loader.get();
+                } finally {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            T value = cacheReader.get();
+            if (null != value) {
+                return value;
             }
-            return redisHashGetOrSetList(key, hashKey, callback, expiredTime, waitLockTime, clazz);
         }
     }
 
+    private static <T> T loadOrNewInstance(LoadCallback<T> callback, Class<? extends T> clazz) {
+        T loadValue = callback.load();
+        if (null != loadValue) {
+            return loadValue;
+        }
+        try {
+            return clazz.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            log.error("redisGetOrSet异常: ", e);
+            return null;
+        }
+    }
+
+    private static <T> List<T> loadOrEmptyList(LoadCallback<List<T>> callback) {
+        List<T> loadValue = callback.load();
+        return null == loadValue ? Collections.emptyList() : loadValue;
+    }
+
+    /**
+     * @return get or set 方法JVM内请求合并统计
+     */
+    public RedisSingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
     /**
      * @return the redisPrefix
      */
@@ -1133,6 +1699,281 @@ public class RedisUtils {
         this.redisPrefix = redisPrefix;
     }
 
+    /**
+     * @param refreshAhead get or set 提前刷新
+     */
+    public void setRefreshAhead(RedisRefreshAhead refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    public RedisRefreshAhead getRefreshAhead() {
+        return refreshAhead;
+    }
+
+    /**
+     * @param nearCache 本地近端缓存，传null关闭
+     */
+    public void setNearCache(RedisNearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    /**
+     * @param codecs value编解码器
+     */
+    public void setCodecs(RedisValueCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    public RedisValueCodecs getCodecs() {
+        return codecs;
+    }
+
+    /**
+     * @param locks 基于发布订阅的分布式锁
+     */
+    public void setLocks(RedisLocks locks) {
+        this.locks = locks;
+    }
+
+    /**
+     * @param parallelDecodeThreshold hash批量读取的结果数不小于该值时并行反序列化，0不并行
+     */
+    public void setParallelDecodeThreshold(int parallelDecodeThreshold) {
+        this.parallelDecodeThreshold = parallelDecodeThreshold;
+    }
+
+    /**
+     * @param expiryPolicies 按key前缀的过期策略
+     */
+    public void setExpiryPolicies(RedisExpiryPolicies expiryPolicies) {
+        this.expiryPolicies = expiryPolicies;
+    }
+
+    /**
+     * @param hotKeyDetector 热key、大key探测，传null关闭
+     */
+    public void setHotKeyDetector(RedisHotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    /**
+     * 失效本节点的本地缓存，并通过发布订阅通知其他节点失效
+     *
+     * @param key key
+     */
+    private void evictNearCache(String key) {
+        RedisHotKeyDetector hotKeyDetector = this.hotKeyDetector;
+        if (hotKeyDetector != null) {
+            hotKeyDetector.invalidate(key);
+        }
+        RedisNearCache nearCache = this.nearCache;
+        if (nearCache == null || !nearCache.isCacheable(key)) {
+            return;
+        }
+        nearCache.invalidate(key);
+        publisher(nearCache.getInvalidateChannel(), key);
+    }
+
+    /**
+     * @return 配置的近端缓存匹配key时为近端缓存，否则key为热key时为热key本地缓存，都不匹配时为null
+     */
+    private RedisNearCache localCacheFor(String key) {
+        RedisNearCache nearCache = this.nearCache;
+        if (nearCache != null && nearCache.isCacheable(key)) {
+            return nearCache;
+        }
+        RedisHotKeyDetector hotKeyDetector = this.hotKeyDetector;
+        return hotKeyDetector == null ? null : hotKeyDetector.localCacheFor(key);
+    }
+
+    /**
+     * 热key、大key探测记录一次读写
+     */
+    private void recordAccess(String key, int bytes) {
+        RedisHotKeyDetector hotKeyDetector = this.hotKeyDetector;
+        if (hotKeyDetector != null) {
+            hotKeyDetector.record(key, bytes);
+        }
+    }
+
+    private byte[] encode(String key, Object value, String codec) {
+        return null == codec ? codecs.encode(key, value) : codecs.encode(key, codecs.getCodec(codec), value);
+    }
+
+    private <T> T decodeQuietly(String key, byte[] raw, JavaType type) {
+        try {
+            return codecs.decode(raw, type);
+        } catch (Exception e) {
+            if (log.isInfoEnabled()) {
+                log.info("redis数据反序列化失败:key={}", key, e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 逐个反序列化hash field，保持位置对应，结果数较多时并行
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> decodeAll(String key, List<String> hashKeys, List<byte[]> raws, JavaType type) {
+        Object[] decoded = new Object[raws.size()];
+        IntStream indexes = IntStream.range(0, raws.size());
+        if (parallelDecodeThreshold > 0 && raws.size() >= parallelDecodeThreshold) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            byte[] raw = raws.get(i);
+            if (null != raw) {
+                decoded[i] = decodeQuietly(key + "." + hashKeys.get(i), raw, type);
+            }
+        });
+        return (List<T>) new ArrayList<>(Arrays.asList(decoded));
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String key) {
+        return ((RedisSerializer<String>) redis.getKeySerializer()).serialize(key);
+    }
+
+    /**
+     * 开启key命名空间时匹配规则加上前缀
+     */
+    private String scanPattern(String pattern) {
+        RedisSerializer<?> keySerializer = redis.getKeySerializer();
+        return keySerializer instanceof PrefixedKeySerializer
+                ? ((PrefixedKeySerializer) keySerializer).toPattern(pattern) : pattern;
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawHashKey(String hashKey) {
+        return ((RedisSerializer<String>) redis.getHashKeySerializer()).serialize(hashKey);
+    }
+
+    private byte[] rawGet(String key) {
+        byte[] rawKey = rawKey(key);
+        byte[] value = redis.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        expiryPolicies.touch(key);
+        recordAccess(key, null == value ? 0 : value.length);
+        return value;
+    }
+
+    private List<byte[]> rawMultiGet(List<String> keys) {
+        byte[][] rawKeys = keys.stream().map(this::rawKey).toArray(byte[][]::new);
+        List<byte[]> values = redis.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(rawKeys));
+        expiryPolicies.touch(keys);
+        if (hotKeyDetector != null && null != values) {
+            for (int i = 0; i < keys.size() && i < values.size(); i++) {
+                byte[] value = values.get(i);
+                recordAccess(keys.get(i), null == value ? 0 : value.length);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 按key前缀的过期策略调整过期时间后写入
+     *
+     * @param unit 为null时未指定过期时间
+     */
+    private void rawSet(String key, byte[] value, long timeout, TimeUnit unit) {
+        byte[] rawKey = rawKey(key);
+        long ttl = expiryPolicies.ttlMillis(key, null == unit ? 0 : unit.toMillis(timeout));
+        recordAccess(key, value.length);
+        redis.execute((RedisCallback<Boolean>) connection -> ttl <= 0
+                ? connection.set(rawKey, value)
+                : connection.set(rawKey, value, Expiration.milliseconds(ttl), RedisStringCommands.SetOption.UPSERT));
+    }
+
+    private byte[] rawHashGet(String key, String hashKey) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawHashKey = rawHashKey(hashKey);
+        byte[] value = redis.execute((RedisCallback<byte[]>) connection -> connection.hGet(rawKey, rawHashKey));
+        expiryPolicies.touch(key);
+        recordAccess(key, null == value ? 0 : value.length);
+        return value;
+    }
+
+    private List<byte[]> rawHashMultiGet(String key, List<String> hashKeys) {
+        byte[] rawKey = rawKey(key);
+        byte[][] rawHashKeys = hashKeys.stream().map(this::rawHashKey).toArray(byte[][]::new);
+        List<byte[]> values = redis.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.hMGet(rawKey, rawHashKeys));
+        expiryPolicies.touch(key);
+        if (hotKeyDetector != null) {
+            recordAccess(key, totalBytes(values));
+        }
+        return values;
+    }
+
+    /**
+     * HSET与PEXPIRE在同一次pipeline中发送，不会出现写入成功但过期时间未设置的间隙
+     *
+     * @param ttl 过期时间ms，小于等于0时不设置
+     */
+    private void rawHashSet(String key, String hashKey, byte[] value, long ttl) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawHashKey = rawHashKey(hashKey);
+        redis.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hSet(rawKey, rawHashKey, value);
+            if (ttl > 0) {
+                connection.pExpire(rawKey, ttl);
+            }
+            return null;
+        });
+        recordAccess(key, value.length);
+    }
+
+    /**
+     * HMSET与PEXPIRE在同一次pipeline中发送
+     *
+     * @param ttl 过期时间ms，小于等于0时不设置
+     */
+    private void rawHashPutAll(String key, Map<byte[], byte[]> values, long ttl) {
+        byte[] rawKey = rawKey(key);
+        redis.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hMSet(rawKey, values);
+            if (ttl > 0) {
+                connection.pExpire(rawKey, ttl);
+            }
+            return null;
+        });
+        if (hotKeyDetector != null) {
+            recordAccess(key, totalBytes(values.values()));
+        }
+    }
+
+    private static int totalBytes(Collection<byte[]> values) {
+        int total = 0;
+        if (null != values) {
+            for (byte[] value : values) {
+                total += null == value ? 0 : value.length;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * RedisAtomicLong使用的模板，与redis共用key序列化器，开启命名空间时同样加前缀
+     */
+    @SuppressWarnings("unchecked")
+    private RedisTemplate<String, Long> atomicLongTemplate() {
+        RedisTemplate<String, Long> template = atomicLongTemplate;
+        if (null == template) {
+            synchronized (this) {
+                template = atomicLongTemplate;
+                if (null == template) {
+                    template = new RedisTemplate<>();
+                    template.setConnectionFactory(redis.getConnectionFactory());
+                    template.setKeySerializer((RedisSerializer<String>) redis.getKeySerializer());
+                    template.setValueSerializer(new GenericToStringSerializer<>(Long.class));
+                    template.afterPropertiesSet();
+                    atomicLongTemplate = template;
+                }
+            }
+        }
+        return template;
+    }
+
     public void setExpire(String key, long timeout, TimeUnit unit) {
         redis.expire(key, timeout, unit);
     }
@@ -1153,7 +1994,7 @@ public class RedisUtils {
         }
         Long increment;
         try {
-            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, redis.getConnectionFactory());
+            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, atomicLongTemplate());
             increment = redisAtomicLong.incrementAndGet();
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -1186,7 +2027,7 @@ public class RedisUtils {
         }
         Long increment;
         try {
-            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, redis.getConnectionFactory());
+            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, atomicLongTemplate());
             redisAtomicLong.expire(timeout, unit);
             increment = redisAtomicLong.incrementAndGet();
         } catch (Exception e) {
@@ -1219,7 +2060,7 @@ public class RedisUtils {
         }
         Long increment;
         try {
-            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, redis.getConnectionFactory(), value);
+            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, atomicLongTemplate(), value);
             increment = redisAtomicLong.incrementAndGet();
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -1252,7 +2093,7 @@ public class RedisUtils {
         }
         Long increment;
         try {
-            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, redis.getConnectionFactory(), value);
+            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, atomicLongTemplate(), value);
             redisAtomicLong.expire(timeout, unit);
             increment = redisAtomicLong.incrementAndGet();
         } catch (Exception e) {
@@ -1284,7 +2125,7 @@ public class RedisUtils {
         }
         Long dncrement;
         try {
-            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, redis.getConnectionFactory());
+            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, atomicLongTemplate());
             dncrement = redisAtomicLong.decrementAndGet();
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -1316,7 +2157,7 @@ public class RedisUtils {
         }
         Long dncrement;
         try {
-            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, redis.getConnectionFactory());
+            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, atomicLongTemplate());
             redisAtomicLong.expire(timeout, unit);
             dncrement = redisAtomicLong.decrementAndGet();
         } catch (Exception e) {
@@ -1350,7 +2191,7 @@ public class RedisUtils {
         }
         Long dncrement;
         try {
-            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, redis.getConnectionFactory(), value);
+            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, atomicLongTemplate(), value);
             redisAtomicLong.expire(timeout, unit);
             dncrement = redisAtomicLong.decrementAndGet();
         } catch (Exception e) {
@@ -1383,7 +2224,7 @@ public class RedisUtils {
         }
         Long num;
         try {
-            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, redis.getConnectionFactory());
+            RedisAtomicLong redisAtomicLong = new RedisAtomicLong(key, atomicLongTemplate());
             num = redisAtomicLong.get();
         } catch (Exception e) {
             if (log.isInfoEnabled()) {
@@ -1593,6 +2434,7 @@ public class RedisUtils {
 
     /**
      * 获取计数信号量，用于处理限制并发访问同一资源的客户端数量
+     * 所有调用方共用一把全局锁，高并发场景请使用{@link fun.gangwan.data.redis.support.RedisRateLimiter}
      *
      * @param key key
      * @param limit 允许并发访问总量
@@ -1654,6 +2496,7 @@ public class RedisUtils {
                 return true;
             }
         });
+        evictNearCache(key);
         return false;
     }
 
@@ -1677,7 +2520,8 @@ public class RedisUtils {
     }
 
     /**
-     * redisFireWall
+     * redisFireWall，通过SET NX原子判断，key已存在时返回true
+     * 按频率限流请使用{@link fun.gangwan.data.redis.support.RedisRateLimiter}
      *
      * @param key key
      * @param timeout 超时时间
@@ -1685,13 +2529,19 @@ public class RedisUtils {
      * @return bool
      */
     public boolean redisFireWall(String key, long timeout, TimeUnit unit) {
-        String value = redisGet(key);
-        if (StringUtils.isNotBlank(value)) {
+        try {
+            Boolean absent = redis.opsForValue().setIfAbsent(key, "1", timeout, unit);
+            if (Boolean.TRUE.equals(absent)) {
+                evictNearCache(key);
+                return false;
+            }
             return true;
-        } else {
-            redisSet(key, "1", timeout, unit);
+        } catch (Exception e) {
+            if (log.isInfoEnabled()) {
+                log.info("redisFireWall执行失败:key={}", key, e);
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -1722,7 +2572,8 @@ public class RedisUtils {
     }
 
     /**
-     * 分布式锁，可能引起cpu升高
+     * 分布式锁，锁被占用时订阅锁释放消息等待；未配置RedisLocks时轮询，可能引起cpu升高
+     * <span>每次加锁的值不同，不可重入；同一线程嵌套加锁使用RedisLocks.getReentrantLock</span>
      *
      * @param key 锁key
      * @param timeoutSeconds 超时时间，单位s
@@ -1734,6 +2585,10 @@ public class RedisUtils {
             waitTime = DEFAULT_WAIT_TIME;
         }
         long waitTimeSecond = waitTime * 1000;
+        RedisLocks locks = this.locks;
+        if (null != locks) {
+            return locks.lock(key, timeoutSeconds * 1000, waitTimeSecond);
+        }
         Random random = new Random();
         long startTime = System.currentTimeMillis();
         while (System.currentTimeMillis() - startTime < waitTimeSecond) {
@@ -1762,13 +2617,19 @@ public class RedisUtils {
         // 在releaseLock前，存在由于锁自动过期，而被其他线程获取同一个锁的可能
         try {
             RedisSerializer serializer = redis.getKeySerializer();
-            //结果为1释放成功
-            boolean unLockStat = Boolean.TRUE.equals(redis.execute((RedisCallback<Boolean>) connection -> {
+            RedisLocks locks = this.locks;
+            boolean unLockStat;
+            if (null != locks) {
+                //释放锁的同时发布锁释放消息，唤醒等待方
+                unLockStat = locks.unlock(key, value);
+            } else {
                 //结果为1释放成功
-                String script = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
-                return connection.eval(script.getBytes(), ReturnType.BOOLEAN, 1, serializer.serialize(key),
-                        value.getBytes(StandardCharsets.UTF_8));
-            }));
+                unLockStat = Boolean.TRUE.equals(redis.execute((RedisCallback<Boolean>) connection -> {
+                    //结果为1释放成功
+                    return connection.eval(RELEASE_LOCK_SCRIPT.getBytes(), ReturnType.BOOLEAN, 1,
+                            serializer.serialize(key), value.getBytes(StandardCharsets.UTF_8));
+                }));
+            }
 
             if (!unLockStat) {
                 log.error("释放锁失败,msg={}", key + "已自动超时,可能已被其他线程重新获取锁");
@@ -1780,7 +2641,7 @@ public class RedisUtils {
     }
 
     /**
-     * 续约锁
+     * 续约锁，需要持有期间自动续约时使用RedisLocks.acquire
      * @param key 锁key
      * @param value 锁value
      * @param lockTimeMilliseconds 续约时间
@@ -1833,60 +2694,4 @@ public class RedisUtils {
         }
     }
 
-    static class JsonConvertUtils {
-
-        public static final ObjectMapper mapper = new ObjectMapper();
-        public static final ObjectMapper mapperIgnoreNull = new ObjectMapper();
-
-        static {
-            mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-            mapperIgnoreNull.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        }
-
-        public static String objectToJson(Object obj) {
-            try {
-                return mapper.writeValueAsString(obj);
-            } catch (JsonProcessingException e) {
-                return null;
-            }
-        }
-
-        public static <T> T jsonToObject(String json, Class<? extends T> clas) {
-            try {
-                return mapper.readValue(json, clas);
-            } catch (IOException e) {
-                return null;
-            }
-        }
-
-        /**
-         * 将json数据转换成pojo对象list
-         * <p>Title: jsonToList</p>
-         * <p>Description: </p>
-         *
-         * @param jsonData
-         * @param beanType
-         * @return
-         */
-        public static <T> List<T> jsonToList(String jsonData, Class<T> beanType) {
-            JavaType javaType = mapper.getTypeFactory().constructParametricType(List.class, beanType);
-            try {
-                List<T> list = mapper.readValue(jsonData, javaType);
-                return list;
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-
-            return null;
-        }
-
-        public static <T> T json2Object(Object json, Class<? extends T> clas) {
-            try {
-                return mapper.readValue(json + "", clas);
-            } catch (IOException e) {
-                return null;
-            }
-        }
-    }
-
 }
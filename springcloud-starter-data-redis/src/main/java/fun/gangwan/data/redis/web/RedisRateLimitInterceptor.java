@@ -0,0 +1,222 @@
+package fun.gangwan.data.redis.web;
+
+import fun.gangwan.data.redis.autoconfig.RedisHelperProperties;
+import fun.gangwan.data.redis.support.RateLimitRule;
+import fun.gangwan.data.redis.support.RedisRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * RedisRateLimitInterceptor
+ * <span>按 请求URI + 客户端 限流的拦截器，规则按配置顺序匹配第一条，未匹配的请求不限流</span>
+ * <span>客户端默认取remoteAddr；remoteAddr为可信代理时优先取配置的请求头，没有时取X-Forwarded-For中最右侧的非可信代理地址</span>
+ *
+ */
+@Slf4j
+public class RedisRateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    private final RedisRateLimiter rateLimiter;
+
+    private final List<RedisHelperProperties.WebRateLimitRule> rules;
+
+    private final String clientHeader;
+
+    private final List<ProxyMatcher> trustedProxies = new ArrayList<>();
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    public RedisRateLimitInterceptor(RedisRateLimiter rateLimiter, RedisHelperProperties.RateLimiterWeb config) {
+        this.rateLimiter = rateLimiter;
+        this.rules = config.getRules();
+        this.clientHeader = config.getClientHeader();
+        for (RedisHelperProperties.WebRateLimitRule webRule : rules) {
+            webRule.getRule().validate();
+        }
+        for (String proxy : config.getTrustedProxies()) {
+            trustedProxies.add(ProxyMatcher.parse(proxy));
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String uri = request.getRequestURI();
+        for (RedisHelperProperties.WebRateLimitRule webRule : rules) {
+            if (!pathMatcher.match(webRule.getPathPattern(), uri)) {
+                continue;
+            }
+            RateLimitRule rule = webRule.getRule();
+            String key = webRule.getPathPattern() + ":" + (webRule.isPerUri() ? uri + ":" : "") + resolveClient(request);
+            if (rateLimiter.tryAcquire(key, rule)) {
+                return true;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("请求被限流:key={}", key);
+            }
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", String.valueOf(Math.max(1, rule.getWindow().getSeconds())));
+            return false;
+        }
+        return true;
+    }
+
+    private String resolveClient(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        //请求头可被客户端任意伪造，只信任可信代理转发的请求头
+        if (!isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        if (StringUtils.hasText(clientHeader)) {
+            String client = request.getHeader(clientHeader);
+            if (StringUtils.hasText(client)) {
+                return client.trim();
+            }
+        }
+        String forwardedFor = request.getHeader(FORWARDED_FOR);
+        if (!StringUtils.hasText(forwardedFor)) {
+            return remoteAddr;
+        }
+        // 从右往左，跳过可信代理，第一个非可信代理的地址即为客户端，左侧的地址可被客户端伪造
+        String[] hops = StringUtils.commaDelimitedListToStringArray(forwardedFor);
+        String client = remoteAddr;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                continue;
+            }
+            client = hop;
+            if (!isTrustedProxy(hop)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    private boolean isTrustedProxy(String address) {
+        if (trustedProxies.isEmpty()) {
+            return false;
+        }
+        byte[] bytes = ProxyMatcher.toBytes(address);
+        if (bytes == null) {
+            return false;
+        }
+        for (ProxyMatcher proxy : trustedProxies) {
+            if (proxy.matches(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 可信代理，IP或CIDR
+     */
+    private static final class ProxyMatcher {
+
+        private final byte[] network;
+
+        private final int prefixLength;
+
+        private ProxyMatcher(byte[] network, int prefixLength) {
+            this.network = network;
+            this.prefixLength = prefixLength;
+        }
+
+        static ProxyMatcher parse(String proxy) {
+            String value = proxy.trim();
+            int slash = value.indexOf('/');
+            byte[] network = toBytes(slash < 0 ? value : value.substring(0, slash));
+            if (network == null) {
+                throw new IllegalArgumentException("非法的可信代理地址:" + proxy);
+            }
+            int prefixLength = network.length * 8;
+            if (slash >= 0) {
+                try {
+                    prefixLength = Integer.parseInt(value.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("非法的可信代理地址:" + proxy, e);
+                }
+                if (prefixLength < 0 || prefixLength > network.length * 8) {
+                    throw new IllegalArgumentException("非法的可信代理地址:" + proxy);
+                }
+            }
+            return new ProxyMatcher(network, prefixLength);
+        }
+
+        boolean matches(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int bytes = prefixLength / 8;
+            for (int i = 0; i < bytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int bits = prefixLength % 8;
+            if (bits == 0) {
+                return true;
+            }
+            int mask = (0xFF << (8 - bits)) & 0xFF;
+            return (address[bytes] & mask) == (network[bytes] & mask);
+        }
+
+        /**
+         * 只解析IP字面量，不做DNS查询
+         *
+         * @param address IP
+         * @return 地址字节，非法时为null
+         */
+        static byte[] toBytes(String address) {
+            if (!StringUtils.hasText(address)) {
+                return null;
+            }
+            if (address.indexOf(':') >= 0) {
+                // IPv6字面量，InetAddress对含':'的地址只做字面量解析
+                try {
+                    return InetAddress.getByName(address).getAddress();
+                } catch (UnknownHostException | SecurityException e) {
+                    return null;
+                }
+            }
+            String[] parts = StringUtils.delimitedListToStringArray(address, ".");
+            if (parts.length != 4) {
+                return null;
+            }
+            byte[] bytes = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                String part = parts[i];
+                if (part.isEmpty() || part.length() > 3) {
+                    return null;
+                }
+                int value = 0;
+                for (int j = 0; j < part.length(); j++) {
+                    char ch = part.charAt(j);
+                    if (ch < '0' || ch > '9') {
+                        return null;
+                    }
+                    value = value * 10 + (ch - '0');
+                }
+                if (value > 255) {
+                    return null;
+                }
+                bytes[i] = (byte) value;
+            }
+            return bytes;
+        }
+    }
+
+}